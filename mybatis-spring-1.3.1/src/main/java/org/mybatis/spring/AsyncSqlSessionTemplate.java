@@ -0,0 +1,322 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Asynchronous facade over a {@link SqlSessionTemplate}: every call is run on an {@code Executor}
+ * and returns a {@code CompletableFuture}, so that independent queries (e.g. a user and its
+ * addresses) can be issued concurrently.
+ * <p>
+ * Each call acquires its {@code SqlSession} on the worker thread through the wrapped template,
+ * so session handling and {@code PersistenceException} translation work exactly as with
+ * {@code SqlSessionTemplate}; a translated {@code DataAccessException} completes the future
+ * exceptionally. Note that Spring transactions are bound to the calling thread: asynchronous
+ * calls never take part in the caller's transaction and run each one in its own session.
+ * <p>
+ * By default calls run on a bounded thread pool ({@code poolSize} threads, {@code queueCapacity}
+ * pending calls, further calls fail with {@code RejectedExecutionException}). Any other
+ * {@code Executor} can be plugged with {@link #setExecutor}. On a JDK that has virtual threads,
+ * {@code useVirtualThreads} runs every call on its own virtual thread; concurrency is then only
+ * bounded by the {@code DataSource}.
+ *
+ * <pre class="code">
+ * {@code
+ * <bean id="asyncSqlSession" class="org.mybatis.spring.AsyncSqlSessionTemplate">
+ *   <constructor-arg ref="sqlSessionTemplate" />
+ *   <property name="poolSize" value="8" />
+ * </bean>
+ * }
+ * </pre>
+ *
+ * @see SqlSessionTemplate
+ */
+public class AsyncSqlSessionTemplate implements DisposableBean {
+
+    private static final Log LOGGER = LogFactory.getLog(AsyncSqlSessionTemplate.class);
+
+    private final SqlSessionTemplate sqlSessionTemplate;
+
+    /** 外部提供的执行器，为空时使用内部创建的线程池 */
+    private Executor executor;
+
+    /** 内部创建的执行器，销毁Bean时需要关闭 */
+    private ExecutorService internalExecutor;
+
+    /** Bean销毁后不再接受新的调用，避免重新创建无人关闭的线程池 */
+    private boolean destroyed;
+
+    private int poolSize = 10;
+
+    private int queueCapacity = 1000;
+
+    private boolean useVirtualThreads;
+
+
+    public AsyncSqlSessionTemplate(SqlSessionFactory sqlSessionFactory) {
+        this(new SqlSessionTemplate(sqlSessionFactory));
+    }
+    public AsyncSqlSessionTemplate(SqlSessionTemplate sqlSessionTemplate) {
+        notNull(sqlSessionTemplate, "Property 'sqlSessionTemplate' is required");
+        this.sqlSessionTemplate = sqlSessionTemplate;
+    }
+
+    public SqlSessionTemplate getSqlSessionTemplate() {
+        return this.sqlSessionTemplate;
+    }
+
+    /**
+     * Shuts down the internal executor, if one was created. A plugged executor is left alone.
+     * Calls made afterwards are rejected: their futures fail with a
+     * {@code RejectedExecutionException}.
+     */
+    @Override
+    public void destroy() throws Exception {
+        ExecutorService executorService;
+        synchronized (this) {
+            executorService = this.internalExecutor;
+            this.internalExecutor = null;
+            this.destroyed = true;
+        }
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Runs the callback against a Spring managed session on the executor.
+     *
+     * @param action callback that issues the MyBatis calls
+     * @return a future completed with the callback result or the (translated) exception
+     */
+    public <T> CompletableFuture<T> execute(final SqlSessionCallback<T> action) {
+        notNull(action, "Callback object must not be null");
+        return submit(new Callable<T>() {
+            @Override
+            public T call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.execute(action);
+            }
+        });
+    }
+
+    public <T> CompletableFuture<T> selectOne(final String statement) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.<T>selectOne(statement);
+            }
+        });
+    }
+    public <T> CompletableFuture<T> selectOne(final String statement, final Object parameter) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.<T>selectOne(statement, parameter);
+            }
+        });
+    }
+    public <E> CompletableFuture<List<E>> selectList(final String statement) {
+        return submit(new Callable<List<E>>() {
+            @Override
+            public List<E> call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.<E>selectList(statement);
+            }
+        });
+    }
+    public <E> CompletableFuture<List<E>> selectList(final String statement, final Object parameter) {
+        return submit(new Callable<List<E>>() {
+            @Override
+            public List<E> call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.<E>selectList(statement, parameter);
+            }
+        });
+    }
+    public <E> CompletableFuture<List<E>> selectList(final String statement, final Object parameter, final RowBounds rowBounds) {
+        return submit(new Callable<List<E>>() {
+            @Override
+            public List<E> call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.<E>selectList(statement, parameter, rowBounds);
+            }
+        });
+    }
+    public <K, V> CompletableFuture<Map<K, V>> selectMap(final String statement, final Object parameter, final String mapKey) {
+        return submit(new Callable<Map<K, V>>() {
+            @Override
+            public Map<K, V> call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.<K, V>selectMap(statement, parameter, mapKey);
+            }
+        });
+    }
+    public CompletableFuture<Integer> insert(final String statement, final Object parameter) {
+        return submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.insert(statement, parameter);
+            }
+        });
+    }
+    public CompletableFuture<Integer> update(final String statement, final Object parameter) {
+        return submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.update(statement, parameter);
+            }
+        });
+    }
+    public CompletableFuture<Integer> delete(final String statement, final Object parameter) {
+        return submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return AsyncSqlSessionTemplate.this.sqlSessionTemplate.delete(statement, parameter);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(final Callable<T> call) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        try {
+            resolveExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(call.call());
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private synchronized Executor resolveExecutor() {
+        if (this.destroyed) {
+            throw new RejectedExecutionException("AsyncSqlSessionTemplate has been destroyed");
+        }
+        if (this.executor != null) {
+            return this.executor;
+        }
+        if (this.internalExecutor == null) {
+            this.internalExecutor = this.useVirtualThreads ? newVirtualThreadExecutor() : null;
+            if (this.internalExecutor == null) {
+                this.internalExecutor = newBoundedExecutor(this.poolSize, this.queueCapacity);
+            }
+        }
+        return this.internalExecutor;
+    }
+
+    /**
+     * Creates a fixed size pool with a bounded queue, calls beyond its capacity are rejected.
+     *
+     * @param poolSize number of worker threads
+     * @param queueCapacity number of calls that can wait for a worker
+     * @return a new executor, to be shut down by the caller
+     */
+    public static ExecutorService newBoundedExecutor(int poolSize, int queueCapacity) {
+        return newBoundedExecutor(poolSize, queueCapacity, "mybatis-async-");
+    }
+
+    /**
+     * Creates a fixed size pool with a bounded queue, calls beyond its capacity are rejected.
+     *
+     * @param poolSize number of worker threads
+     * @param queueCapacity number of calls that can wait for a worker
+     * @param threadNamePrefix prefix of the worker thread names
+     * @return a new executor, to be shut down by the caller
+     */
+    public static ExecutorService newBoundedExecutor(int poolSize, int queueCapacity, String threadNamePrefix) {
+        isTrue(poolSize > 0, "Property 'poolSize' must be positive");
+        isTrue(queueCapacity > 0, "Property 'queueCapacity' must be positive");
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                                      new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory,
+                                      new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each call, when the running JDK
+     * supports them.
+     *
+     * @return a new executor, or {@code null} if virtual threads are not available
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        Method factory = ClassUtils.getMethodIfAvailable(java.util.concurrent.Executors.class,
+                                                         "newVirtualThreadPerTaskExecutor");
+        if (factory == null) {
+            LOGGER.warn("Virtual threads are not available on this JDK, using a bounded thread pool");
+            return null;
+        }
+        return (ExecutorService) ReflectionUtils.invokeMethod(factory, null);
+    }
+
+
+
+
+
+    // getter and setter ...
+    public Executor getExecutor() {
+        return executor;
+    }
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+    public int getPoolSize() {
+        return poolSize;
+    }
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.springframework.jdbc.datasource.AbstractDriverBasedDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Warm-up stage run by {@link SqlSessionFactoryBean} once the application context is refreshed,
+ * so that the first requests do not pay for the lazy initialization done by MyBatis and the
+ * {@code DataSource}:
+ * <ul>
+ * <li>every mapped statement renders its SQL once (dynamic SQL with a {@code null} parameter),</li>
+ * <li>the {@code Reflector} of every result map type is built and the type handlers of its
+ * properties are looked up,</li>
+ * <li>{@code connections} connections are opened at the same time, so that a pool is filled,</li>
+ * <li>optionally the SQL of the statements that are not dynamic is prepared on one of them.</li>
+ * </ul>
+ * The connection steps only help a {@code DataSource} that keeps its connections: they are skipped
+ * for Spring's {@code DriverManagerDataSource} and {@code SimpleDriverDataSource}, which open a new
+ * connection for every call.
+ * <p>
+ * Failures are logged and do not stop the warm-up: a statement that cannot render without a
+ * parameter is simply skipped.
+ */
+final class ConfigurationWarmUp {
+
+    private static final Log LOGGER = LogFactory.getLog(ConfigurationWarmUp.class);
+
+    private final Configuration configuration;
+
+    private final DataSource dataSource;
+
+    ConfigurationWarmUp(Configuration configuration, DataSource dataSource) {
+        this.configuration = configuration;
+        this.dataSource = dataSource;
+    }
+
+    void run(int connections, boolean prepareStatements) {
+        long start = System.nanoTime();
+        List<BoundSql> preparable = renderStatements();
+        int types = buildReflectors();
+        if (connections > 0 && keepsConnections(this.dataSource)) {
+            openConnections(connections, prepareStatements ? preparable : Collections.<BoundSql>emptyList());
+        } else {
+            connections = 0;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Warmed up " + preparable.size() + " static statements, " + types + " result types and "
+                         + connections + " connections in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                         + " ms");
+        }
+    }
+
+    /**
+     * @return the SQL of the prepared statements whose text does not depend on the parameter
+     */
+    private List<BoundSql> renderStatements() {
+        List<BoundSql> preparable = new ArrayList<BoundSql>();
+        // Configuration中的语句同时以全名和短名注册（短名冲突时为Ambiguity对象），需要去重
+        for (MappedStatement ms : distinct(this.configuration.getMappedStatements(), MappedStatement.class)) {
+            try {
+                BoundSql boundSql = ms.getBoundSql(null);
+                if (ms.getStatementType() == StatementType.PREPARED && !(ms.getSqlSource() instanceof DynamicSqlSource)) {
+                    preparable.add(boundSql);
+                }
+            } catch (Exception e) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Skipped warm-up of statement '" + ms.getId() + "': " + e);
+                }
+            }
+        }
+        return preparable;
+    }
+
+    private int buildReflectors() {
+        TypeHandlerRegistry typeHandlerRegistry = this.configuration.getTypeHandlerRegistry();
+        Set<Class<?>> types = Collections.newSetFromMap(new IdentityHashMap<Class<?>, Boolean>());
+        for (ResultMap resultMap : distinct(this.configuration.getResultMaps(), ResultMap.class)) {
+            Class<?> type = resultMap.getType();
+            if (!types.add(type) || typeHandlerRegistry.hasTypeHandler(type)) {
+                continue;
+            }
+            try {
+                Reflector reflector = this.configuration.getReflectorFactory().findForClass(type);
+                for (String property : reflector.getSetablePropertyNames()) {
+                    typeHandlerRegistry.hasTypeHandler(reflector.getSetterType(property));
+                }
+            } catch (Exception e) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Skipped warm-up of type '" + type.getName() + "': " + e);
+                }
+            }
+        }
+        return types.size();
+    }
+
+    private void openConnections(int count, List<BoundSql> statements) {
+        List<Connection> connections = new ArrayList<Connection>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                connections.add(this.dataSource.getConnection());
+            }
+            for (BoundSql boundSql : statements) {
+                try {
+                    connections.get(0).prepareStatement(boundSql.getSql()).close();
+                } catch (SQLException e) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Could not prepare '" + boundSql.getSql() + "' during warm-up: " + e);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Could not open " + count + " connections during warm-up, opened " + connections.size()
+                        + ": " + e);
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Could not close connection after warm-up: " + e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 连接池（或单连接数据源）才会保留打开的连接，DriverManager类的数据源每次都新建连接，预热没有意义
+     */
+    static boolean keepsConnections(DataSource dataSource) {
+        DataSource target = dataSource;
+        while (target instanceof DelegatingDataSource) {
+            target = ((DelegatingDataSource) target).getTargetDataSource();
+        }
+        return !(target instanceof AbstractDriverBasedDataSource) || target instanceof SingleConnectionDataSource;
+    }
+
+    private static <T> Set<T> distinct(Iterable<?> values, Class<T> type) {
+        Set<T> distinct = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+        for (Object value : values) {
+            if (type.isInstance(value)) {
+                distinct.add(type.cast(value));
+            }
+        }
+        return distinct;
+    }
+
+}
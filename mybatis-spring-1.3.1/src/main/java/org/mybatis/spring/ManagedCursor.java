@@ -0,0 +1,216 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import static org.mybatis.spring.SqlSessionUtils.closeSqlSession;
+import static org.springframework.util.Assert.notNull;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+
+/**
+ * {@code Cursor} returned by {@link SqlSessionTemplate}: it keeps the {@code SqlSession} (and so the
+ * JDBC connection) it was opened with until the cursor is closed or fully iterated, and then
+ * closes or releases the session the same way {@code SqlSessionTemplate} does after any other call.
+ * <p>
+ * This lets large results be processed in constant memory, also outside a Spring transaction.
+ * The cursor must be consumed or closed by the caller (e.g. in a try-with-resources block);
+ * an abandoned cursor keeps its connection until then.
+ * <p>
+ * Errors while iterating or closing the cursor are translated like the errors of the other
+ * {@code SqlSessionTemplate} calls, typically into {@code DataAccessException}s. A failed
+ * iteration releases the session right away.
+ *
+ * @see SqlSessionTemplate#selectCursor(String, Object)
+ * @see SqlSessionTemplate#selectStream(String, Object)
+ */
+public class ManagedCursor<T> implements Cursor<T> {
+
+    private static final Log LOGGER = LogFactory.getLog(ManagedCursor.class);
+
+    private final Cursor<T> cursor;
+
+    private final SqlSession sqlSession;
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    /** 关闭游标时是否需要提交会话（非事务会话且需要提交时为true） */
+    private final boolean commitOnClose;
+
+    /** 可以为null，此时异常不做转换 */
+    private final PersistenceExceptionTranslator exceptionTranslator;
+
+    private boolean closed;
+
+    ManagedCursor(Cursor<T> cursor, SqlSession sqlSession, SqlSessionFactory sqlSessionFactory, boolean commitOnClose,
+                  PersistenceExceptionTranslator exceptionTranslator) {
+        notNull(cursor, "Cursor must not be null");
+        notNull(sqlSession, "SqlSession must not be null");
+
+        this.cursor = cursor;
+        this.sqlSession = sqlSession;
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.commitOnClose = commitOnClose;
+        this.exceptionTranslator = exceptionTranslator;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.cursor.isOpen();
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return this.cursor.isConsumed();
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return this.cursor.getCurrentIndex();
+    }
+
+    /**
+     * The session is closed as soon as the returned iterator reports there are no more elements.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<T> iterator = this.cursor.iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                boolean hasNext;
+                try {
+                    hasNext = iterator.hasNext();
+                } catch (RuntimeException e) {
+                    throw failed(e);
+                }
+                if (!hasNext) {
+                    close();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                try {
+                    return iterator.next();
+                } catch (RuntimeException e) {
+                    throw failed(e);
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Cannot remove an element from a Cursor");
+            }
+        };
+    }
+
+    /**
+     * Exposes the cursor as a sequential {@code Stream}. Closing the stream closes the cursor.
+     *
+     * @return a stream over the remaining elements of the cursor
+     */
+    public Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator(),
+                                                                         Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        RuntimeException failure = null;
+        try {
+            try {
+                this.cursor.close();
+            } catch (IOException e) {
+                // DefaultCursor does not throw it, the session is released anyway
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Error closing cursor: " + e);
+                }
+            }
+            if (this.commitOnClose) {
+                this.sqlSession.commit(true);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            closeSqlSession(this.sqlSession, this.sqlSessionFactory);
+        }
+        // 与SqlSessionTemplate一样，先释放连接再转换异常（转换时可能需要连接读取数据库元数据）
+        if (failure != null) {
+            throw translate(failure);
+        }
+    }
+
+    /**
+     * Releases the session after a failed iteration and translates the failure.
+     */
+    private RuntimeException failed(RuntimeException e) {
+        try {
+            close();
+        } catch (RuntimeException closeFailure) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Error closing cursor after a failed fetch: " + closeFailure);
+            }
+        }
+        return translate(e);
+    }
+
+    /**
+     * {@code DefaultCursor} reports fetch errors as a plain {@code RuntimeException} wrapping the
+     * {@code SQLException}, which is handed to the translator as a {@code PersistenceException}.
+     */
+    private RuntimeException translate(RuntimeException e) {
+        if (this.exceptionTranslator == null) {
+            return e;
+        }
+        PersistenceException persistenceException = null;
+        if (e instanceof PersistenceException) {
+            persistenceException = (PersistenceException) e;
+        } else if (e.getCause() instanceof SQLException) {
+            persistenceException = new PersistenceException(e.getCause());
+        }
+        if (persistenceException == null) {
+            return e;
+        }
+        RuntimeException translated = this.exceptionTranslator.translateExceptionIfPossible(persistenceException);
+        return translated != null ? translated : e;
+    }
+
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import static org.springframework.util.Assert.notNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * {@code SqlSessionTemplate} that sends reads to a replica database: SELECT statements run outside
+ * an actual Spring transaction use the replica {@code SqlSessionFactory}, everything else uses the
+ * primary one (the factory passed as first constructor argument).
+ * <p>
+ * Inside a transaction all the statements use the factory whose {@code DataSource} is bound to
+ * the transaction, so a transaction never mixes connections: the primary one by default, the
+ * replica when the transaction is managed by a transaction manager of the replica
+ * {@code DataSource} (typically for read-only service methods) or when the transaction is
+ * read-only and the primary {@code DataSource} is not bound to it. Writes issued in a transaction
+ * bound to the replica are rejected with a {@code TransientDataAccessResourceException} instead of
+ * silently running on another connection, outside of the transaction.
+ * <p>
+ * After a successful write, the reads of the same thread stay on the primary for
+ * {@code readYourWritesWindowMillis} (1000 by default), so that they see the write even if the
+ * replica lags behind. For writes made in a transaction the window starts when it commits.
+ * <p>
+ * Both factories must know the same mapped statements, e.g. built from the same mapper files.
+ *
+ * <pre class="code">
+ * {@code
+ * <bean id="sqlSessionTemplate" class="org.mybatis.spring.ReadWriteSplittingSqlSessionTemplate">
+ *   <constructor-arg ref="sqlSessionFactory" />
+ *   <constructor-arg ref="replicaSqlSessionFactory" />
+ * </bean>
+ * }
+ * </pre>
+ *
+ * @see SqlSessionTemplate#determineSqlSessionFactory(String)
+ */
+public class ReadWriteSplittingSqlSessionTemplate extends SqlSessionTemplate {
+
+    /** 只读库的SqlSessionFactory */
+    private final SqlSessionFactory replicaSqlSessionFactory;
+
+    /** 当前线程最后一次写操作的时间（System.nanoTime） */
+    private final ThreadLocal<Long> lastWriteNanos = new NamedThreadLocal<Long>("Last MyBatis write");
+
+    /** 绑定到事务的标记，表示已注册刷新写时间的事务同步器 */
+    private final Object writeSynchronizationKey = new Object();
+
+    /** 写操作之后，在该时间窗口（毫秒）内的读操作仍然走主库，小于等于0表示不启用 */
+    private long readYourWritesWindowMillis = 1000L;
+
+
+    public ReadWriteSplittingSqlSessionTemplate(SqlSessionFactory sqlSessionFactory,
+                                                SqlSessionFactory replicaSqlSessionFactory) {
+        this(sqlSessionFactory, replicaSqlSessionFactory, sqlSessionFactory.getConfiguration().getDefaultExecutorType());
+    }
+    public ReadWriteSplittingSqlSessionTemplate(SqlSessionFactory sqlSessionFactory,
+                                                SqlSessionFactory replicaSqlSessionFactory, ExecutorType executorType) {
+        this(sqlSessionFactory, replicaSqlSessionFactory, executorType,
+             new MyBatisExceptionTranslator(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(), true));
+    }
+    public ReadWriteSplittingSqlSessionTemplate(SqlSessionFactory sqlSessionFactory,
+                                                SqlSessionFactory replicaSqlSessionFactory, ExecutorType executorType,
+                                                PersistenceExceptionTranslator exceptionTranslator) {
+        super(sqlSessionFactory, executorType, exceptionTranslator);
+
+        notNull(replicaSqlSessionFactory, "Property 'replicaSqlSessionFactory' is required");
+        this.replicaSqlSessionFactory = replicaSqlSessionFactory;
+    }
+
+    public SqlSessionFactory getReplicaSqlSessionFactory() {
+        return this.replicaSqlSessionFactory;
+    }
+
+    @Override
+    protected SqlSessionFactory determineSqlSessionFactory(String statement) {
+        SqlSessionFactory primary = getSqlSessionFactory();
+        if (statement == null) {
+            return primary;
+        }
+
+        boolean write = getConfiguration().getMappedStatement(statement).getSqlCommandType() != SqlCommandType.SELECT;
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // 事务中只使用一个数据源：主库没有绑定到事务，且事务绑定的是只读库或者是只读事务时才走只读库
+            if (isTransactional(primary)) {
+                return primary;
+            }
+            if (isTransactional(this.replicaSqlSessionFactory)) {
+                if (write) {
+                    throw new TransientDataAccessResourceException(
+                            "Cannot run '" + statement + "' against the primary database: the current transaction is bound to the replica");
+                }
+                return this.replicaSqlSessionFactory;
+            }
+            if (write) {
+                return primary;
+            }
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? this.replicaSqlSessionFactory : primary;
+        }
+
+        if (write) {
+            return primary;
+        }
+        return isWithinReadYourWritesWindow() ? primary : this.replicaSqlSessionFactory;
+    }
+
+    /**
+     * Starts the read-your-writes window once a write returned: a failed write does not keep the
+     * reads on the primary.
+     */
+    @Override
+    protected void statementExecuted(SqlSessionFactory sessionFactory, String statement) {
+        if (sessionFactory == getSqlSessionFactory()
+            && getConfiguration().getMappedStatement(statement).getSqlCommandType() != SqlCommandType.SELECT) {
+            writePerformed();
+        }
+    }
+
+    /**
+     * Returns if the factory has a session or its {@code DataSource} has a connection bound to the
+     * current transaction.
+     */
+    private static boolean isTransactional(SqlSessionFactory sessionFactory) {
+        return TransactionSynchronizationManager.hasResource(sessionFactory)
+               || TransactionSynchronizationManager.hasResource(
+                       sessionFactory.getConfiguration().getEnvironment().getDataSource());
+    }
+
+    private boolean isWithinReadYourWritesWindow() {
+        Long lastWrite = this.lastWriteNanos.get();
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.nanoTime() - lastWrite < TimeUnit.MILLISECONDS.toNanos(this.readYourWritesWindowMillis)) {
+            return true;
+        }
+        this.lastWriteNanos.remove();
+        return false;
+    }
+
+    private void writePerformed() {
+        if (this.readYourWritesWindowMillis <= 0) {
+            return;
+        }
+        this.lastWriteNanos.set(System.nanoTime());
+
+        // 事务中的写操作在提交后才对只读库可见，提交时重新计时
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+            && !TransactionSynchronizationManager.hasResource(this.writeSynchronizationKey)) {
+            TransactionSynchronizationManager.bindResource(this.writeSynchronizationKey, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new WriteSynchronization());
+        }
+    }
+
+    /**
+     * Restarts the read-your-writes window when the transaction that made the writes commits.
+     */
+    private final class WriteSynchronization extends TransactionSynchronizationAdapter {
+
+        private boolean active = true;
+
+        @Override
+        public void suspend() {
+            if (this.active) {
+                TransactionSynchronizationManager.unbindResource(writeSynchronizationKey);
+            }
+        }
+
+        @Override
+        public void resume() {
+            if (this.active) {
+                TransactionSynchronizationManager.bindResource(writeSynchronizationKey, Boolean.TRUE);
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+            lastWriteNanos.set(System.nanoTime());
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (this.active) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(writeSynchronizationKey);
+                this.active = false;
+            }
+        }
+    }
+
+
+
+
+
+    // getter and setter ...
+    public long getReadYourWritesWindowMillis() {
+        return readYourWritesWindowMillis;
+    }
+    public void setReadYourWritesWindowMillis(long readYourWritesWindowMillis) {
+        this.readYourWritesWindowMillis = readYourWritesWindowMillis;
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.session.SqlSession;
+
+/**
+ * Callback interface for code that operates on a Spring managed MyBatis {@code SqlSession}.
+ * To be used with {@link SqlSessionTemplate#execute(SqlSessionCallback)}.
+ * <p>
+ * The template takes care of acquiring the session, committing it when it is not bound to a
+ * Spring transaction, closing it and translating {@code PersistenceException}s, so implementations
+ * only need to issue the actual MyBatis calls.
+ *
+ * @see SqlSessionTemplate#execute(SqlSessionCallback)
+ */
+public interface SqlSessionCallback<T> {
+
+    /**
+     * Gets called by {@code SqlSessionTemplate.execute} with an active {@code SqlSession}.
+     *
+     * @param sqlSession the session acquired for this call, never {@code null}
+     * @return a result object, or {@code null} if none
+     */
+    T doInSqlSession(SqlSession sqlSession);
+
+}
@@ -23,8 +23,20 @@ import static org.springframework.util.StringUtils.tokenizeToStringArray;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.builder.xml.XMLConfigBuilder;
@@ -44,16 +56,25 @@ import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
 import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.type.TypeHandler;
+import org.mybatis.spring.metrics.StartupReport;
 import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.NestedIOException;
 import org.springframework.core.io.Resource;
 import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ObjectUtils;
 
 /**
  * {@code FactoryBean} that creates an MyBatis {@code SqlSessionFactory}.
@@ -63,6 +84,24 @@ import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
  * Either {@code DataSourceTransactionManager} or {@code JtaTransactionManager} can be used for transaction
  * demarcation in combination with a {@code SqlSessionFactory}. JTA should be used for transactions
  * which span multiple databases or when container managed transactions (CMT) are being used.
+ * <p>
+ * With {@code backgroundInitialization} the factory is built on a separate thread as soon as the
+ * properties are set; {@link #getObject()} only blocks if it is called before the build completes.
+ * The build only overlaps the beans of the same context that do not use MyBatis:
+ * {@code SqlSessionTemplate} reads the {@code Configuration} in its constructor and
+ * {@code MapperFactoryBean} binds its mapper when it is initialized, so the first mapper or
+ * template waits for the build, and the refresh of the declaring context waits for it before
+ * completing (a failed build fails the refresh). Beans of child contexts, such as the controllers
+ * of a {@code DispatcherServlet}, are only created after that: with mappers and services in the
+ * root context and the MVC beans in the servlet context, the option gains nothing. It pays off
+ * when expensive beans that do not depend on MyBatis are declared after the factory.
+ * <p>
+ * With {@code warmUp} the statements, result types and connections are warmed up (see
+ * {@code ConfigurationWarmUp}) synchronously when the context that declares the factory is
+ * refreshed, so the refresh (and the start of a web application) completes only after the warm-up:
+ * the container does not route requests to the application before that, no separate readiness
+ * flag is needed. Opening connections only helps a pooling {@code DataSource}, the step is skipped
+ * for {@code DriverManagerDataSource}.
  *
  * @author Putthibong Boonbong
  * @author Hunter Presnall
@@ -74,7 +113,8 @@ import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
  * @see #setDataSource
  */
 public class SqlSessionFactoryBean
-        implements FactoryBean<SqlSessionFactory>, InitializingBean, ApplicationListener<ApplicationEvent> {
+        implements FactoryBean<SqlSessionFactory>, InitializingBean, ApplicationListener<ApplicationEvent>, BeanNameAware,
+        BeanFactoryAware, ApplicationContextAware {
 
     private static final Log LOGGER = LogFactory.getLog(SqlSessionFactoryBean.class);
 
@@ -89,7 +129,9 @@ public class SqlSessionFactoryBean
     private TransactionFactory transactionFactory;
     private Properties configurationProperties;
     private SqlSessionFactoryBuilder sqlSessionFactoryBuilder = new SqlSessionFactoryBuilder();
-    private SqlSessionFactory sqlSessionFactory;
+    private volatile SqlSessionFactory sqlSessionFactory;
+    /** 后台构建SqlSessionFactory的任务，未开启后台构建时为空 */
+    private volatile FutureTask<SqlSessionFactory> sqlSessionFactoryTask;
     //EnvironmentAware requires spring 3.1
     private String environment = SqlSessionFactoryBean.class.getSimpleName();
     private boolean failFast;
@@ -105,6 +147,25 @@ public class SqlSessionFactoryBean
     private Cache cache;
     private ObjectFactory objectFactory;
     private ObjectWrapperFactory objectWrapperFactory;
+    /** 是否并行读取mapper文件，读取后仍按mapperLocations的顺序注册到Configuration */
+    private boolean parallelMapperParsing;
+    /** 并行读取mapper文件的线程数，默认为CPU核数 */
+    private int mapperParsingThreads;
+    /** 容器刷新完成后是否预热：渲染所有语句、构建结果类型的Reflector、打开连接 */
+    private boolean warmUp;
+    /** 预热时同时打开的连接数 */
+    private int warmUpConnections = 1;
+    /** 预热时是否在连接上预编译非动态SQL */
+    private boolean warmUpPrepareStatements;
+    private final AtomicBoolean warmUpStarted = new AtomicBoolean();
+    private final AtomicBoolean startupReported = new AtomicBoolean();
+    /** 本工厂的启动耗时报告，每次构建时重置 */
+    private final StartupReport startupReport = new StartupReport();
+    private String beanName;
+    private BeanFactory beanFactory;
+    private ApplicationContext applicationContext;
+    /** 是否在后台线程中构建SqlSessionFactory，getObject()只在构建完成前被调用时阻塞 */
+    private boolean backgroundInitialization;
 
 
     // 实现 InitializingBean 的接口，当spring设置完 SqlSessionFactoryBean 的所有属性后会来调用该方法
@@ -115,10 +176,55 @@ public class SqlSessionFactoryBean
         state((configuration == null && configLocation == null) || !(configuration != null && configLocation != null),
               "Property 'configuration' and 'configLocation' can not specified with together");
 
-        this.sqlSessionFactory = buildSqlSessionFactory();
+        if (this.backgroundInitialization) {
+            startBackgroundInitialization();
+        } else {
+            this.sqlSessionFactory = buildSqlSessionFactory();
+        }
+    }
+    /**
+     * Builds the factory on a new daemon thread, so that the rest of the application context is
+     * initialized meanwhile. The thread inherits the context class loader of the caller.
+     */
+    private void startBackgroundInitialization() {
+        FutureTask<SqlSessionFactory> task = new FutureTask<SqlSessionFactory>(new Callable<SqlSessionFactory>() {
+            @Override
+            public SqlSessionFactory call() throws Exception {
+                return buildSqlSessionFactory();
+            }
+        });
+        this.sqlSessionFactoryTask = task;
+        Thread thread = new Thread(task, "mybatis-sqlSessionFactory-init");
+        thread.setDaemon(true);
+        thread.start();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Building SqlSessionFactory in the background");
+        }
+    }
+    /**
+     * Waits for the background build, rethrowing its failure.
+     */
+    private SqlSessionFactory awaitSqlSessionFactory() throws Exception {
+        FutureTask<SqlSessionFactory> task = this.sqlSessionFactoryTask;
+        if (this.sqlSessionFactory == null && task != null) {
+            try {
+                this.sqlSessionFactory = task.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            }
+        }
+        return this.sqlSessionFactory;
     }
     protected SqlSessionFactory buildSqlSessionFactory() throws IOException {
 
+        // 重新构建时不累加上一次的时间，Mapper扫描在本Bean创建前已完成，从BeanFactory中取出
+        this.startupReport.reset();
+        this.startupReport.addAll(StartupReport.getScans(this.beanFactory));
+
         Configuration configuration;
 
         XMLConfigBuilder xmlConfigBuilder = null;
@@ -154,6 +260,9 @@ public class SqlSessionFactoryBean
             configuration.setVfsImpl(this.vfs);
         }
 
+        StartupReport startupReport = this.startupReport;
+        StartupReport.register(configuration, startupReport);
+        long start = System.nanoTime();
         if (hasLength(this.typeAliasesPackage)) {
             String[] typeAliasPackageArray = tokenizeToStringArray(this.typeAliasesPackage,
                                                                    ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS);
@@ -176,6 +285,8 @@ public class SqlSessionFactoryBean
             }
         }
 
+        startupReport.record("SqlSessionFactoryBean.typeAliases", start);
+
         if (!isEmpty(this.plugins)) {
             for (Interceptor plugin : this.plugins) {
                 configuration.addInterceptor(plugin);
@@ -185,6 +296,7 @@ public class SqlSessionFactoryBean
             }
         }
 
+        start = System.nanoTime();
         if (hasLength(this.typeHandlersPackage)) {
             String[] typeHandlersPackageArray = tokenizeToStringArray(this.typeHandlersPackage,
                                                                       ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS);
@@ -205,6 +317,8 @@ public class SqlSessionFactoryBean
             }
         }
 
+        startupReport.record("SqlSessionFactoryBean.typeHandlers", start);
+
         if (this.databaseIdProvider != null) {//fix #64 set databaseId before parse mapper xmls
             try {
                 configuration.setDatabaseId(this.databaseIdProvider.getDatabaseId(this.dataSource));
@@ -218,6 +332,7 @@ public class SqlSessionFactoryBean
         }
 
         if (xmlConfigBuilder != null) {
+            start = System.nanoTime();
             try {
                 // 这里开始对mybatis配置文件进行解析
                 xmlConfigBuilder.parse();
@@ -230,6 +345,7 @@ public class SqlSessionFactoryBean
             } finally {
                 ErrorContext.instance().reset();
             }
+            startupReport.record("SqlSessionFactoryBean.configLocation", start);
         }
 
         if (this.transactionFactory == null) {
@@ -240,43 +356,122 @@ public class SqlSessionFactoryBean
         configuration.setEnvironment(new Environment(this.environment, this.transactionFactory, this.dataSource));
 
         if (!isEmpty(this.mapperLocations)) {
-            for (Resource mapperLocation : this.mapperLocations) {
-                if (mapperLocation == null) {
-                    continue;
-                }
-
-                try {
-                    XMLMapperBuilder xmlMapperBuilder = new XMLMapperBuilder(mapperLocation.getInputStream(),
-                                                                             configuration, mapperLocation.toString(),
-                                                                             configuration.getSqlFragments());
-                    xmlMapperBuilder.parse();
-                } catch (Exception e) {
-                    throw new NestedIOException("Failed to parse mapping resource: '" + mapperLocation + "'", e);
-                } finally {
-                    ErrorContext.instance().reset();
-                }
-
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Parsed mapper file: '" + mapperLocation + "'");
+            start = System.nanoTime();
+            boolean parallel = this.parallelMapperParsing && this.mapperLocations.length > 1;
+            if (parallel) {
+                parseMapperLocationsInParallel(configuration);
+            } else {
+                for (Resource mapperLocation : this.mapperLocations) {
+                    if (mapperLocation == null) {
+                        continue;
+                    }
+                    parseMapper(mapperLocation, newMapperBuilder(mapperLocation, configuration));
                 }
             }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Parsed " + this.mapperLocations.length + " mapper files in "
+                             + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms"
+                             + (parallel ? " (parallel)" : ""));
+            }
+            startupReport.record("SqlSessionFactoryBean.mapperLocations", start);
         } else {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Property 'mapperLocations' was not specified or no matching resources found");
             }
         }
 
-        return this.sqlSessionFactoryBuilder.build(configuration);
+        start = System.nanoTime();
+        SqlSessionFactory sqlSessionFactory = this.sqlSessionFactoryBuilder.build(configuration);
+        startupReport.record("SqlSessionFactoryBean.build", start);
+        return sqlSessionFactory;
+    }
+
+    /**
+     * Reads and validates the mapper XML documents concurrently, which is where most of the
+     * parsing time goes, then registers them into the {@code Configuration} one by one in the
+     * order of {@code mapperLocations}: statements, result maps and {@code <include>}s referring to
+     * other files are resolved exactly as with sequential parsing.
+     */
+    private void parseMapperLocationsInParallel(final Configuration configuration) throws IOException {
+        int threads = this.mapperParsingThreads > 0 ? this.mapperParsingThreads
+                                                    : Runtime.getRuntime().availableProcessors();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("mybatis-mapper-parser-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, this.mapperLocations.length),
+                                                                threadFactory);
+        try {
+            List<Future<XMLMapperBuilder>> builders = new ArrayList<Future<XMLMapperBuilder>>(this.mapperLocations.length);
+            for (final Resource mapperLocation : this.mapperLocations) {
+                if (mapperLocation == null) {
+                    builders.add(null);
+                    continue;
+                }
+                builders.add(executor.submit(new Callable<XMLMapperBuilder>() {
+                    @Override
+                    public XMLMapperBuilder call() throws IOException {
+                        return newMapperBuilder(mapperLocation, configuration);
+                    }
+                }));
+            }
+            for (int i = 0; i < this.mapperLocations.length; i++) {
+                if (builders.get(i) == null) {
+                    continue;
+                }
+                XMLMapperBuilder xmlMapperBuilder;
+                try {
+                    xmlMapperBuilder = builders.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new NestedIOException("Interrupted while parsing mapping resource: '" + this.mapperLocations[i] + "'", e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof IOException ? (IOException) cause
+                            : new NestedIOException("Failed to parse mapping resource: '" + this.mapperLocations[i] + "'", cause);
+                }
+                parseMapper(this.mapperLocations[i], xmlMapperBuilder);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creating the builder reads and validates the XML document, it only reads the
+     * {@code Configuration} and can run on any thread.
+     */
+    private XMLMapperBuilder newMapperBuilder(Resource mapperLocation, Configuration configuration) throws IOException {
+        try {
+            return new XMLMapperBuilder(mapperLocation.getInputStream(), configuration, mapperLocation.toString(),
+                                        configuration.getSqlFragments());
+        } catch (Exception e) {
+            throw new NestedIOException("Failed to parse mapping resource: '" + mapperLocation + "'", e);
+        } finally {
+            ErrorContext.instance().reset();
+        }
+    }
+
+    private void parseMapper(Resource mapperLocation, XMLMapperBuilder xmlMapperBuilder) throws IOException {
+        try {
+            xmlMapperBuilder.parse();
+        } catch (Exception e) {
+            throw new NestedIOException("Failed to parse mapping resource: '" + mapperLocation + "'", e);
+        } finally {
+            ErrorContext.instance().reset();
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Parsed mapper file: '" + mapperLocation + "'");
+        }
     }
 
     // 工厂Bean 接口
     @Override
     public SqlSessionFactory getObject() throws Exception {
-        if (this.sqlSessionFactory == null) {
+        if (this.sqlSessionFactory == null && this.sqlSessionFactoryTask == null) {
             afterPropertiesSet();
         }
 
-        return this.sqlSessionFactory;
+        return awaitSqlSessionFactory();
     }
     @Override
     public Class<? extends SqlSessionFactory> getObjectType() {
@@ -291,13 +486,79 @@ public class SqlSessionFactoryBean
     // Spring 事件监听接口
     @Override
     public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof ContextRefreshedEvent) {
+            // 后台构建时，即使没有Bean用到SqlSessionFactory，构建失败也要让容器启动失败。
+            // 因此子容器（如DispatcherServlet）的Bean不会与后台构建并行
+            try {
+                awaitSqlSessionFactory();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to build SqlSessionFactory in the background", e);
+            }
+        }
         if (failFast && event instanceof ContextRefreshedEvent) {
             // fail-fast -> check all statements are completed
             this.sqlSessionFactory.getConfiguration().getMappedStatementNames();
         }
+        // 子容器（如DispatcherServlet）刷新时也会发布该事件，预热只执行一次
+        if (this.warmUp && event instanceof ContextRefreshedEvent && this.warmUpStarted.compareAndSet(false, true)) {
+            long start = System.nanoTime();
+            try {
+                new ConfigurationWarmUp(this.sqlSessionFactory.getConfiguration(), this.dataSource)
+                        .run(this.warmUpConnections, this.warmUpPrepareStatements);
+            } finally {
+                this.startupReport.record("SqlSessionFactoryBean.warmUp", start);
+            }
+        }
+        // 子容器的事件也会传播到父容器，只处理声明本Bean的容器自身的刷新和关闭
+        if (!isOwnContext(event)) {
+            return;
+        }
+        if (event instanceof ContextRefreshedEvent && this.startupReported.compareAndSet(false, true)) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(this.startupReport.getReport());
+            }
+            this.startupReport.registerMBean(getStartupReportObjectName());
+        } else if (event instanceof ContextClosedEvent && this.startupReported.compareAndSet(true, false)) {
+            this.startupReport.unregisterMBean();
+        }
+    }
+    private boolean isOwnContext(ApplicationEvent event) {
+        return this.applicationContext == null || event.getSource() == this.applicationContext;
+    }
+    /**
+     * The report is named after the id of the context and the name of the bean, so that several
+     * applications in the same JVM (e.g. web applications of one servlet container) and several
+     * factories of one application do not collide.
+     */
+    private ObjectName getStartupReportObjectName() {
+        String context = this.applicationContext != null ? this.applicationContext.getId()
+                                                          : ObjectUtils.identityToString(this);
+        String name = this.beanName != null ? this.beanName : ObjectUtils.identityToString(this);
+        try {
+            return new ObjectName(StartupReport.OBJECT_NAME_PREFIX + ",context=" + ObjectName.quote(context) + ",name="
+                                  + ObjectName.quote(name));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
 
+    // Spring Aware 接口
+    @Override
+    public void setBeanName(String beanName) {
+        this.beanName = beanName;
+    }
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+
+
 
 
 
@@ -380,6 +641,45 @@ public class SqlSessionFactoryBean
     public void setEnvironment(String environment) {
         this.environment = environment;
     }
+    public boolean isParallelMapperParsing() {
+        return parallelMapperParsing;
+    }
+    public void setParallelMapperParsing(boolean parallelMapperParsing) {
+        this.parallelMapperParsing = parallelMapperParsing;
+    }
+    public int getMapperParsingThreads() {
+        return mapperParsingThreads;
+    }
+    public void setMapperParsingThreads(int mapperParsingThreads) {
+        this.mapperParsingThreads = mapperParsingThreads;
+    }
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+    public int getWarmUpConnections() {
+        return warmUpConnections;
+    }
+    public void setWarmUpConnections(int warmUpConnections) {
+        this.warmUpConnections = warmUpConnections;
+    }
+    public boolean isWarmUpPrepareStatements() {
+        return warmUpPrepareStatements;
+    }
+    public void setWarmUpPrepareStatements(boolean warmUpPrepareStatements) {
+        this.warmUpPrepareStatements = warmUpPrepareStatements;
+    }
+    public boolean isBackgroundInitialization() {
+        return backgroundInitialization;
+    }
+    public void setBackgroundInitialization(boolean backgroundInitialization) {
+        this.backgroundInitialization = backgroundInitialization;
+    }
+    public StartupReport getStartupReport() {
+        return startupReport;
+    }
 
 
 }
@@ -17,6 +17,13 @@ package org.mybatis.spring;
 
 import static org.springframework.util.Assert.notNull;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.springframework.dao.support.PersistenceExceptionTranslator;
@@ -25,8 +32,11 @@ import org.springframework.transaction.support.ResourceHolderSupport;
 /**
  * Used to keep current {@code SqlSession} in {@code TransactionSynchronizationManager}.
  * The {@code SqlSessionFactory} that created that {@code SqlSession} is used as a key.
- * {@code ExecutorType} is also kept to be able to check if the user is trying to change it
- * during a TX (that is not allowed) and throw a Exception in that case.
+ * <p>
+ * A transaction can use several {@code ExecutorType}s (e.g. read with SIMPLE, then bulk-write
+ * with BATCH): the holder keeps one session per executor type, all of them using the connection
+ * bound to the transaction. The session it was created with is returned by
+ * {@link #getSqlSession()}.
  *
  * @author Hunter Presnall
  * @author Eduardo Macarron
@@ -42,6 +52,18 @@ public final class SqlSessionHolder extends ResourceHolderSupport {
     // 持久化异常转换器
     private final PersistenceExceptionTranslator exceptionTranslator;
 
+    // 事务中按执行器类型打开的所有会话，共享同一个事务连接
+    private final Map<ExecutorType, SqlSession> sqlSessions = new EnumMap<ExecutorType, SqlSession>(ExecutorType.class);
+
+    // 是否在只读事务中创建
+    private boolean readOnly;
+
+    // 最近一次使用的执行器类型
+    private ExecutorType currentExecutorType;
+
+    // 写缓冲模式下，语句尚未执行（生成的主键尚未回填）的参数对象，按引用比较
+    private Set<Object> pendingWrites;
+
 
     public SqlSessionHolder(SqlSession sqlSession, ExecutorType executorType,
                             PersistenceExceptionTranslator exceptionTranslator) {
@@ -52,6 +74,79 @@ public final class SqlSessionHolder extends ResourceHolderSupport {
         this.sqlSession = sqlSession;
         this.executorType = executorType;
         this.exceptionTranslator = exceptionTranslator;
+        this.sqlSessions.put(executorType, sqlSession);
+        this.currentExecutorType = executorType;
+    }
+
+    /**
+     * Returns the session of the given executor type.
+     *
+     * @param executorType the executor type of the session
+     * @return the session, or {@code null} if none was opened with that executor type
+     */
+    public SqlSession getSqlSession(ExecutorType executorType) {
+        return executorType == this.executorType ? this.sqlSession : this.sqlSessions.get(executorType);
+    }
+
+    /**
+     * Returns all the sessions of the holder, the BATCH one (if any) last.
+     */
+    public Collection<SqlSession> getSqlSessions() {
+        return Collections.unmodifiableCollection(this.sqlSessions.values());
+    }
+
+    /**
+     * Checks if the given session is one of the sessions of this holder.
+     */
+    public boolean containsSqlSession(SqlSession session) {
+        if (session == this.sqlSession) {
+            return true;
+        }
+        return this.sqlSessions.size() > 1 && this.sqlSessions.containsValue(session);
+    }
+
+    void addSqlSession(ExecutorType executorType, SqlSession session) {
+        notNull(session, "SqlSession must not be null");
+        this.sqlSessions.put(executorType, session);
+    }
+
+    /**
+     * Returns if the session was bound to a read-only transaction (or read-only
+     * {@code SUPPORTS} scope): no statement of the holder needs to be flushed at commit.
+     */
+    public boolean isReadOnly() {
+        return this.readOnly;
+    }
+
+    void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    ExecutorType getCurrentExecutorType() {
+        return this.currentExecutorType;
+    }
+
+    void setCurrentExecutorType(ExecutorType currentExecutorType) {
+        this.currentExecutorType = currentExecutorType;
+    }
+
+    void addPendingWrite(Object parameter) {
+        if (this.pendingWrites == null) {
+            this.pendingWrites = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        }
+        this.pendingWrites.add(parameter);
+    }
+
+    boolean isPendingWrite(Object parameter) {
+        return this.pendingWrites != null && this.pendingWrites.contains(parameter);
+    }
+
+    boolean hasPendingWrites() {
+        return this.pendingWrites != null && !this.pendingWrites.isEmpty();
+    }
+
+    void clearPendingWrites() {
+        this.pendingWrites = null;
     }
 
     // getter ...
@@ -18,18 +18,32 @@ package org.mybatis.spring;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.exceptions.PersistenceException;
 import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
 import org.apache.ibatis.session.*;
+import org.mybatis.spring.metrics.StatementMetrics;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
 import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 
-import static java.lang.reflect.Proxy.newProxyInstance;
-import static org.apache.ibatis.reflection.ExceptionUtil.unwrapThrowable;
 import static org.mybatis.spring.SqlSessionUtils.*;
 import static org.springframework.util.Assert.notNull;
 
@@ -48,6 +62,21 @@ import static org.springframework.util.Assert.notNull;
  * This template converts MyBatis PersistenceExceptions into unchecked
  * DataAccessExceptions, using, by default, a {@code MyBatisExceptionTranslator}.
  * <p>
+ * Every {@code SqlSession} method is dispatched directly through {@link #execute(SqlSessionCallback)},
+ * there is no dynamic proxy nor reflective {@code Method#invoke} involved in the call path.
+ * <p>
+ * Outside a Spring transaction, SELECT statements that do not use a second level cache are not
+ * committed before the session is closed, which saves the commit round trip and the local cache
+ * flush on every read. Set {@code forceCommitOnRead} to {@code true} for databases that need a
+ * commit/rollback before {@code close()} even after plain reads.
+ * <p>
+ * With {@code writeBehind}, the writes issued inside a Spring transaction are sent as JDBC batches,
+ * see {@link #setWriteBehind(boolean)}.
+ * <p>
+ * Cursors are returned as {@link ManagedCursor}s, which keep their session open until they are
+ * closed or fully iterated. {@code selectStream} exposes them as {@code java.util.stream.Stream}s,
+ * also available as a return type of mapper interface methods.
+ * <p>
  * Because SqlSessionTemplate is thread safe, a single instance can be shared
  * by all DAOs; there should also be a small memory savings by doing this. This
  * pattern can be used in Spring configuration files as follows:
@@ -70,6 +99,8 @@ import static org.springframework.util.Assert.notNull;
 // SqlSessionTemplate 实现了 SqlSession 接口，所以该类可以用于执行增删改查的功能
 public class SqlSessionTemplate implements SqlSession, DisposableBean {
 
+    private static final Log LOGGER = LogFactory.getLog(SqlSessionTemplate.class);
+
     /** mybatis的SqlSessionFactory */
     private final SqlSessionFactory sqlSessionFactory;
 
@@ -77,7 +108,17 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
 
     private final PersistenceExceptionTranslator exceptionTranslator;
 
-    private final SqlSession sqlSessionProxy;
+    /** 非事务环境下，是否对查询语句也强制执行commit，默认不提交 */
+    private boolean forceCommitOnRead;
+
+    /** 事务中是否将增删改语句缓存起来，在提交前（或需要时）以JDBC批量方式执行 */
+    private boolean writeBehind;
+
+    /** 静态SQL语句参数映射中的对象路径，按语句ID缓存，供writeBehind判断依赖 */
+    private final ConcurrentMap<String, String[]> parameterPaths = new ConcurrentHashMap<String, String[]>();
+
+    /** 语句耗时统计，为空时不统计获取会话的耗时 */
+    private StatementMetrics statementMetrics;
 
 
     public SqlSessionTemplate(SqlSessionFactory sqlSessionFactory) {
@@ -95,9 +136,6 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
         this.sqlSessionFactory = sqlSessionFactory;
         this.executorType = executorType;
         this.exceptionTranslator = exceptionTranslator;
-        this.sqlSessionProxy = (SqlSession) newProxyInstance(SqlSessionFactory.class.getClassLoader(),
-                                                            new Class[] {SqlSession.class},
-                                                            new SqlSessionInterceptor());
     }
 
     public SqlSessionFactory getSqlSessionFactory() {
@@ -112,6 +150,60 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
         return this.exceptionTranslator;
     }
 
+    public boolean isForceCommitOnRead() {
+        return this.forceCommitOnRead;
+    }
+
+    /**
+     * Commits non transactional sessions after SELECT statements too, like every other call.
+     * Needed only by databases that require a commit/rollback before {@code close()}.
+     *
+     * @param forceCommitOnRead {@code true} to restore the commit after every non transactional read
+     */
+    public void setForceCommitOnRead(boolean forceCommitOnRead) {
+        this.forceCommitOnRead = forceCommitOnRead;
+    }
+
+    public boolean isWriteBehind() {
+        return this.writeBehind;
+    }
+
+    /**
+     * Buffers the inserts, updates and deletes issued inside an actual Spring transaction and
+     * sends them as JDBC batches: transactional sessions are opened with {@code ExecutorType.BATCH}
+     * and the pending statements are flushed when the transaction commits, before any SELECT, or
+     * before a write whose parameters reference an object still waiting for its generated keys
+     * (e.g. an address referencing {@code #{user.uid}} right after the user insert). Generated
+     * keys are populated when the batch is flushed, call {@link #flushStatements()} to read them
+     * earlier.
+     * <p>
+     * While buffered, insert/update/delete return {@code BatchExecutor.BATCH_UPDATE_RETURN_VALUE}
+     * instead of the number of affected rows, and constraint violations are only reported at flush
+     * time. The BATCH session shares the transaction connection with the sessions of other
+     * templates. Outside a transaction the template executor type is used as usual.
+     *
+     * @param writeBehind {@code true} to batch the writes of each transaction
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public StatementMetrics getStatementMetrics() {
+        return this.statementMetrics;
+    }
+
+    /**
+     * Records the time spent getting the {@code SqlSession} of every statement in the given
+     * registry, apart from the execution time recorded by {@code StatementMetricsInterceptor}.
+     * Note that the JDBC connection is only fetched when the first statement of a session runs,
+     * so it is part of the acquisition time only for sessions bound to a transaction or request.
+     *
+     * @param statementMetrics the registry to record into, {@code null} to disable
+     */
+    public void setStatementMetrics(StatementMetrics statementMetrics) {
+        this.statementMetrics = statementMetrics;
+    }
+
 
 
     /**
@@ -137,44 +229,359 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
     }
 
     /**
-     * Proxy needed to route MyBatis method calls to the proper SqlSession got
-     * from Spring's Transaction Manager
-     * It also unwraps exceptions thrown by {@code Method#invoke(Object, Object...)} to
-     * pass a {@code PersistenceException} to the {@code PersistenceExceptionTranslator}.
+     * Runs the callback against the proper SqlSession got from Spring's Transaction Manager.
+     * The session is committed when it is not managed by a Spring transaction and it is always
+     * closed (or released) afterwards. {@code PersistenceException}s are passed to the
+     * {@code PersistenceExceptionTranslator}.
+     *
+     * @param action callback that issues the MyBatis calls
+     * @return the value returned by the callback
+     */
+    public <T> T execute(SqlSessionCallback<T> action) {
+        return execute(null, action);
+    }
+
+    /**
+     * Runs the callback issuing the given mapped statement. Knowing the statement lets non
+     * transactional reads skip the commit.
+     *
+     * @param statement id of the mapped statement the callback runs, or {@code null} if unknown
+     * @param action callback that issues the MyBatis calls
+     * @return the value returned by the callback
      */
-    private class SqlSessionInterceptor implements InvocationHandler {
-        @Override
-        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            SqlSession sqlSession = getSqlSession(SqlSessionTemplate.this.sqlSessionFactory,
-                                                  SqlSessionTemplate.this.executorType,
-                                                  SqlSessionTemplate.this.exceptionTranslator);
-
-            try {
-                Object result = method.invoke(sqlSession, args);
-                if (!isSqlSessionTransactional(sqlSession, SqlSessionTemplate.this.sqlSessionFactory)) {
-                    // 即使在非脏会话上也强制提交，因为一些数据库在调用close()之前需要提交/回滚。
-                    sqlSession.commit(true);
+    protected <T> T execute(String statement, SqlSessionCallback<T> action) {
+        notNull(action, "Callback object must not be null");
+        return execute(determineSqlSessionFactory(statement), statement, action);
+    }
+
+    private <T> T execute(SqlSessionFactory sessionFactory, String statement, SqlSessionCallback<T> action) {
+        SqlSessionHolder holder = getSqlSessionHolder(sessionFactory);
+        SqlSession sqlSession = acquireSqlSession(sessionFactory, holder, statement);
+        if (!isSqlSessionTransactional(sqlSession, holder)) {
+            // 新打开的会话可能刚注册到事务中，只有这种情况才需要重新查找
+            holder = TransactionSynchronizationManager.isSynchronizationActive() ? getSqlSessionHolder(sessionFactory) : null;
+        }
+
+        try {
+            T result = action.doInSqlSession(sqlSession);
+            if (this.writeBehind && statement != null) {
+                readPerformed(sessionFactory, sqlSession, statement);
+            }
+            if (!isSqlSessionTransactional(sqlSession, holder) && !isCommitSkippable(statement)) {
+                // 即使在非脏会话上也强制提交，因为一些数据库在调用close()之前需要提交/回滚。
+                sqlSession.commit(true);
+            }
+            if (statement != null) {
+                statementExecuted(sessionFactory, statement);
+            }
+            return result;
+        } catch (PersistenceException p) {
+            if (this.exceptionTranslator != null) {
+                // release the connection to avoid a deadlock if the translator is no loaded. See issue #22
+                closeSqlSession(sqlSession, sessionFactory, holder);
+                sqlSession = null;
+                RuntimeException translated = this.exceptionTranslator.translateExceptionIfPossible(p);
+                if (translated != null) {
+                    throw translated;
                 }
-                return result;
-            } catch (Throwable t) {
-                Throwable unwrapped = unwrapThrowable(t);
-                if (SqlSessionTemplate.this.exceptionTranslator != null && unwrapped instanceof PersistenceException) {
-                    // release the connection to avoid a deadlock if the translator is no loaded. See issue #22
-                    closeSqlSession(sqlSession, SqlSessionTemplate.this.sqlSessionFactory);
-                    sqlSession = null;
-                    Throwable translated = SqlSessionTemplate.this.exceptionTranslator.translateExceptionIfPossible(
-                            (PersistenceException)unwrapped);
-                    if (translated != null) {
-                        unwrapped = translated;
+            }
+            throw p;
+        } finally {
+            if (sqlSession != null) {
+                closeSqlSession(sqlSession, sessionFactory, holder);
+            }
+        }
+    }
+
+
+
+
+
+
+
+    /**
+     * Returns the {@code SqlSessionFactory} the given statement should run with. This
+     * implementation always returns the factory the template was built with, subclasses can
+     * route statements to other factories (e.g. to read replicas). The session is acquired,
+     * committed and released against the returned factory.
+     *
+     * @param statement id of the mapped statement about to run, or {@code null} if unknown
+     * @return the factory to get the session from, never {@code null}
+     */
+    protected SqlSessionFactory determineSqlSessionFactory(String statement) {
+        return this.sqlSessionFactory;
+    }
+
+    /**
+     * Called after the given statement returned without error (and, outside a transaction, was
+     * committed). Does nothing by default; subclasses routing statements in
+     * {@link #determineSqlSessionFactory(String)} can use it to track the statements that actually
+     * ran.
+     *
+     * @param sessionFactory factory the statement ran with
+     * @param statement id of the mapped statement
+     */
+    protected void statementExecuted(SqlSessionFactory sessionFactory, String statement) {
+    }
+
+    private SqlSession acquireSqlSession(SqlSessionFactory sessionFactory, SqlSessionHolder holder, String statement) {
+        ExecutorType type = this.writeBehind ? writeBehindExecutorType() : this.executorType;
+        StatementMetrics metrics = this.statementMetrics;
+        if (metrics == null || statement == null || !metrics.isEnabled()) {
+            return getSqlSession(sessionFactory, type, this.exceptionTranslator, holder);
+        }
+        long start = System.nanoTime();
+        SqlSession sqlSession = getSqlSession(sessionFactory, type, this.exceptionTranslator, holder);
+        metrics.recordAcquisition(statement, System.nanoTime() - start);
+        return sqlSession;
+    }
+
+    /**
+     * Runs an insert, update or delete. With {@code writeBehind}, pending statements are flushed
+     * first when the parameter depends on generated keys that are not populated yet, and the
+     * parameter is remembered as pending when the statement generates keys.
+     */
+    private int executeUpdate(final String statement, final Object parameter, final SqlSessionCallback<Integer> action) {
+        final SqlSessionFactory sessionFactory = determineSqlSessionFactory(statement);
+        if (!this.writeBehind) {
+            return execute(sessionFactory, statement, action);
+        }
+        return execute(sessionFactory, statement, new SqlSessionCallback<Integer>() {
+            @Override
+            public Integer doInSqlSession(SqlSession sqlSession) {
+                SqlSessionHolder holder = writeBehindHolder(sessionFactory, sqlSession);
+                if (holder == null) {
+                    return action.doInSqlSession(sqlSession);
+                }
+
+                MappedStatement ms = getConfiguration().getMappedStatement(statement);
+                if (holder.hasPendingWrites() && dependsOnPendingWrites(ms, parameter, holder)) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Flushing pending statements before '" + statement + "'");
                     }
+                    sqlSession.flushStatements();
+                    holder.clearPendingWrites();
                 }
-                throw unwrapped;
-            } finally {
-                if (sqlSession != null) {
-                    closeSqlSession(sqlSession, SqlSessionTemplate.this.sqlSessionFactory);
+
+                Integer result = action.doInSqlSession(sqlSession);
+
+                // 主键要到批量执行时才回填，记录下接收主键的对象供后续语句判断依赖
+                addPendingWrites(ms, parameter, holder);
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Inside an actual transaction, write-behind sessions use the BATCH executor.
+     */
+    private ExecutorType writeBehindExecutorType() {
+        return TransactionSynchronizationManager.isActualTransactionActive() ? ExecutorType.BATCH : this.executorType;
+    }
+
+    /**
+     * Returns the transaction holder of the session if it buffers writes, {@code null} otherwise.
+     *
+     * @param sessionFactory the factory the session was opened with
+     */
+    private SqlSessionHolder writeBehindHolder(SqlSessionFactory sessionFactory, SqlSession sqlSession) {
+        if (!this.writeBehind) {
+            return null;
+        }
+        SqlSessionHolder holder = getSqlSessionHolder(sessionFactory);
+        if (holder != null && holder.getSqlSession(ExecutorType.BATCH) == sqlSession) {
+            return holder;
+        }
+        return null;
+    }
+
+    /**
+     * The BATCH executor runs the pending statements before any query, so their generated keys are
+     * populated once a SELECT has run.
+     */
+    private void readPerformed(SqlSessionFactory sessionFactory, SqlSession sqlSession, String statement) {
+        SqlSessionHolder holder = writeBehindHolder(sessionFactory, sqlSession);
+        if (holder != null && holder.hasPendingWrites()
+            && getConfiguration().getMappedStatement(statement).getSqlCommandType() == SqlCommandType.SELECT) {
+            holder.clearPendingWrites();
+        }
+    }
+
+    /**
+     * Remembers the objects that receive the keys generated by the statement, the same objects
+     * {@code Jdbc3KeyGenerator} populates: the parameter (or each element of a collection or array
+     * parameter), or the object at the path of a nested key property such as {@code user.uid}.
+     * Other values of the parameter are not tracked, so that shared instances (cached boxed
+     * numbers, interned strings) never look like pending writes.
+     */
+    private void addPendingWrites(MappedStatement ms, Object parameter, SqlSessionHolder holder) {
+        String[] keyProperties = ms.getKeyProperties();
+        if (parameter == null || keyProperties == null || keyProperties.length == 0) {
+            return;
+        }
+        Collection<?> parameters = null;
+        if (parameter instanceof Collection) {
+            parameters = (Collection<?>) parameter;
+        } else if (parameter instanceof Map) {
+            Map<?, ?> parameterMap = (Map<?, ?>) parameter;
+            if (parameterMap.containsKey("collection")) {
+                parameters = (Collection<?>) parameterMap.get("collection");
+            } else if (parameterMap.containsKey("list")) {
+                parameters = (List<?>) parameterMap.get("list");
+            } else if (parameterMap.containsKey("array")) {
+                parameters = Arrays.asList((Object[]) parameterMap.get("array"));
+            }
+        }
+        if (parameters == null) {
+            parameters = Collections.singletonList(parameter);
+        }
+        for (Object element : parameters) {
+            if (element == null) {
+                continue;
+            }
+            MetaObject metaObject = null;
+            for (String keyProperty : keyProperties) {
+                int dot = keyProperty.lastIndexOf('.');
+                if (dot < 0) {
+                    holder.addPendingWrite(element);
+                    continue;
+                }
+                if (metaObject == null) {
+                    metaObject = getConfiguration().newMetaObject(element);
+                }
+                String path = keyProperty.substring(0, dot);
+                Object target = metaObject.hasGetter(path) ? metaObject.getValue(path) : null;
+                if (target != null) {
+                    holder.addPendingWrite(target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the parameter, or any object on the property path of one of its parameter
+     * mappings (e.g. {@code user} for {@code #{user.uid}}), is still waiting for generated keys.
+     * The paths of a statement without dynamic SQL never change, they are computed once.
+     */
+    private boolean dependsOnPendingWrites(MappedStatement ms, Object parameter, SqlSessionHolder holder) {
+        if (parameter == null) {
+            return false;
+        }
+        if (holder.isPendingWrite(parameter)) {
+            return true;
+        }
+        if (getConfiguration().getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+            // 简单类型的参数没有属性路径
+            return false;
+        }
+
+        BoundSql boundSql = null;
+        String[] paths;
+        if (ms.getSqlSource() instanceof DynamicSqlSource) {
+            boundSql = ms.getBoundSql(parameter);
+            paths = parameterPaths(boundSql);
+        } else {
+            paths = this.parameterPaths.get(ms.getId());
+            if (paths == null) {
+                paths = parameterPaths(ms.getBoundSql(parameter));
+                this.parameterPaths.putIfAbsent(ms.getId(), paths);
+            }
+        }
+
+        MetaObject metaObject = null;
+        for (String path : paths) {
+            Object value;
+            if (boundSql != null && boundSql.hasAdditionalParameter(path)) {
+                value = boundSql.getAdditionalParameter(path);
+            } else {
+                if (metaObject == null) {
+                    metaObject = getConfiguration().newMetaObject(parameter);
+                }
+                if (!metaObject.hasGetter(path)) {
+                    continue;
+                }
+                value = metaObject.getValue(path);
+            }
+            if (value != null && holder.isPendingWrite(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the object paths of the parameter mappings, e.g. {@code user} and
+     * {@code user.address} for {@code #{user.address.id}}.
+     */
+    private static String[] parameterPaths(BoundSql boundSql) {
+        Set<String> paths = new LinkedHashSet<String>();
+        for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+            String property = parameterMapping.getProperty();
+            for (int dot = property.indexOf('.'); dot > 0; dot = property.indexOf('.', dot + 1)) {
+                paths.add(property.substring(0, dot));
+            }
+        }
+        return paths.toArray(new String[paths.size()]);
+    }
+
+    /**
+     * Opens a cursor keeping the session open: the session is closed (or released) by the returned
+     * {@code ManagedCursor} instead of right after the call. Errors opening the cursor are handled
+     * as in {@link #execute(String, SqlSessionCallback)}.
+     */
+    private <T> ManagedCursor<T> openCursor(String statement, SqlSessionCallback<Cursor<T>> action) {
+        SqlSessionFactory sessionFactory = determineSqlSessionFactory(statement);
+        SqlSessionHolder holder = getSqlSessionHolder(sessionFactory);
+        SqlSession sqlSession = acquireSqlSession(sessionFactory, holder, statement);
+        if (!isSqlSessionTransactional(sqlSession, holder)) {
+            // 新打开的会话可能刚注册到事务中，只有这种情况才需要重新查找
+            holder = TransactionSynchronizationManager.isSynchronizationActive() ? getSqlSessionHolder(sessionFactory) : null;
+        }
+
+        try {
+            Cursor<T> cursor = action.doInSqlSession(sqlSession);
+            if (this.writeBehind) {
+                readPerformed(sessionFactory, sqlSession, statement);
+            }
+            boolean commitOnClose = !isSqlSessionTransactional(sqlSession, holder)
+                                    && !isCommitSkippable(statement);
+            return new ManagedCursor<T>(cursor, sqlSession, sessionFactory, commitOnClose, this.exceptionTranslator);
+        } catch (PersistenceException p) {
+            closeSqlSession(sqlSession, sessionFactory, holder);
+            if (this.exceptionTranslator != null) {
+                RuntimeException translated = this.exceptionTranslator.translateExceptionIfPossible(p);
+                if (translated != null) {
+                    throw translated;
                 }
             }
+            throw p;
+        } catch (RuntimeException e) {
+            closeSqlSession(sqlSession, sessionFactory, holder);
+            throw e;
+        } catch (Error e) {
+            closeSqlSession(sqlSession, sessionFactory, holder);
+            throw e;
+        }
+    }
+
+    /**
+     * A non transactional session can be closed without commit when it only ran a SELECT, or
+     * anything within a read-only scope, that does not touch a second level cache: there is
+     * nothing to flush and the local cache is discarded with the session anyway. Cached statements
+     * still need the commit to publish their results to the cache.
+     */
+    private boolean isCommitSkippable(String statement) {
+        if (this.forceCommitOnRead) {
+            return false;
         }
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (statement == null) {
+            // 只读范围内不会有需要提交的修改
+            return readOnly;
+        }
+        MappedStatement ms = getConfiguration().getMappedStatement(statement, false);
+        return (readOnly || ms.getSqlCommandType() == SqlCommandType.SELECT)
+               && (ms.getCache() == null || (!ms.isUseCache() && !ms.isFlushCacheRequired()));
     }
 
 
@@ -186,88 +593,214 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
     // 实现SqlSession接口
 
     @Override
-    public <T> T selectOne(String statement) {
-        return this.sqlSessionProxy.<T>selectOne(statement);
+    public <T> T selectOne(final String statement) {
+        return execute(statement, new SqlSessionCallback<T>() {
+            @Override
+            public T doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.<T>selectOne(statement);
+            }
+        });
     }
     @Override
-    public <T> T selectOne(String statement, Object parameter) {
-        return this.sqlSessionProxy.<T>selectOne(statement, parameter);
+    public <T> T selectOne(final String statement, final Object parameter) {
+        return execute(statement, new SqlSessionCallback<T>() {
+            @Override
+            public T doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.<T>selectOne(statement, parameter);
+            }
+        });
     }
     @Override
-    public <K, V> Map<K, V> selectMap(String statement, String mapKey) {
-        return this.sqlSessionProxy.<K, V>selectMap(statement, mapKey);
+    public <K, V> Map<K, V> selectMap(final String statement, final String mapKey) {
+        return execute(statement, new SqlSessionCallback<Map<K, V>>() {
+            @Override
+            public Map<K, V> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.<K, V>selectMap(statement, mapKey);
+            }
+        });
     }
     @Override
-    public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey) {
-        return this.sqlSessionProxy.<K, V>selectMap(statement, parameter, mapKey);
+    public <K, V> Map<K, V> selectMap(final String statement, final Object parameter, final String mapKey) {
+        return execute(statement, new SqlSessionCallback<Map<K, V>>() {
+            @Override
+            public Map<K, V> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.<K, V>selectMap(statement, parameter, mapKey);
+            }
+        });
     }
     @Override
-    public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
-        return this.sqlSessionProxy.<K, V>selectMap(statement, parameter, mapKey, rowBounds);
+    public <K, V> Map<K, V> selectMap(final String statement, final Object parameter, final String mapKey, final RowBounds rowBounds) {
+        return execute(statement, new SqlSessionCallback<Map<K, V>>() {
+            @Override
+            public Map<K, V> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.<K, V>selectMap(statement, parameter, mapKey, rowBounds);
+            }
+        });
     }
     @Override
-    public <T> Cursor<T> selectCursor(String statement) {
-        return this.sqlSessionProxy.selectCursor(statement);
+    public <T> Cursor<T> selectCursor(final String statement) {
+        return openCursor(statement, new SqlSessionCallback<Cursor<T>>() {
+            @Override
+            public Cursor<T> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.selectCursor(statement);
+            }
+        });
     }
     @Override
-    public <T> Cursor<T> selectCursor(String statement, Object parameter) {
-        return this.sqlSessionProxy.selectCursor(statement, parameter);
+    public <T> Cursor<T> selectCursor(final String statement, final Object parameter) {
+        return openCursor(statement, new SqlSessionCallback<Cursor<T>>() {
+            @Override
+            public Cursor<T> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.selectCursor(statement, parameter);
+            }
+        });
     }
     @Override
-    public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
-        return this.sqlSessionProxy.selectCursor(statement, parameter, rowBounds);
+    public <T> Cursor<T> selectCursor(final String statement, final Object parameter, final RowBounds rowBounds) {
+        return openCursor(statement, new SqlSessionCallback<Cursor<T>>() {
+            @Override
+            public Cursor<T> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.selectCursor(statement, parameter, rowBounds);
+            }
+        });
+    }
+    public <T> Stream<T> selectStream(String statement) {
+        return selectStream(statement, null, RowBounds.DEFAULT);
+    }
+    public <T> Stream<T> selectStream(String statement, Object parameter) {
+        return selectStream(statement, parameter, RowBounds.DEFAULT);
+    }
+    /**
+     * Retrieve rows as a {@code Stream} backed by a {@link ManagedCursor}. The stream must be
+     * closed (or fully consumed) to release the session and its connection.
+     *
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param rowBounds Bounds to limit object retrieval
+     * @return a lazily populated stream of mapped objects
+     */
+    public <T> Stream<T> selectStream(final String statement, final Object parameter, final RowBounds rowBounds) {
+        return openCursor(statement, new SqlSessionCallback<Cursor<T>>() {
+            @Override
+            public Cursor<T> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.selectCursor(statement, parameter, rowBounds);
+            }
+        }).stream();
     }
     @Override
-    public <E> List<E> selectList(String statement) {
-        return this.sqlSessionProxy.<E>selectList(statement);
+    public <E> List<E> selectList(final String statement) {
+        return execute(statement, new SqlSessionCallback<List<E>>() {
+            @Override
+            public List<E> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.<E>selectList(statement);
+            }
+        });
     }
     @Override
-    public <E> List<E> selectList(String statement, Object parameter) {
-        return this.sqlSessionProxy.<E>selectList(statement, parameter);
+    public <E> List<E> selectList(final String statement, final Object parameter) {
+        return execute(statement, new SqlSessionCallback<List<E>>() {
+            @Override
+            public List<E> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.<E>selectList(statement, parameter);
+            }
+        });
     }
     @Override
-    public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
-        return this.sqlSessionProxy.<E>selectList(statement, parameter, rowBounds);
+    public <E> List<E> selectList(final String statement, final Object parameter, final RowBounds rowBounds) {
+        return execute(statement, new SqlSessionCallback<List<E>>() {
+            @Override
+            public List<E> doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.<E>selectList(statement, parameter, rowBounds);
+            }
+        });
     }
     @Override
-    public void select(String statement, ResultHandler handler) {
-        this.sqlSessionProxy.select(statement, handler);
+    public void select(final String statement, final ResultHandler handler) {
+        execute(statement, new SqlSessionCallback<Object>() {
+            @Override
+            public Object doInSqlSession(SqlSession sqlSession) {
+                sqlSession.select(statement, handler);
+                return null;
+            }
+        });
     }
     @Override
-    public void select(String statement, Object parameter, ResultHandler handler) {
-        this.sqlSessionProxy.select(statement, parameter, handler);
+    public void select(final String statement, final Object parameter, final ResultHandler handler) {
+        execute(statement, new SqlSessionCallback<Object>() {
+            @Override
+            public Object doInSqlSession(SqlSession sqlSession) {
+                sqlSession.select(statement, parameter, handler);
+                return null;
+            }
+        });
     }
     @Override
-    public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
-        this.sqlSessionProxy.select(statement, parameter, rowBounds, handler);
+    public void select(final String statement, final Object parameter, final RowBounds rowBounds, final ResultHandler handler) {
+        execute(statement, new SqlSessionCallback<Object>() {
+            @Override
+            public Object doInSqlSession(SqlSession sqlSession) {
+                sqlSession.select(statement, parameter, rowBounds, handler);
+                return null;
+            }
+        });
     }
     @Override
-    public int insert(String statement) {
-        return this.sqlSessionProxy.insert(statement);
+    public int insert(final String statement) {
+        return executeUpdate(statement, null, new SqlSessionCallback<Integer>() {
+            @Override
+            public Integer doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.insert(statement);
+            }
+        });
     }
     @Override
-    public int insert(String statement, Object parameter) {
-        return this.sqlSessionProxy.insert(statement, parameter);
+    public int insert(final String statement, final Object parameter) {
+        return executeUpdate(statement, parameter, new SqlSessionCallback<Integer>() {
+            @Override
+            public Integer doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.insert(statement, parameter);
+            }
+        });
     }
     @Override
-    public int update(String statement) {
-        return this.sqlSessionProxy.update(statement);
+    public int update(final String statement) {
+        return executeUpdate(statement, null, new SqlSessionCallback<Integer>() {
+            @Override
+            public Integer doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.update(statement);
+            }
+        });
     }
     @Override
-    public int update(String statement, Object parameter) {
-        return this.sqlSessionProxy.update(statement, parameter);
+    public int update(final String statement, final Object parameter) {
+        return executeUpdate(statement, parameter, new SqlSessionCallback<Integer>() {
+            @Override
+            public Integer doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.update(statement, parameter);
+            }
+        });
     }
     @Override
-    public int delete(String statement) {
-        return this.sqlSessionProxy.delete(statement);
+    public int delete(final String statement) {
+        return executeUpdate(statement, null, new SqlSessionCallback<Integer>() {
+            @Override
+            public Integer doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.delete(statement);
+            }
+        });
     }
     @Override
-    public int delete(String statement, Object parameter) {
-        return this.sqlSessionProxy.delete(statement, parameter);
+    public int delete(final String statement, final Object parameter) {
+        return executeUpdate(statement, parameter, new SqlSessionCallback<Integer>() {
+            @Override
+            public Integer doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.delete(statement, parameter);
+            }
+        });
     }
     @Override
     public <T> T getMapper(Class<T> type) {
-        return getConfiguration().getMapper(type, this);
+        return StreamingMapperProxy.wrapIfNecessary(type, getConfiguration().getMapper(type, this), this);
     }
     @Override
     public void commit() {
@@ -291,7 +824,13 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
     }
     @Override
     public void clearCache() {
-        this.sqlSessionProxy.clearCache();
+        execute(new SqlSessionCallback<Object>() {
+            @Override
+            public Object doInSqlSession(SqlSession sqlSession) {
+                sqlSession.clearCache();
+                return null;
+            }
+        });
     }
     @Override
     public Configuration getConfiguration() {
@@ -299,12 +838,28 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
     }
     @Override
     public Connection getConnection() {
-        return this.sqlSessionProxy.getConnection();
+        return execute(new SqlSessionCallback<Connection>() {
+            @Override
+            public Connection doInSqlSession(SqlSession sqlSession) {
+                return sqlSession.getConnection();
+            }
+        });
     }
     @Override
     public List<BatchResult> flushStatements() {
-        return this.sqlSessionProxy.flushStatements();
+        final SqlSessionFactory sessionFactory = determineSqlSessionFactory(null);
+        return execute(sessionFactory, null, new SqlSessionCallback<List<BatchResult>>() {
+            @Override
+            public List<BatchResult> doInSqlSession(SqlSession sqlSession) {
+                List<BatchResult> results = sqlSession.flushStatements();
+                SqlSessionHolder holder = writeBehindHolder(sessionFactory, sqlSession);
+                if (holder != null) {
+                    holder.clearPendingWrites();
+                }
+                return results;
+            }
+        });
     }
 
 
-}
+}
\ No newline at end of file
@@ -23,6 +23,7 @@ import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.core.NamedThreadLocal;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.dao.support.PersistenceExceptionTranslator;
@@ -30,11 +31,21 @@ import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.springframework.util.Assert.notNull;
 
 /**
  * Handles MyBatis SqlSession life cycle. It can register and get SqlSessions from
  * Spring {@code TransactionSynchronizationManager}. Also works if no transaction is active.
+ * <p>
+ * Outside a transaction, a {@code SqlSession} can also be bound to the current thread for a whole
+ * unit of work (typically an HTTP request, see
+ * {@link org.mybatis.spring.support.SqlSessionPerRequestFilter}) with
+ * {@link #bindRequestSqlSession}. Non transactional calls then reuse that session and its
+ * connection until {@link #releaseRequestSqlSession} is called. The session is only opened by the
+ * first call that needs it, and its local cache is cleared after every call.
  *
  * @author Hunter Presnall 
  * @author Eduardo Macarron
@@ -47,6 +58,10 @@ public final class SqlSessionUtils {
     private static final String NO_SQL_SESSION_FACTORY_SPECIFIED = "No SqlSessionFactory specified";
     private static final String NO_SQL_SESSION_SPECIFIED = "No SqlSession specified";
 
+    /** 当前线程（请求）绑定的非事务SqlSession，key为创建会话的SqlSessionFactory */
+    private static final ThreadLocal<Map<SqlSessionFactory, RequestSqlSession>> requestSqlSessions =
+            new NamedThreadLocal<Map<SqlSessionFactory, RequestSqlSession>>("Request scoped MyBatis SqlSessions");
+
     /**
      * This class can't be instantiated, exposes static utility methods only.
      */
@@ -79,12 +94,36 @@ public final class SqlSessionUtils {
      */
     public static SqlSession getSqlSession(SqlSessionFactory sessionFactory, ExecutorType executorType, PersistenceExceptionTranslator exceptionTranslator) {
 
+        notNull(sessionFactory, NO_SQL_SESSION_FACTORY_SPECIFIED);
+
+        return getSqlSession(sessionFactory, executorType, exceptionTranslator, getSqlSessionHolder(sessionFactory));
+    }
+
+    /**
+     * Same as {@link #getSqlSession(SqlSessionFactory, ExecutorType, PersistenceExceptionTranslator)},
+     * with the holder already looked up by the caller with {@link #getSqlSessionHolder}, so that a
+     * single {@code TransactionSynchronizationManager} lookup serves to get, commit and release
+     * the session. When the returned session is not the one of {@code holder}, a new session may
+     * have been registered with the transaction and the holder must be looked up again.
+     *
+     * @param sessionFactory a MyBatis {@code SqlSessionFactory} to create new sessions
+     * @param executorType The executor type of the SqlSession to create
+     * @param exceptionTranslator Optional. Translates SqlSession.commit() exceptions to Spring exceptions.
+     * @param holder the holder bound to the current transaction, or {@code null} if none
+     * @return the transactional, request scoped or new session
+     */
+    public static SqlSession getSqlSession(SqlSessionFactory sessionFactory, ExecutorType executorType,
+                                           PersistenceExceptionTranslator exceptionTranslator, SqlSessionHolder holder) {
+
         notNull(sessionFactory, NO_SQL_SESSION_FACTORY_SPECIFIED);
         notNull(executorType, NO_EXECUTOR_TYPE_SPECIFIED);
 
-        SqlSessionHolder holder = (SqlSessionHolder) TransactionSynchronizationManager.getResource(sessionFactory);
+        SqlSession session = sessionHolder(sessionFactory, executorType, exceptionTranslator, holder);
+        if (session != null) {
+            return session;
+        }
 
-        SqlSession session = sessionHolder(executorType, holder);
+        session = requestSqlSession(sessionFactory, executorType);
         if (session != null) {
             return session;
         }
@@ -112,12 +151,37 @@ public final class SqlSessionUtils {
         notNull(session, NO_SQL_SESSION_SPECIFIED);
         notNull(sessionFactory, NO_SQL_SESSION_FACTORY_SPECIFIED);
 
-        SqlSessionHolder holder = (SqlSessionHolder)TransactionSynchronizationManager.getResource(sessionFactory);
-        if ((holder != null) && (holder.getSqlSession() == session)) {
+        closeSqlSession(session, sessionFactory, getSqlSessionHolder(sessionFactory));
+    }
+
+    /**
+     * Same as {@link #closeSqlSession(SqlSession, SqlSessionFactory)}, with the holder already
+     * looked up by the caller with {@link #getSqlSessionHolder}.
+     *
+     * @param session the session to close or release
+     * @param sessionFactory the SqlSessionFactory which the SqlSession was built with
+     * @param holder the holder bound to the current transaction, or {@code null} if none
+     */
+    public static void closeSqlSession(SqlSession session, SqlSessionFactory sessionFactory, SqlSessionHolder holder) {
+        notNull(session, NO_SQL_SESSION_SPECIFIED);
+        notNull(sessionFactory, NO_SQL_SESSION_FACTORY_SPECIFIED);
+
+        if (isSqlSessionTransactional(session, holder)) {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Releasing transactional SqlSession [" + session + "]");
             }
             holder.released();
+            return;
+        }
+
+        holder = requestSessionHolder(sessionFactory);
+        if ((holder != null) && (holder.getSqlSession() == session)) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Releasing request scoped SqlSession [" + session + "]");
+            }
+            // 每次调用都是独立的工作单元，不能让后续调用读到一级缓存中的旧数据
+            session.clearCache();
+            holder.released();
         } else {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Closing non transactional SqlSession [" + session + "]");
@@ -126,6 +190,82 @@ public final class SqlSessionUtils {
         }
     }
 
+    /**
+     * Binds a {@code SqlSession} to the current thread, so that every non transactional call made
+     * with the same {@code SqlSessionFactory} and {@code ExecutorType} reuses it (and its JDBC
+     * connection) until {@link #releaseRequestSqlSession} is called. Calls made inside an actual
+     * Spring transaction keep using the transactional session.
+     * <p>
+     * The session is opened by the first call that needs it, so a unit of work that never reaches
+     * the database does not take a connection. Its connection is fetched right away, and only out
+     * of any transaction synchronization, so that it is never bound to (and released by) a
+     * transaction scope; calls made while a synchronization is active without a session get their
+     * own session as usual. The local cache is cleared after every call, so each call still sees
+     * the changes committed by others in between, as with one session per call.
+     *
+     * @param sessionFactory a MyBatis {@code SqlSessionFactory} to create the session
+     * @param executorType The executor type of the SqlSession to create
+     * @param exceptionTranslator Optional. Kept with the session for later translations.
+     * @return false if a session was already bound for this factory, in which case nothing is done
+     */
+    public static boolean bindRequestSqlSession(SqlSessionFactory sessionFactory, ExecutorType executorType,
+                                                PersistenceExceptionTranslator exceptionTranslator) {
+        notNull(sessionFactory, NO_SQL_SESSION_FACTORY_SPECIFIED);
+        notNull(executorType, NO_EXECUTOR_TYPE_SPECIFIED);
+
+        Map<SqlSessionFactory, RequestSqlSession> requestSessions = requestSqlSessions.get();
+        if (requestSessions == null) {
+            requestSessions = new HashMap<SqlSessionFactory, RequestSqlSession>(4);
+            requestSqlSessions.set(requestSessions);
+        } else if (requestSessions.containsKey(sessionFactory)) {
+            return false;
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Binding request scope for SqlSessionFactory [" + sessionFactory + "]");
+        }
+        requestSessions.put(sessionFactory, new RequestSqlSession(executorType, exceptionTranslator));
+        return true;
+    }
+
+    /**
+     * Checks if a request scoped {@code SqlSession} is bound for the given factory.
+     *
+     * @param sessionFactory the SqlSessionFactory the session was bound with
+     * @return true if {@link #bindRequestSqlSession} was called and the session is not released yet
+     */
+    public static boolean hasRequestSqlSession(SqlSessionFactory sessionFactory) {
+        notNull(sessionFactory, NO_SQL_SESSION_FACTORY_SPECIFIED);
+
+        Map<SqlSessionFactory, RequestSqlSession> requestSessions = requestSqlSessions.get();
+        return requestSessions != null && requestSessions.containsKey(sessionFactory);
+    }
+
+    /**
+     * Unbinds and closes the request scoped {@code SqlSession} of the given factory, if any.
+     * Uncommitted changes are rolled back and the connection is given back to the {@code DataSource}.
+     *
+     * @param sessionFactory the SqlSessionFactory the session was bound with
+     */
+    public static void releaseRequestSqlSession(SqlSessionFactory sessionFactory) {
+        notNull(sessionFactory, NO_SQL_SESSION_FACTORY_SPECIFIED);
+
+        Map<SqlSessionFactory, RequestSqlSession> requestSessions = requestSqlSessions.get();
+        if (requestSessions == null) {
+            return;
+        }
+        RequestSqlSession requestSession = requestSessions.remove(sessionFactory);
+        if (requestSessions.isEmpty()) {
+            requestSqlSessions.remove();
+        }
+        if (requestSession != null && requestSession.holder != null) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Closing request scoped SqlSession [" + requestSession.holder.getSqlSession() + "]");
+            }
+            requestSession.holder.getSqlSession().close();
+        }
+    }
+
     /**
      * Returns if the {@code SqlSession} passed as an argument is being managed by Spring
      *
@@ -137,9 +277,28 @@ public final class SqlSessionUtils {
         notNull(session, NO_SQL_SESSION_SPECIFIED);
         notNull(sessionFactory, NO_SQL_SESSION_FACTORY_SPECIFIED);
 
-        SqlSessionHolder holder = (SqlSessionHolder) TransactionSynchronizationManager.getResource(sessionFactory);
+        return isSqlSessionTransactional(session, getSqlSessionHolder(sessionFactory));
+    }
 
-        return (holder != null) && (holder.getSqlSession() == session);
+    /**
+     * Returns if the {@code SqlSession} passed as an argument is the one of the given holder.
+     *
+     * @param session a MyBatis SqlSession to check
+     * @param holder the holder bound to the current transaction, or {@code null} if none
+     * @return true if session is transactional, otherwise false
+     */
+    public static boolean isSqlSessionTransactional(SqlSession session, SqlSessionHolder holder) {
+        return (holder != null) && holder.containsSqlSession(session);
+    }
+
+    /**
+     * Returns the holder of the session bound to the current transaction for the given factory.
+     *
+     * @param sessionFactory the SqlSessionFactory the session was built with
+     * @return the holder, or {@code null} if no session is bound
+     */
+    public static SqlSessionHolder getSqlSessionHolder(SqlSessionFactory sessionFactory) {
+        return (SqlSessionHolder) TransactionSynchronizationManager.getResource(sessionFactory);
     }
 
     /**
@@ -167,6 +326,7 @@ public final class SqlSessionUtils {
                 }
 
                 holder = new SqlSessionHolder(session, executorType, exceptionTranslator);
+                holder.setReadOnly(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
                 TransactionSynchronizationManager.bindResource(sessionFactory, holder);
                 TransactionSynchronizationManager.registerSynchronization(
                         new SqlSessionSynchronization(holder, sessionFactory));
@@ -191,25 +351,125 @@ public final class SqlSessionUtils {
         }
     }
 
-    private static SqlSession sessionHolder(ExecutorType executorType, SqlSessionHolder holder) {
+    private static SqlSession sessionHolder(SqlSessionFactory sessionFactory, ExecutorType executorType,
+                                            PersistenceExceptionTranslator exceptionTranslator, SqlSessionHolder holder) {
         SqlSession session = null;
         if (holder != null && holder.isSynchronizedWithTransaction()) {
-            if (holder.getExecutorType() != executorType) {
-                throw new TransientDataAccessResourceException(
-                        "Cannot change the ExecutorType when there is an existing transaction");
+            session = holder.getSqlSession(executorType);
+            if (session == null) {
+                // 同一事务中使用新的执行器类型，打开新的会话，它使用的还是事务绑定的连接
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Opening SqlSession with ExecutorType " + executorType + " in current transaction");
+                }
+                session = sessionFactory.openSession(executorType);
+                holder.addSqlSession(executorType, session);
+            }
+
+            if (holder.getCurrentExecutorType() != executorType) {
+                switchExecutorType(holder, executorType, session, exceptionTranslator);
             }
 
             holder.requested();
 
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Fetched SqlSession [" + holder.getSqlSession() + "] from current transaction");
+                LOGGER.debug("Fetched SqlSession [" + session + "] from current transaction");
             }
-
-            session = holder.getSqlSession();
         }
         return session;
     }
 
+    /**
+     * Before leaving the BATCH session, its pending statements are flushed so that the other
+     * sessions see them. The local cache of the session being switched to is cleared, as the
+     * other sessions may have changed the data it cached.
+     */
+    private static void switchExecutorType(SqlSessionHolder holder, ExecutorType executorType, SqlSession session,
+                                           PersistenceExceptionTranslator exceptionTranslator) {
+        try {
+            if (holder.getCurrentExecutorType() == ExecutorType.BATCH) {
+                holder.getSqlSession(ExecutorType.BATCH).flushStatements();
+                holder.clearPendingWrites();
+            }
+            session.clearCache();
+        } catch (PersistenceException p) {
+            if (exceptionTranslator != null) {
+                DataAccessException translated = exceptionTranslator.translateExceptionIfPossible(p);
+                if (translated != null) {
+                    throw translated;
+                }
+            }
+            throw p;
+        }
+        holder.setCurrentExecutorType(executorType);
+    }
+
+    private static SqlSessionHolder requestSessionHolder(SqlSessionFactory sessionFactory) {
+        Map<SqlSessionFactory, RequestSqlSession> requestSessions = requestSqlSessions.get();
+        RequestSqlSession requestSession = requestSessions != null ? requestSessions.get(sessionFactory) : null;
+        return requestSession != null ? requestSession.holder : null;
+    }
+
+    private static SqlSession requestSqlSession(SqlSessionFactory sessionFactory, ExecutorType executorType) {
+        // 先检查请求会话（通常没有），避免每次都查询事务状态
+        Map<SqlSessionFactory, RequestSqlSession> requestSessions = requestSqlSessions.get();
+        RequestSqlSession requestSession = requestSessions != null ? requestSessions.get(sessionFactory) : null;
+        if (requestSession == null || requestSession.executorType != executorType
+            || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+
+        SqlSessionHolder holder = requestSession.holder;
+        if (holder == null) {
+            // 同步激活时获取的连接会被绑定到当前同步范围并在其结束时释放，此时不打开请求会话
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                return null;
+            }
+            holder = openRequestSqlSession(sessionFactory, requestSession);
+        }
+
+        holder.requested();
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Fetched SqlSession [" + holder.getSqlSession() + "] from current request");
+        }
+        return holder.getSqlSession();
+    }
+
+    private static SqlSessionHolder openRequestSqlSession(SqlSessionFactory sessionFactory, RequestSqlSession requestSession) {
+        SqlSession session = sessionFactory.openSession(requestSession.executorType);
+        try {
+            session.getConnection();
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Opened request scoped SqlSession [" + session + "]");
+        }
+        requestSession.holder = new SqlSessionHolder(session, requestSession.executorType, requestSession.exceptionTranslator);
+        return requestSession.holder;
+    }
+
+    /**
+     * A request scope bound with {@link #bindRequestSqlSession}, its session is opened on first use.
+     */
+    private static final class RequestSqlSession {
+
+        private final ExecutorType executorType;
+
+        private final PersistenceExceptionTranslator exceptionTranslator;
+
+        /** 第一次使用时才创建 */
+        private SqlSessionHolder holder;
+
+        RequestSqlSession(ExecutorType executorType, PersistenceExceptionTranslator exceptionTranslator) {
+            this.executorType = executorType;
+            this.exceptionTranslator = exceptionTranslator;
+        }
+
+    }
+
     /**
      * Callback for cleaning up resources. It cleans TransactionSynchronizationManager and
      * also commits and closes the {@code SqlSession}.
@@ -276,17 +536,18 @@ public final class SqlSessionUtils {
         public void beforeCommit(boolean readOnly) {
             // Connection commit or rollback will be handled by ConnectionSynchronization or
             // DataSourceTransactionManager.
-            // But, do cleanup the SqlSession / Executor, including flushing BATCH statements so
-            // they are actually executed.
-            // SpringManagedTransaction will no-op the commit over the jdbc connection
-            // TODO This updates 2nd level caches but the tx may be rolledback later on!
-            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // But, do flush the BATCH statements so they are actually executed (and fail) before
+            // the connection is committed. The sessions themselves are committed in afterCompletion,
+            // once the transaction outcome is known, so that 2nd level caches are only updated
+            // when the transaction actually commits.
+            // 只读事务中没有需要执行的批量语句
+            if (TransactionSynchronizationManager.isActualTransactionActive() && !readOnly && !this.holder.isReadOnly()) {
                 try {
                     if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("Transaction synchronization committing SqlSession [" + this.holder.getSqlSession()
+                        LOGGER.debug("Transaction synchronization flushing SqlSession [" + this.holder.getSqlSession()
                                      + "]");
                     }
-                    this.holder.getSqlSession().commit();
+                    flushSqlSessions();
                 } catch (PersistenceException p) {
                     if (this.holder.getPersistenceExceptionTranslator() != null) {
                         DataAccessException translated = this.holder.getPersistenceExceptionTranslator()
@@ -305,8 +566,9 @@ public final class SqlSessionUtils {
          */
         @Override
         public void beforeCompletion() {
-            // Issue #18 Close SqlSession and deregister it now
-            // because afterCompletion may be called from a different thread
+            // Issue #18 deregister the SqlSession now because afterCompletion may be called from
+            // a different thread. It is closed in afterCompletion, after publishing or discarding
+            // its 2nd level cache entries.
             if (!this.holder.isOpen()) {
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Transaction synchronization deregistering SqlSession [" + this.holder.getSqlSession()
@@ -314,11 +576,6 @@ public final class SqlSessionUtils {
                 }
                 TransactionSynchronizationManager.unbindResource(sessionFactory);
                 this.holderActive = false;
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug(
-                            "Transaction synchronization closing SqlSession [" + this.holder.getSqlSession() + "]");
-                }
-                this.holder.getSqlSession().close();
             }
         }
 
@@ -336,13 +593,84 @@ public final class SqlSessionUtils {
                 }
                 TransactionSynchronizationManager.unbindResourceIfPossible(sessionFactory);
                 this.holderActive = false;
+            }
+            try {
+                // SpringManagedTransaction no-ops the commit/rollback over the jdbc connection, this
+                // only publishes (on commit) or discards (otherwise) the pending 2nd level cache entries
+                if (status == STATUS_COMMITTED) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Transaction synchronization committing SqlSession [" + this.holder.getSqlSession()
+                                     + "]");
+                    }
+                    commitSqlSessions();
+                } else {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Transaction synchronization rolling back SqlSession [" + this.holder.getSqlSession()
+                                     + "]");
+                    }
+                    rollbackSqlSessions();
+                }
+            } catch (RuntimeException e) {
+                // 事务已经结束，这里的异常只影响二级缓存，记录后继续关闭会话
+                LOGGER.warn("Could not complete SqlSession [" + this.holder.getSqlSession() + "] after transaction completion: " + e);
+            } finally {
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug(
                             "Transaction synchronization closing SqlSession [" + this.holder.getSqlSession() + "]");
                 }
-                this.holder.getSqlSession().close();
+                try {
+                    closeSqlSessions();
+                } finally {
+                    this.holder.reset();
+                }
+            }
+        }
+
+        /**
+         * Flushes the BATCH session first, so that its statements are executed before the
+         * connection is committed.
+         */
+        private void flushSqlSessions() {
+            SqlSession batchSession = this.holder.getSqlSession(ExecutorType.BATCH);
+            if (batchSession != null) {
+                batchSession.flushStatements();
+                this.holder.clearPendingWrites();
+            }
+            for (SqlSession session : this.holder.getSqlSessions()) {
+                if (session != batchSession) {
+                    session.flushStatements();
+                }
+            }
+        }
+
+        private void commitSqlSessions() {
+            for (SqlSession session : this.holder.getSqlSessions()) {
+                session.commit();
+            }
+        }
+
+        private void rollbackSqlSessions() {
+            for (SqlSession session : this.holder.getSqlSessions()) {
+                // force, the caching executor only discards its pending entries on a required rollback
+                session.rollback(true);
+            }
+        }
+
+        private void closeSqlSessions() {
+            RuntimeException failure = null;
+            for (SqlSession session : this.holder.getSqlSessions()) {
+                try {
+                    session.close();
+                } catch (RuntimeException e) {
+                    // 继续关闭其余的会话
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
             }
-            this.holder.reset();
         }
     }
 
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import static java.lang.reflect.Proxy.newProxyInstance;
+import static org.apache.ibatis.reflection.ExceptionUtil.unwrapThrowable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * Adds {@code java.util.stream.Stream} return type support to the mapper proxies built by MyBatis,
+ * which only know about {@code Cursor}. Methods returning a {@code Stream} are run with
+ * {@link SqlSessionTemplate#selectStream(String, Object, RowBounds)}, any other method goes to the
+ * original MyBatis mapper proxy. Their statements must be declared in a mapper XML with a
+ * {@code resultType} or {@code resultMap}: the annotation parser of MyBatis takes {@code Stream}
+ * itself as the result type.
+ *
+ * @see ManagedCursor
+ */
+final class StreamingMapperProxy implements InvocationHandler {
+
+    private final Object mapper;
+
+    private final SqlSessionTemplate sqlSessionTemplate;
+
+    private final Map<Method, StreamMethod> streamMethods;
+
+    private StreamingMapperProxy(Object mapper, SqlSessionTemplate sqlSessionTemplate,
+                                 Map<Method, StreamMethod> streamMethods) {
+        this.mapper = mapper;
+        this.sqlSessionTemplate = sqlSessionTemplate;
+        this.streamMethods = streamMethods;
+    }
+
+    /**
+     * Wraps the mapper when its interface declares methods returning {@code Stream}, otherwise the
+     * mapper is returned as is.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T wrapIfNecessary(Class<T> mapperInterface, T mapper, SqlSessionTemplate sqlSessionTemplate) {
+        Map<Method, StreamMethod> streamMethods = null;
+        for (Method method : mapperInterface.getMethods()) {
+            if (Stream.class.equals(method.getReturnType())) {
+                if (streamMethods == null) {
+                    streamMethods = new HashMap<Method, StreamMethod>();
+                }
+                streamMethods.put(method, new StreamMethod(mapperInterface, method,
+                                                           sqlSessionTemplate.getConfiguration()));
+            }
+        }
+        if (streamMethods == null) {
+            return mapper;
+        }
+        return (T) newProxyInstance(mapperInterface.getClassLoader(), new Class[] {mapperInterface},
+                                    new StreamingMapperProxy(mapper, sqlSessionTemplate, streamMethods));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        StreamMethod streamMethod = this.streamMethods.get(method);
+        if (streamMethod != null) {
+            return this.sqlSessionTemplate.selectStream(streamMethod.statement,
+                                                        streamMethod.paramNameResolver.getNamedParams(args),
+                                                        streamMethod.rowBounds(args));
+        }
+        try {
+            return method.invoke(this.mapper, args);
+        } catch (Throwable t) {
+            throw unwrapThrowable(t);
+        }
+    }
+
+    private static final class StreamMethod {
+
+        private final String statement;
+
+        private final ParamNameResolver paramNameResolver;
+
+        private final int rowBoundsIndex;
+
+        StreamMethod(Class<?> mapperInterface, Method method, Configuration configuration) {
+            String statement = mapperInterface.getName() + "." + method.getName();
+            if (!configuration.hasStatement(statement)) {
+                statement = method.getDeclaringClass().getName() + "." + method.getName();
+            }
+            if (!configuration.hasStatement(statement)
+                || configuration.getMappedStatement(statement).getSqlCommandType() != SqlCommandType.SELECT) {
+                throw new BindingException("Method returning a Stream must be bound to a select statement: " + statement);
+            }
+            // MyBatis的注解解析不认识Stream，会把Stream本身当作结果类型，这类语句需要在XML中声明resultType
+            List<ResultMap> resultMaps = configuration.getMappedStatement(statement).getResultMaps();
+            if (!resultMaps.isEmpty() && Stream.class.equals(resultMaps.get(0).getType())) {
+                throw new BindingException("Method returning a Stream must declare its result type in a mapper XML: "
+                                           + statement);
+            }
+            this.statement = statement;
+            this.paramNameResolver = new ParamNameResolver(configuration, method);
+
+            int rowBoundsIndex = -1;
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (RowBounds.class.isAssignableFrom(parameterTypes[i])) {
+                    rowBoundsIndex = i;
+                    break;
+                }
+            }
+            this.rowBoundsIndex = rowBoundsIndex;
+        }
+
+        RowBounds rowBounds(Object[] args) {
+            if (this.rowBoundsIndex < 0 || args[this.rowBoundsIndex] == null) {
+                return RowBounds.DEFAULT;
+            }
+            return (RowBounds) args[this.rowBoundsIndex];
+        }
+    }
+
+}
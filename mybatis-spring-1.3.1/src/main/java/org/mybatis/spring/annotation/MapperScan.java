@@ -92,4 +92,7 @@ public @interface MapperScan {
     /** 配置生成Mapper接口代理实现的工厂Bean，默认使用MapperFactoryBean实现 */
     Class<? extends MapperFactoryBean> factoryBean() default MapperFactoryBean.class;
 
+    /** 是否延迟初始化mapper：mapper Bean为lazy-init，容器刷新完成前才统一绑定到Configuration */
+    boolean lazyInitialization() default false;
+
 }
@@ -17,6 +17,7 @@ package org.mybatis.spring.annotation;
 
 import org.mybatis.spring.mapper.ClassPathMapperScanner;
 import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.mybatis.spring.metrics.StartupReport;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanNameGenerator;
@@ -80,6 +81,7 @@ public class MapperScannerRegistrar implements ImportBeanDefinitionRegistrar, Re
             scanner.setMapperFactoryBean(BeanUtils.instantiateClass(mapperFactoryBeanClass));
         }
 
+        scanner.setLazyInitialization(annoAttrs.getBoolean("lazyInitialization"));
         scanner.setSqlSessionTemplateBeanName(annoAttrs.getString("sqlSessionTemplateRef"));
         scanner.setSqlSessionFactoryBeanName(annoAttrs.getString("sqlSessionFactoryRef"));
 
@@ -98,7 +100,9 @@ public class MapperScannerRegistrar implements ImportBeanDefinitionRegistrar, Re
             basePackages.add(ClassUtils.getPackageName(clazz));
         }
         scanner.registerFilters();
+        long start = System.nanoTime();
         scanner.doScan(StringUtils.toStringArray(basePackages));
+        StartupReport.recordScan(registry, "MapperScannerRegistrar.scan", start);
     }
 
     @Override
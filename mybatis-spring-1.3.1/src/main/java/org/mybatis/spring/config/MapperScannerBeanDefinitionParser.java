@@ -17,6 +17,7 @@ package org.mybatis.spring.config;
 
 import org.mybatis.spring.mapper.ClassPathMapperScanner;
 import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.mybatis.spring.metrics.StartupReport;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.support.BeanNameGenerator;
@@ -49,6 +50,7 @@ public class MapperScannerBeanDefinitionParser implements BeanDefinitionParser {
     private static final String ATTRIBUTE_NAME_GENERATOR = "name-generator";
     private static final String ATTRIBUTE_TEMPLATE_REF = "template-ref";
     private static final String ATTRIBUTE_FACTORY_REF = "factory-ref";
+    private static final String ATTRIBUTE_LAZY_INITIALIZATION = "lazy-initialization";
 
     /**
      * {@inheritDoc}
@@ -85,10 +87,14 @@ public class MapperScannerBeanDefinitionParser implements BeanDefinitionParser {
         scanner.setSqlSessionTemplateBeanName(sqlSessionTemplateBeanName);
         String sqlSessionFactoryBeanName = element.getAttribute(ATTRIBUTE_FACTORY_REF);
         scanner.setSqlSessionFactoryBeanName(sqlSessionFactoryBeanName);
+        String lazyInitialization = element.getAttribute(ATTRIBUTE_LAZY_INITIALIZATION);
+        scanner.setLazyInitialization(Boolean.valueOf(lazyInitialization));
         scanner.registerFilters();
         String basePackage = element.getAttribute(ATTRIBUTE_BASE_PACKAGE);
+        long start = System.nanoTime();
         scanner.scan(StringUtils.tokenizeToStringArray(basePackage,
                                                        ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS));
+        StartupReport.recordScan(parserContext.getRegistry(), "MapperScannerBeanDefinitionParser.scan", start);
         return null;
     }
 
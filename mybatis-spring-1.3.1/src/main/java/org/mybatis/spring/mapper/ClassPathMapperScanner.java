@@ -17,14 +17,17 @@ package org.mybatis.spring.mapper;
 
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
 import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinitionHolder;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionReaderUtils;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
 import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
 import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
@@ -32,9 +35,16 @@ import org.springframework.core.type.filter.AssignableTypeFilter;
 import org.springframework.core.type.filter.TypeFilter;
 import org.springframework.util.StringUtils;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -55,6 +65,21 @@ import java.util.Set;
  */
 public class ClassPathMapperScanner extends ClassPathBeanDefinitionScanner {
 
+    /** 构建时生成的mapper索引文件位置，见MapperIndexWriter */
+    public static final String MAPPER_INDEX_LOCATION = "META-INF/mybatis-mapper.index";
+
+    /** 索引文件中记录已索引包名的行前缀 */
+    static final String MAPPER_INDEX_PACKAGE_PREFIX = "package ";
+
+    /** 是否延迟初始化mapper：BeanDefinition设置为lazy-init，mapper在容器刷新完成前由LazyMapperBinder统一绑定到Configuration */
+    private boolean lazyInitialization;
+
+    /** 存在mapper索引文件时是否使用索引代替类路径扫描 */
+    private boolean useMapperIndex = true;
+
+    /** 从类路径加载的索引内容，为空表示尚未加载 */
+    private MapperIndex mapperIndex;
+
     /** 配置是否要将扫描的mapper接口注册到mybatis的Configuration中，一般会一直都是true */
     private boolean addToConfig = true;
 
@@ -146,6 +171,104 @@ public class ClassPathMapperScanner extends ClassPathBeanDefinitionScanner {
         return beanDefinitions;
     }
 
+    /**
+     * When a mapper index built by {@link MapperIndexWriter} on the classpath covers the base
+     * package, the candidates are read from it instead of scanning the package: only the indexed
+     * classes are read, and the include/exclude filters are applied to them as usual. Packages
+     * the index does not cover, and packages with wildcards, are scanned.
+     */
+    @Override
+    public Set<BeanDefinition> findCandidateComponents(String basePackage) {
+        String packageName = getEnvironment().resolveRequiredPlaceholders(basePackage);
+        if (!this.useMapperIndex || !loadMapperIndex().covers(packageName)) {
+            return super.findCandidateComponents(basePackage);
+        }
+
+        String prefix = packageName + ".";
+        Set<BeanDefinition> candidates = new LinkedHashSet<BeanDefinition>();
+        try {
+            for (String className : loadMapperIndex().classNames) {
+                if (!className.startsWith(prefix)) {
+                    continue;
+                }
+                MetadataReader metadataReader = getMetadataReaderFactory().getMetadataReader(className);
+                if (isCandidateComponent(metadataReader)) {
+                    ScannedGenericBeanDefinition definition = new ScannedGenericBeanDefinition(metadataReader);
+                    definition.setResource(metadataReader.getResource());
+                    definition.setSource(metadataReader.getResource());
+                    if (isCandidateComponent(definition)) {
+                        candidates.add(definition);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new BeanDefinitionStoreException("I/O failure while reading indexed mapper candidates", ex);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Found " + candidates.size() + " mapper candidates for package '" + basePackage + "' in "
+                         + MAPPER_INDEX_LOCATION);
+        }
+        return candidates;
+    }
+
+    /**
+     * 加载类路径下所有的mapper索引文件（可能来自多个jar）
+     */
+    private MapperIndex loadMapperIndex() {
+        if (this.mapperIndex == null) {
+            MapperIndex index = new MapperIndex();
+            try {
+                Enumeration<URL> urls = getResourceLoader().getClassLoader().getResources(MAPPER_INDEX_LOCATION);
+                while (urls.hasMoreElements()) {
+                    URL url = urls.nextElement();
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+                    try {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            line = line.trim();
+                            if (line.startsWith(MAPPER_INDEX_PACKAGE_PREFIX)) {
+                                index.packages.add(line.substring(MAPPER_INDEX_PACKAGE_PREFIX.length()).trim());
+                            } else if (line.length() > 0 && !line.startsWith("#")) {
+                                index.classNames.add(line);
+                            }
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                }
+            } catch (IOException ex) {
+                throw new BeanDefinitionStoreException("Failed to read " + MAPPER_INDEX_LOCATION, ex);
+            }
+            this.mapperIndex = index;
+        }
+        return this.mapperIndex;
+    }
+
+    /**
+     * 所有索引文件的内容：已索引的包（含子包）以及其中的接口
+     */
+    private static final class MapperIndex {
+
+        private final Set<String> packages = new LinkedHashSet<String>();
+
+        private final Set<String> classNames = new LinkedHashSet<String>();
+
+        /**
+         * 索引是否包含该包下的所有接口，带通配符的包名无法由索引判断，需要扫描
+         */
+        boolean covers(String packageName) {
+            if (packageName.indexOf('*') >= 0 || packageName.indexOf('?') >= 0) {
+                return false;
+            }
+            for (String pkg : this.packages) {
+                if (packageName.equals(pkg) || packageName.startsWith(pkg + ".")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     /**
      * 修改Mapper接口对象对应的BeanDefinition的信息，主要是：
      * 1、修改注册类的beanclass属性为代理类MapperFactoryBean
@@ -155,8 +278,11 @@ public class ClassPathMapperScanner extends ClassPathBeanDefinitionScanner {
      */
     private void processBeanDefinitions(Set<BeanDefinitionHolder> beanDefinitions) {
         GenericBeanDefinition definition;
+        // 延迟模式下需要在容器刷新完成前统一绑定的mapper接口
+        List<String> lazyMapperInterfaces = new ArrayList<String>();
         for (BeanDefinitionHolder holder : beanDefinitions) {
             definition = (GenericBeanDefinition) holder.getBeanDefinition();
+            String mapperInterface = definition.getBeanClassName();
 
             if (logger.isDebugEnabled()) {
                 logger.debug("Creating MapperFactoryBean with name '" + holder.getBeanName()
@@ -164,47 +290,69 @@ public class ClassPathMapperScanner extends ClassPathBeanDefinitionScanner {
             }
 
             // the mapper interface is the original class of the bean but, the actual class of the bean is MapperFactoryBean issue #59
-            definition.getConstructorArgumentValues().addGenericArgumentValue(definition.getBeanClassName());
+            definition.getConstructorArgumentValues().addGenericArgumentValue(mapperInterface);
             // 修改注册类的beanclass属性为代理类MapperFactoryBean
             // 这里修改了mapper接口类的beandefination中的beanclass为MapperFactoryBean，它则负责生产数据类操作代理类，
             // 实际mapper接口类作为构造函数传入了 。由于只修改了beanclass,没有修改beanname，所以我们从容器中获取时候无感知的。
             definition.setBeanClass(this.mapperFactoryBean.getClass());
             definition.getPropertyValues().add("addToConfig", this.addToConfig);
+            if (this.lazyInitialization) {
+                definition.getPropertyValues().add("lazyInitialization", true);
+                definition.setLazyInit(true);
+                if (this.addToConfig) {
+                    lazyMapperInterfaces.add(mapperInterface);
+                }
+            }
 
-            // 用于标记是否配置了sqlSessionFactoryBeanName或是sqlSessionTemplateBeanName，如果配置的工厂Bean的Name，则优先使用配置的工厂Bean，否则根据类型注入SqlSessionFactory实例和SqlSessionTemplate实例
-            boolean explicitFactoryUsed = false;
+            addSqlSessionProperties(holder.getBeanName(), definition);
+        }
 
-            // 1、设置Mapper接口对象中的SqlSessionFactory实例，每个Mapper接口的实现都会封装一个SqlSessionFactory
-            if (StringUtils.hasText(this.sqlSessionFactoryBeanName)) {
-                definition.getPropertyValues().add("sqlSessionFactory", new RuntimeBeanReference(this.sqlSessionFactoryBeanName));
-                explicitFactoryUsed = true;
-            } else if (this.sqlSessionFactory != null) {
-                definition.getPropertyValues().add("sqlSessionFactory", this.sqlSessionFactory);
-                explicitFactoryUsed = true;
-            }
+        if (!lazyMapperInterfaces.isEmpty()) {
+            GenericBeanDefinition binder = new GenericBeanDefinition();
+            binder.setBeanClass(LazyMapperBinder.class);
+            binder.getPropertyValues().add("mapperInterfaces", lazyMapperInterfaces.toArray(new String[0]));
+            String binderName = BeanDefinitionReaderUtils.registerWithGeneratedName(binder, getRegistry());
+            addSqlSessionProperties(binderName, binder);
+        }
+    }
 
-            // 2、设置一个会话对象
-            if (StringUtils.hasText(this.sqlSessionTemplateBeanName)) {
-                if (explicitFactoryUsed) {
-                    logger.warn("Cannot use both: sqlSessionTemplate and sqlSessionFactory together. sqlSessionFactory is ignored.");
-                }
-                definition.getPropertyValues().add("sqlSessionTemplate", new RuntimeBeanReference(this.sqlSessionTemplateBeanName));
-                explicitFactoryUsed = true;
-            } else if (this.sqlSessionTemplate != null) {
-                if (explicitFactoryUsed) {
-                    logger.warn("Cannot use both: sqlSessionTemplate and sqlSessionFactory together. sqlSessionFactory is ignored.");
-                }
-                definition.getPropertyValues().add("sqlSessionTemplate", this.sqlSessionTemplate);
-                explicitFactoryUsed = true;
+    /**
+     * 设置Mapper（或LazyMapperBinder）使用的SqlSessionFactory或SqlSessionTemplate
+     */
+    private void addSqlSessionProperties(String beanName, GenericBeanDefinition definition) {
+        // 用于标记是否配置了sqlSessionFactoryBeanName或是sqlSessionTemplateBeanName，如果配置的工厂Bean的Name，则优先使用配置的工厂Bean，否则根据类型注入SqlSessionFactory实例和SqlSessionTemplate实例
+        boolean explicitFactoryUsed = false;
+
+        // 1、设置Mapper接口对象中的SqlSessionFactory实例，每个Mapper接口的实现都会封装一个SqlSessionFactory
+        if (StringUtils.hasText(this.sqlSessionFactoryBeanName)) {
+            definition.getPropertyValues().add("sqlSessionFactory", new RuntimeBeanReference(this.sqlSessionFactoryBeanName));
+            explicitFactoryUsed = true;
+        } else if (this.sqlSessionFactory != null) {
+            definition.getPropertyValues().add("sqlSessionFactory", this.sqlSessionFactory);
+            explicitFactoryUsed = true;
+        }
+
+        // 2、设置一个会话对象
+        if (StringUtils.hasText(this.sqlSessionTemplateBeanName)) {
+            if (explicitFactoryUsed) {
+                logger.warn("Cannot use both: sqlSessionTemplate and sqlSessionFactory together. sqlSessionFactory is ignored.");
+            }
+            definition.getPropertyValues().add("sqlSessionTemplate", new RuntimeBeanReference(this.sqlSessionTemplateBeanName));
+            explicitFactoryUsed = true;
+        } else if (this.sqlSessionTemplate != null) {
+            if (explicitFactoryUsed) {
+                logger.warn("Cannot use both: sqlSessionTemplate and sqlSessionFactory together. sqlSessionFactory is ignored.");
             }
+            definition.getPropertyValues().add("sqlSessionTemplate", this.sqlSessionTemplate);
+            explicitFactoryUsed = true;
+        }
 
-            // 3、如果没有显式引用，就使用类型注入
-            if (!explicitFactoryUsed) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Enabling autowire by type for MapperFactoryBean with name '" + holder.getBeanName() + "'.");
-                }
-                definition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_BY_TYPE);
+        // 3、如果没有显式引用，就使用类型注入
+        if (!explicitFactoryUsed) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Enabling autowire by type for MapperFactoryBean with name '" + beanName + "'.");
             }
+            definition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_BY_TYPE);
         }
     }
 
@@ -262,6 +410,12 @@ public class ClassPathMapperScanner extends ClassPathBeanDefinitionScanner {
     public void setSqlSessionFactoryBeanName(String sqlSessionFactoryBeanName) {
         this.sqlSessionFactoryBeanName = sqlSessionFactoryBeanName;
     }
+    public void setLazyInitialization(boolean lazyInitialization) {
+        this.lazyInitialization = lazyInitialization;
+    }
+    public void setUseMapperIndex(boolean useMapperIndex) {
+        this.useMapperIndex = useMapperIndex;
+    }
     public void setMapperFactoryBean(MapperFactoryBean<?> mapperFactoryBean) {
         this.mapperFactoryBean = mapperFactoryBean != null ? mapperFactoryBean : new MapperFactoryBean<Object>();
     }
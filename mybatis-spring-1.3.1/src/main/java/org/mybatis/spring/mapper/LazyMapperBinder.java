@@ -0,0 +1,125 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.mapper;
+
+import static org.springframework.util.Assert.notNull;
+
+import org.apache.ibatis.executor.ErrorContext;
+import org.apache.ibatis.session.Configuration;
+import org.mybatis.spring.metrics.StartupReport;
+import org.mybatis.spring.support.SqlSessionDaoSupport;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+
+/**
+ * Binds the mappers registered with {@code lazyInitialization} to the MyBatis
+ * {@code Configuration} in one pass, when the application context that declares it is refreshed.
+ * <p>
+ * The {@code Configuration} is not a concurrent structure: a mapper added while other threads look
+ * up statements can corrupt their view of it. The pass therefore runs on the refresh thread, after
+ * all the singletons have been created and before the context reports itself refreshed (and
+ * before the listeners with a lower precedence, such as the warm-up of the
+ * {@code SqlSessionFactoryBean}); afterwards the {@code Configuration} is only read. The lazy
+ * {@link MapperFactoryBean} proxies still bind their mapper themselves if called earlier, which
+ * can only happen on the refresh thread.
+ * <p>
+ * Registered by {@link ClassPathMapperScanner} for each scan in lazy mode.
+ */
+public class LazyMapperBinder extends SqlSessionDaoSupport
+        implements ApplicationListener<ContextRefreshedEvent>, ApplicationContextAware, Ordered {
+
+    private Class<?>[] mapperInterfaces;
+
+    private ApplicationContext applicationContext;
+
+    @Override
+    protected void checkDaoConfig() {
+        super.checkDaoConfig();
+        notNull(this.mapperInterfaces, "Property 'mapperInterfaces' is required");
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // 子容器刷新时也会发布该事件
+        if (event.getApplicationContext() == this.applicationContext) {
+            bindMappers();
+        }
+    }
+
+    /**
+     * Adds the mappers that are not bound yet to the {@code Configuration}.
+     *
+     * @return the number of mappers added
+     */
+    public int bindMappers() {
+        Configuration configuration = getSqlSession().getConfiguration();
+        long start = System.nanoTime();
+        int bound = 0;
+        synchronized (configuration) {
+            for (Class<?> mapperInterface : this.mapperInterfaces) {
+                if (configuration.hasMapper(mapperInterface)) {
+                    continue;
+                }
+                try {
+                    configuration.addMapper(mapperInterface);
+                    bound++;
+                } catch (Exception e) {
+                    logger.error("Error while adding the mapper '" + mapperInterface + "' to configuration.", e);
+                    throw new IllegalArgumentException(e);
+                } finally {
+                    ErrorContext.instance().reset();
+                }
+            }
+        }
+        StartupReport startupReport = StartupReport.forConfiguration(configuration);
+        if (startupReport != null) {
+            startupReport.record("LazyMapperBinder.bindMappers", start);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Bound " + bound + " lazy mappers in " + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+        return bound;
+    }
+
+    /**
+     * Runs before the other listeners, so that they see all the mapped statements.
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+
+
+
+
+    // getter and setter ...
+    public Class<?>[] getMapperInterfaces() {
+        return mapperInterfaces;
+    }
+    public void setMapperInterfaces(Class<?>... mapperInterfaces) {
+        this.mapperInterfaces = mapperInterfaces;
+    }
+
+}
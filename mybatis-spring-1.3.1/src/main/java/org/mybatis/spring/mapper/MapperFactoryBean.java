@@ -15,12 +15,18 @@
  */
 package org.mybatis.spring.mapper;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.session.Configuration;
 import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.metrics.StartupReport;
 import org.mybatis.spring.support.SqlSessionDaoSupport;
 import org.springframework.beans.factory.FactoryBean;
 
+import static org.apache.ibatis.reflection.ExceptionUtil.unwrapThrowable;
 import static org.springframework.util.Assert.notNull;
 
 /**
@@ -46,6 +52,15 @@ import static org.springframework.util.Assert.notNull;
  * </pre>
  * <p>
  * Note that this factory can only inject <em>interfaces</em>, not concrete classes.
+ * <p>
+ * With {@code lazyInitialization} the mapper is not added to the MyBatis {@code Configuration}
+ * when the bean is created: {@link #getObject()} returns a proxy that looks up the real mapper on
+ * its first method call. The {@code Configuration} is not a concurrent structure, so it must not
+ * change once requests are served: the mappers are bound in one pass by a
+ * {@link LazyMapperBinder} (registered by the scanner in lazy mode) when the context is refreshed.
+ * A proxy called before that, on the refresh thread, binds its mapper itself. A lazy mapper
+ * declared without a {@code LazyMapperBinder} is bound on its first call, which is only safe if
+ * that call cannot race with other statements.
  *
  * @author Eduardo Macarron
  *
@@ -61,6 +76,9 @@ public class MapperFactoryBean<T> extends SqlSessionDaoSupport implements Factor
     /** 如果addToConfig是false，那么mapper将不会添加到MyBatis中。这意味着它必须包含在mybatisconfig.xml中。 */
     private boolean addToConfig = true;
 
+    /** 是否延迟到第一次调用mapper方法时才将mapper添加到Configuration中 */
+    private boolean lazyInitialization;
+
     public MapperFactoryBean() {
         //intentionally empty
     }
@@ -75,8 +93,21 @@ public class MapperFactoryBean<T> extends SqlSessionDaoSupport implements Factor
 
         notNull(this.mapperInterface, "Property 'mapperInterface' is required");
 
+        if (!this.lazyInitialization) {
+            addToConfigIfNecessary();
+        }
+    }
+    private void addToConfigIfNecessary() {
+        if (!this.addToConfig) {
+            return;
+        }
         Configuration configuration = getSqlSession().getConfiguration();
-        if (this.addToConfig && !configuration.hasMapper(this.mapperInterface)) {
+        // 与LazyMapperBinder的绑定互斥，MapperRegistry不是线程安全的
+        synchronized (configuration) {
+            if (configuration.hasMapper(this.mapperInterface)) {
+                return;
+            }
+            long start = System.nanoTime();
             try {
                 configuration.addMapper(this.mapperInterface);
             } catch (Exception e) {
@@ -85,10 +116,20 @@ public class MapperFactoryBean<T> extends SqlSessionDaoSupport implements Factor
             } finally {
                 ErrorContext.instance().reset();
             }
+            // 延迟模式下在第一次调用时绑定，不计入启动时间
+            StartupReport startupReport = StartupReport.forConfiguration(configuration);
+            if (!this.lazyInitialization && startupReport != null) {
+                startupReport.record("MapperFactoryBean.addMapper", start);
+            }
         }
     }
     @Override
+    @SuppressWarnings("unchecked")
     public T getObject() throws Exception {
+        if (this.lazyInitialization) {
+            return (T) Proxy.newProxyInstance(this.mapperInterface.getClassLoader(), new Class<?>[] {this.mapperInterface},
+                                              new LazyMapperHandler());
+        }
         // 从mybatis的SqlSession实例中，根据mapper接口类型获取对应的mapper接口实例
         return getSqlSession().getMapper(this.mapperInterface);
     }
@@ -119,4 +160,58 @@ public class MapperFactoryBean<T> extends SqlSessionDaoSupport implements Factor
     public boolean isAddToConfig() {
         return addToConfig;
     }
+    public boolean isLazyInitialization() {
+        return lazyInitialization;
+    }
+    public void setLazyInitialization(boolean lazyInitialization) {
+        this.lazyInitialization = lazyInitialization;
+    }
+
+    /**
+     * Looks up the mapper on the first call, binding it if {@link LazyMapperBinder} has not done it
+     * yet, and then forwards every call to the real mapper.
+     */
+    private final class LazyMapperHandler implements InvocationHandler {
+
+        private volatile T mapper;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                String name = method.getName();
+                if ("equals".equals(name)) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(name)) {
+                    return System.identityHashCode(proxy);
+                } else if ("toString".equals(name)) {
+                    return "Lazy mapper proxy for [" + mapperInterface.getName() + "]";
+                }
+            }
+            try {
+                return method.invoke(resolveMapper(), args);
+            } catch (Throwable t) {
+                throw unwrapThrowable(t);
+            }
+        }
+
+        private T resolveMapper() {
+            T mapper = this.mapper;
+            if (mapper == null) {
+                synchronized (this) {
+                    mapper = this.mapper;
+                    if (mapper == null) {
+                        long start = System.nanoTime();
+                        addToConfigIfNecessary();
+                        mapper = getSqlSession().getMapper(mapperInterface);
+                        this.mapper = mapper;
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Bound mapper '" + mapperInterface.getName() + "' on first use in "
+                                         + (System.nanoTime() - start) / 1000000 + " ms");
+                        }
+                    }
+                }
+            }
+            return mapper;
+        }
+    }
 }
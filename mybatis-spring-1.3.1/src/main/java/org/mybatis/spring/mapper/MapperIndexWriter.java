@@ -0,0 +1,144 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.mapper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.type.ClassMetadata;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+
+/**
+ * Build step that writes the mapper index read by {@link ClassPathMapperScanner} into
+ * {@value ClassPathMapperScanner#MAPPER_INDEX_LOCATION}: the indexed packages, one
+ * {@code package <name>} line each, followed by the names of all the top level and static nested
+ * interfaces found in them, one per line.
+ * <p>
+ * The index lists candidates only, the scanner still applies its {@code annotationClass} and
+ * {@code markerInterface} filters to them, and it scans the base packages the index does not
+ * cover. The index must be regenerated whenever mapper interfaces are added, renamed or removed,
+ * so the build runs this class after every compilation (see the {@code write-mapper-index}
+ * execution in {@code pom.xml}).
+ * <p>
+ * Arguments: the classes directory, then the packages to index (with their subpackages).
+ */
+public final class MapperIndexWriter {
+
+    private MapperIndexWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: MapperIndexWriter <classesDirectory> <package> [package ...]");
+            System.exit(1);
+        }
+        File classesDirectory = new File(args[0]);
+        String[] packages = new String[args.length - 1];
+        System.arraycopy(args, 1, packages, 0, packages.length);
+
+        Set<String> interfaces = findInterfaces(classesDirectory, packages);
+        File index = write(classesDirectory, new TreeSet<String>(Arrays.asList(packages)), interfaces);
+        System.out.println("Wrote " + interfaces.size() + " mapper candidates of " + Arrays.toString(packages)
+                           + " to " + index);
+    }
+
+    /**
+     * Finds the interfaces that {@code ClassPathMapperScanner} can register below a classes
+     * directory.
+     *
+     * @param classesDirectory root of the compiled classes
+     * @param packages packages to look into, all when empty
+     * @return the sorted class names
+     */
+    public static Set<String> findInterfaces(File classesDirectory, String... packages) throws IOException {
+        Set<String> interfaces = new TreeSet<String>();
+        collect(classesDirectory, new SimpleMetadataReaderFactory(), interfaces);
+        if (packages.length == 0) {
+            return interfaces;
+        }
+        Set<String> selected = new TreeSet<String>();
+        for (String className : interfaces) {
+            for (String pkg : packages) {
+                if (className.startsWith(pkg + ".")) {
+                    selected.add(className);
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Writes the index into the {@code META-INF} directory of a classes directory.
+     *
+     * @param classesDirectory root of the compiled classes
+     * @param packages the packages covered by the index: all their interfaces must be listed
+     * @param classNames the indexed class names
+     * @return the index file
+     */
+    public static File write(File classesDirectory, Set<String> packages, Set<String> classNames) throws IOException {
+        File index = new File(classesDirectory, ClassPathMapperScanner.MAPPER_INDEX_LOCATION);
+        if (!index.getParentFile().isDirectory() && !index.getParentFile().mkdirs()) {
+            throw new IOException("Could not create directory " + index.getParentFile());
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(index), StandardCharsets.UTF_8);
+        try {
+            writer.write("# Generated by " + MapperIndexWriter.class.getName() + ", do not edit\n");
+            for (String pkg : packages) {
+                writer.write(ClassPathMapperScanner.MAPPER_INDEX_PACKAGE_PREFIX);
+                writer.write(pkg);
+                writer.write('\n');
+            }
+            for (String className : classNames) {
+                writer.write(className);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        return index;
+    }
+
+    private static void collect(File directory, MetadataReaderFactory metadataReaderFactory, Set<String> interfaces)
+            throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collect(file, metadataReaderFactory, interfaces);
+            } else if (file.getName().endsWith(".class") && !file.getName().equals("package-info.class")) {
+                ClassMetadata metadata = metadataReaderFactory.getMetadataReader(new FileSystemResource(file))
+                                                              .getClassMetadata();
+                // 与ClassPathMapperScanner.isCandidateComponent的条件一致
+                if (metadata.isInterface() && metadata.isIndependent()) {
+                    interfaces.add(metadata.getClassName());
+                }
+            }
+        }
+    }
+
+}
@@ -17,6 +17,7 @@ package org.mybatis.spring.mapper;
 
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.metrics.StartupReport;
 import org.springframework.beans.PropertyValue;
 import org.springframework.beans.PropertyValues;
 import org.springframework.beans.factory.BeanNameAware;
@@ -114,6 +115,10 @@ public class MapperScannerConfigurer implements BeanDefinitionRegistryPostProces
     private Class<? extends Annotation> annotationClass;
     /** 如果配置了标记接口，则扫描该接口类型的Bean */
     private Class<?> markerInterface;
+    /** 是否延迟初始化mapper，见MapperFactoryBean#setLazyInitialization */
+    private boolean lazyInitialization;
+    /** 构建时生成的mapper索引包含basePackage时，是否使用索引代替包扫描 */
+    private boolean useMapperIndex = true;
 
 
     private boolean processPropertyPlaceHolders;
@@ -148,6 +153,8 @@ public class MapperScannerConfigurer implements BeanDefinitionRegistryPostProces
         scanner.setAddToConfig(this.addToConfig);
         scanner.setAnnotationClass(this.annotationClass);
         scanner.setMarkerInterface(this.markerInterface);
+        scanner.setUseMapperIndex(this.useMapperIndex);
+        scanner.setLazyInitialization(this.lazyInitialization);
         scanner.setSqlSessionFactory(this.sqlSessionFactory);
         scanner.setSqlSessionTemplate(this.sqlSessionTemplate);
         scanner.setSqlSessionFactoryBeanName(this.sqlSessionFactoryBeanName);
@@ -157,7 +164,9 @@ public class MapperScannerConfigurer implements BeanDefinitionRegistryPostProces
         // 注册扫描过滤器
         scanner.registerFilters();
         // 开始扫描包下的所有bean
+        long start = System.nanoTime();
         scanner.scan(StringUtils.tokenizeToStringArray(this.basePackage, ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS));
+        StartupReport.recordScan(registry, "MapperScannerConfigurer.scan", start);
     }
     private void processPropertyPlaceHolders() {
         Map<String, PropertyResourceConfigurer> prcs = applicationContext.getBeansOfType(PropertyResourceConfigurer.class);
@@ -232,6 +241,12 @@ public class MapperScannerConfigurer implements BeanDefinitionRegistryPostProces
     public void setSqlSessionFactoryBeanName(String sqlSessionFactoryName) {
         this.sqlSessionFactoryBeanName = sqlSessionFactoryName;
     }
+    public void setLazyInitialization(boolean lazyInitialization) {
+        this.lazyInitialization = lazyInitialization;
+    }
+    public void setUseMapperIndex(boolean useMapperIndex) {
+        this.useMapperIndex = useMapperIndex;
+    }
     public void setProcessPropertyPlaceHolders(boolean processPropertyPlaceHolders) {
         this.processPropertyPlaceHolders = processPropertyPlaceHolders;
     }
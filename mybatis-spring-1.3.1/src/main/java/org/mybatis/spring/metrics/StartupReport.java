@@ -0,0 +1,292 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * Time spent in each phase of the bootstrap of one {@code SqlSessionFactoryBean}: configuration
+ * and mapper XML parsing, type alias and type handler scanning, mapper binding in
+ * {@code MapperFactoryBean}/{@code LazyMapperBinder}, warm-up, and the mapper scanning done in
+ * the same bean factory by {@code MapperScannerConfigurer}, {@code MapperScannerRegistrar} and
+ * {@code <mybatis:scan>}. Phases that run several times (e.g. one per mapper) are summed.
+ * <p>
+ * The scans run before any {@code SqlSessionFactoryBean} exists, so they are kept per bean
+ * factory ({@link #recordScan}) and copied into the report of every factory of that bean factory
+ * when it is built. The mapper beans only know the MyBatis {@code Configuration}, so they find the
+ * report with {@link #forConfiguration}.
+ * <p>
+ * {@code SqlSessionFactoryBean} resets its report when it starts building, logs it and publishes
+ * it as an MBean once its application context is refreshed, and removes the MBean when that
+ * context is closed.
+ */
+public final class StartupReport implements StartupReportMBean {
+
+    private static final Log LOGGER = LogFactory.getLog(StartupReport.class);
+
+    public static final String OBJECT_NAME_PREFIX = StatementMetrics.DEFAULT_DOMAIN + ":type=StartupReport";
+
+    /** Mapper扫描在SqlSessionFactoryBean创建之前执行，按BeanFactory暂存 */
+    private static final Map<Object, StartupReport> SCANS = new WeakHashMap<Object, StartupReport>();
+
+    /** Configuration对应的报告，供只知道Configuration的mapper Bean使用 */
+    private static final Map<Configuration, StartupReport> REPORTS = new WeakHashMap<Configuration, StartupReport>();
+
+    /** 按第一次执行的顺序记录各阶段，值为{总纳秒数, 次数} */
+    private final Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+
+    /** 各次执行的起止时间（System.nanoTime），并行执行的阶段在总时间中只计算一次 */
+    private final List<long[]> intervals = new ArrayList<long[]>();
+
+    /** 已注册的MBean名称 */
+    private ObjectName objectName;
+
+    /**
+     * Adds the time elapsed since {@code startNanos} to a phase.
+     *
+     * @param phase name of the phase, e.g. {@code "SqlSessionFactoryBean.mapperLocations"}
+     * @param startNanos value of {@code System.nanoTime()} when the phase started
+     */
+    public void record(String phase, long startNanos) {
+        long endNanos = System.nanoTime();
+        synchronized (this.phases) {
+            add(phase, endNanos - startNanos, 1);
+            this.intervals.add(new long[] {startNanos, endNanos});
+        }
+    }
+
+    private void add(String phase, long nanos, long count) {
+        long[] totals = this.phases.get(phase);
+        if (totals == null) {
+            totals = new long[2];
+            this.phases.put(phase, totals);
+        }
+        totals[0] += nanos;
+        totals[1] += count;
+    }
+
+    /**
+     * Adds all the phases of another report to this one.
+     */
+    public void addAll(StartupReport other) {
+        if (other == null || other == this) {
+            return;
+        }
+        Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+        List<long[]> intervals;
+        synchronized (other.phases) {
+            for (Map.Entry<String, long[]> entry : other.phases.entrySet()) {
+                phases.put(entry.getKey(), entry.getValue().clone());
+            }
+            intervals = new ArrayList<long[]>(other.intervals);
+        }
+        synchronized (this.phases) {
+            for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+                add(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+            this.intervals.addAll(intervals);
+        }
+    }
+
+    @Override
+    public String[] getPhases() {
+        List<String> phases = new ArrayList<String>();
+        synchronized (this.phases) {
+            for (Map.Entry<String, long[]> entry : this.phases.entrySet()) {
+                phases.add(entry.getKey() + "=" + TimeUnit.NANOSECONDS.toMillis(entry.getValue()[0]) + " ms ("
+                           + entry.getValue()[1] + ")");
+            }
+        }
+        return phases.toArray(new String[phases.size()]);
+    }
+
+    /**
+     * Returns the time during which at least one phase was running: phases that overlap (e.g.
+     * run by the parallel mapper parsing or the background initialization threads) are only
+     * counted once, so the total can be lower than the sum of the phases.
+     */
+    @Override
+    public long getTotalMillis() {
+        List<long[]> intervals;
+        synchronized (this.phases) {
+            intervals = new ArrayList<long[]>(this.intervals);
+        }
+        Collections.sort(intervals, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] o1, long[] o2) {
+                return Long.compare(o1[0], o2[0]);
+            }
+        });
+        long nanos = 0;
+        long start = 0;
+        long end = 0;
+        boolean open = false;
+        for (long[] interval : intervals) {
+            if (open && interval[0] - end <= 0) {
+                if (interval[1] - end > 0) {
+                    end = interval[1];
+                }
+                continue;
+            }
+            if (open) {
+                nanos += end - start;
+            }
+            start = interval[0];
+            end = interval[1];
+            open = true;
+        }
+        if (open) {
+            nanos += end - start;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder("MyBatis startup: ").append(getTotalMillis()).append(" ms");
+        for (String phase : getPhases()) {
+            report.append("\n  ").append(phase);
+        }
+        return report.toString();
+    }
+
+    public void reset() {
+        synchronized (this.phases) {
+            this.phases.clear();
+            this.intervals.clear();
+        }
+    }
+
+    /**
+     * Publishes the report on the platform {@code MBeanServer}. A name that is already taken (by
+     * another application) is left alone.
+     *
+     * @param objectName the name, unique per application context and factory bean
+     */
+    public synchronized void registerMBean(ObjectName objectName) {
+        unregisterMBean();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                LOGGER.warn("Could not register MBean '" + objectName + "': the name is already in use");
+                return;
+            }
+            server.registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (Exception e) {
+            LOGGER.warn("Could not register MBean '" + objectName + "': " + e);
+        }
+    }
+
+    /**
+     * Removes the MBean registered by {@link #registerMBean}, if any.
+     */
+    public synchronized void unregisterMBean() {
+        if (this.objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(this.objectName)) {
+                server.unregisterMBean(this.objectName);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not unregister MBean '" + this.objectName + "': " + e);
+        } finally {
+            this.objectName = null;
+        }
+    }
+
+    /**
+     * Returns the name the report is registered with, {@code null} if it is not.
+     */
+    public synchronized ObjectName getObjectName() {
+        return this.objectName;
+    }
+
+    /**
+     * Records a mapper scan done on a bean definition registry.
+     *
+     * @param registry the registry (usually the bean factory) the mappers are registered in
+     * @param phase name of the phase
+     * @param startNanos value of {@code System.nanoTime()} when the scan started
+     */
+    public static void recordScan(Object registry, String phase, long startNanos) {
+        StartupReport scans;
+        synchronized (SCANS) {
+            Object key = scanKey(registry);
+            scans = SCANS.get(key);
+            if (scans == null) {
+                scans = new StartupReport();
+                SCANS.put(key, scans);
+            }
+        }
+        scans.record(phase, startNanos);
+    }
+
+    /**
+     * Returns the scans recorded for a bean factory, {@code null} if there was none.
+     */
+    public static StartupReport getScans(Object beanFactory) {
+        synchronized (SCANS) {
+            return SCANS.get(scanKey(beanFactory));
+        }
+    }
+
+    private static Object scanKey(Object registry) {
+        // GenericApplicationContext本身也是BeanDefinitionRegistry，统一使用其内部的BeanFactory
+        if (registry instanceof GenericApplicationContext) {
+            return ((GenericApplicationContext) registry).getDefaultListableBeanFactory();
+        }
+        return registry;
+    }
+
+    /**
+     * Associates a report with the configuration it measures.
+     */
+    public static void register(Configuration configuration, StartupReport report) {
+        synchronized (REPORTS) {
+            REPORTS.put(configuration, report);
+        }
+    }
+
+    /**
+     * Returns the report of a configuration, {@code null} if it was not built by a
+     * {@code SqlSessionFactoryBean}.
+     */
+    public static StartupReport forConfiguration(Configuration configuration) {
+        synchronized (REPORTS) {
+            return REPORTS.get(configuration);
+        }
+    }
+
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Registry of the {@link StatementStats} of every mapped statement, filled by
+ * {@link StatementMetricsInterceptor} (execution time) and {@code SqlSessionTemplate}
+ * (session acquisition time).
+ * <p>
+ * Each statement is published on the platform {@code MBeanServer} the first time it runs, as
+ * {@code org.mybatis.spring:type=StatementStats,context="<context id>",metrics="<bean name>",name="<statement id>"};
+ * the registry itself is published as
+ * {@code org.mybatis.spring:type=StatementMetrics,context="<context id>",metrics="<bean name>"} and
+ * can switch collection on and off at runtime. While disabled, the instrumented code only reads a
+ * volatile flag. The context and bean name keep the registries of several applications (or
+ * several registries of one application) in the same JVM apart; outside a Spring context the
+ * identity of the registry is used instead. A name that is already taken is left alone, with a
+ * warning, and {@link #destroy()} only removes the MBeans this registry registered.
+ *
+ * <pre class="code">
+ * {@code
+ * <bean id="statementMetrics" class="org.mybatis.spring.metrics.StatementMetrics" />
+ *
+ * <bean id="sqlSessionFactory" class="org.mybatis.spring.SqlSessionFactoryBean">
+ *   <property name="plugins">
+ *     <bean class="org.mybatis.spring.metrics.StatementMetricsInterceptor">
+ *       <constructor-arg ref="statementMetrics" />
+ *     </bean>
+ *   </property>
+ * </bean>
+ * }
+ * </pre>
+ *
+ * @see StatementMetricsInterceptor
+ * @see org.mybatis.spring.SqlSessionTemplate#setStatementMetrics(StatementMetrics)
+ */
+public class StatementMetrics implements StatementMetricsMBean, DisposableBean, BeanNameAware, ApplicationContextAware {
+
+    private static final Log LOGGER = LogFactory.getLog(StatementMetrics.class);
+
+    public static final String DEFAULT_DOMAIN = "org.mybatis.spring";
+
+    private final ConcurrentMap<String, StatementStats> statementStats = new ConcurrentHashMap<String, StatementStats>();
+
+    private volatile boolean enabled = true;
+
+    /** 是否将统计信息注册为MBean */
+    private boolean registerMBeans = true;
+
+    private String domain = DEFAULT_DOMAIN;
+
+    private MBeanServer mbeanServer;
+
+    /** 已注册的MBean，销毁时注销 */
+    private final List<ObjectName> registeredNames = new ArrayList<ObjectName>();
+
+    /** 是否已经尝试注册本对象的MBean */
+    private boolean published;
+
+    private String beanName;
+
+    private ApplicationContext applicationContext;
+
+    /**
+     * Returns the stats of the statement, creating (and publishing) them on first use.
+     *
+     * @param statementId the mapped statement id
+     * @return the stats of the statement, never {@code null}
+     */
+    public StatementStats getStatementStats(String statementId) {
+        StatementStats stats = this.statementStats.get(statementId);
+        if (stats == null) {
+            StatementStats newStats = new StatementStats(statementId);
+            stats = this.statementStats.putIfAbsent(statementId, newStats);
+            if (stats == null) {
+                stats = newStats;
+                register(newStats);
+            }
+        }
+        return stats;
+    }
+
+    public void recordExecution(String statementId, long nanos, boolean failed) {
+        getStatementStats(statementId).recordExecution(nanos, failed);
+    }
+
+    public void recordAcquisition(String statementId, long nanos) {
+        getStatementStats(statementId).recordAcquisition(nanos);
+    }
+
+    @Override
+    public String[] getStatementIds() {
+        return this.statementStats.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void reset() {
+        for (StatementStats stats : this.statementStats.values()) {
+            stats.reset();
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        MBeanServer server;
+        List<ObjectName> names;
+        synchronized (this.registeredNames) {
+            server = this.mbeanServer;
+            names = new ArrayList<ObjectName>(this.registeredNames);
+            this.registeredNames.clear();
+        }
+        for (ObjectName name : names) {
+            try {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                LOGGER.warn("Could not unregister MBean '" + name + "': " + e);
+            }
+        }
+    }
+
+    private void register(StatementStats stats) {
+        if (!this.registerMBeans) {
+            return;
+        }
+        synchronized (this.registeredNames) {
+            try {
+                MBeanServer server = getMBeanServer();
+                String qualifier = getObjectNameQualifier();
+                if (!this.published) {
+                    this.published = true;
+                    registerMBean(server, this, new ObjectName(this.domain + ":type=StatementMetrics" + qualifier));
+                }
+                registerMBean(server, stats, new ObjectName(this.domain + ":type=StatementStats" + qualifier + ",name="
+                                                            + ObjectName.quote(stats.getStatementId())));
+            } catch (JMException e) {
+                // 注册失败不影响统计，只是无法通过JMX查看
+                LOGGER.warn("Could not register MBean for statement '" + stats.getStatementId() + "': " + e);
+            }
+        }
+    }
+
+    private void registerMBean(MBeanServer server, Object mbean, ObjectName name) throws JMException {
+        // 名称已被占用（如同一JVM中的另一个应用），不能注销别人的MBean
+        if (server.isRegistered(name)) {
+            LOGGER.warn("Could not register MBean '" + name + "': the name is already in use");
+            return;
+        }
+        server.registerMBean(mbean, name);
+        this.registeredNames.add(name);
+    }
+
+    /**
+     * Returns the {@code context} and {@code metrics} keys of the names of the MBeans.
+     */
+    private String getObjectNameQualifier() {
+        String context = this.applicationContext != null ? this.applicationContext.getId()
+                                                          : ObjectUtils.identityToString(this);
+        String name = this.beanName != null ? this.beanName : ObjectUtils.identityToString(this);
+        return ",context=" + ObjectName.quote(context) + ",metrics=" + ObjectName.quote(name);
+    }
+
+    /**
+     * Returns the names of the MBeans registered by this registry.
+     */
+    public List<ObjectName> getRegisteredNames() {
+        synchronized (this.registeredNames) {
+            return new ArrayList<ObjectName>(this.registeredNames);
+        }
+    }
+
+    @Override
+    public void setBeanName(String beanName) {
+        this.beanName = beanName;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    private MBeanServer getMBeanServer() {
+        if (this.mbeanServer == null) {
+            this.mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        }
+        return this.mbeanServer;
+    }
+
+
+
+
+
+    // getter and setter ...
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    public boolean isRegisterMBeans() {
+        return registerMBeans;
+    }
+    public void setRegisterMBeans(boolean registerMBeans) {
+        this.registerMBeans = registerMBeans;
+    }
+    public String getDomain() {
+        return domain;
+    }
+    public void setDomain(String domain) {
+        this.domain = domain;
+    }
+    public void setMBeanServer(MBeanServer mbeanServer) {
+        this.mbeanServer = mbeanServer;
+    }
+
+}
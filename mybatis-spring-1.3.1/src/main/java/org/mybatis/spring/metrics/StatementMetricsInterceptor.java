@@ -0,0 +1,101 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.metrics;
+
+import static org.springframework.util.Assert.notNull;
+
+import java.util.Properties;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * MyBatis plugin that times every statement run by the {@code Executor} and records it in a
+ * {@link StatementMetrics} registry, keyed by the mapped statement id. Register it through
+ * {@code SqlSessionFactoryBean.setPlugins}.
+ * <p>
+ * The time covers the statement execution and result mapping, or the opening of the cursor for
+ * {@code queryCursor}. Supports an "enabled" plugin property to start with collection disabled.
+ *
+ * @see StatementMetrics
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class StatementMetricsInterceptor implements Interceptor {
+
+    private final StatementMetrics statementMetrics;
+
+    public StatementMetricsInterceptor() {
+        this(new StatementMetrics());
+    }
+    public StatementMetricsInterceptor(StatementMetrics statementMetrics) {
+        notNull(statementMetrics, "Property 'statementMetrics' is required");
+        this.statementMetrics = statementMetrics;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!this.statementMetrics.isEnabled()) {
+            return invocation.proceed();
+        }
+
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        boolean failed = true;
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            this.statementMetrics.recordExecution(ms.getId(), System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        // 只代理Executor，其余对象直接返回避免无用的代理
+        if (target instanceof Executor) {
+            return Plugin.wrap(target, this);
+        }
+        return target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        String enabled = properties.getProperty("enabled");
+        if (enabled != null) {
+            this.statementMetrics.setEnabled(Boolean.parseBoolean(enabled.trim()));
+        }
+    }
+
+    public StatementMetrics getStatementMetrics() {
+        return this.statementMetrics;
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings of one mapped statement: call and error counts, and separate latency histograms for the
+ * statement execution and for the {@code SqlSession} acquisition that preceded it.
+ *
+ * @see StatementMetrics
+ */
+public class StatementStats implements StatementStatsMBean {
+
+    private final String statementId;
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    /** 执行总耗时（微秒），用于计算平均值 */
+    private final LongAdder totalMicros = new LongAdder();
+
+    /** SQL执行耗时 */
+    private final LatencyHistogram execution = new LatencyHistogram();
+
+    /** 获取SqlSession（含连接）的耗时 */
+    private final LatencyHistogram acquisition = new LatencyHistogram();
+
+    public StatementStats(String statementId) {
+        this.statementId = statementId;
+    }
+
+    /**
+     * Records one execution of the statement.
+     *
+     * @param nanos elapsed time in nanoseconds
+     * @param failed whether the execution threw an exception
+     */
+    public void recordExecution(long nanos, boolean failed) {
+        long micros = nanos / 1000L;
+        this.calls.increment();
+        if (failed) {
+            this.errors.increment();
+        }
+        this.totalMicros.add(micros);
+        this.execution.record(micros);
+    }
+
+    /**
+     * Records the time spent getting the {@code SqlSession} used to run the statement.
+     *
+     * @param nanos elapsed time in nanoseconds
+     */
+    public void recordAcquisition(long nanos) {
+        this.acquisition.record(nanos / 1000L);
+    }
+
+    @Override
+    public String getStatementId() {
+        return this.statementId;
+    }
+
+    @Override
+    public long getCalls() {
+        return this.calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return this.errors.sum();
+    }
+
+    @Override
+    public long getMeanMicros() {
+        long calls = this.calls.sum();
+        return calls == 0 ? 0 : this.totalMicros.sum() / calls;
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return this.execution.getMax();
+    }
+
+    @Override
+    public long getP50Micros() {
+        return this.execution.percentile(50d);
+    }
+
+    @Override
+    public long getP99Micros() {
+        return this.execution.percentile(99d);
+    }
+
+    @Override
+    public long getP999Micros() {
+        return this.execution.percentile(99.9d);
+    }
+
+    @Override
+    public long getAcquisitionCount() {
+        return this.acquisition.getCount();
+    }
+
+    @Override
+    public long getAcquisitionP50Micros() {
+        return this.acquisition.percentile(50d);
+    }
+
+    @Override
+    public long getAcquisitionP99Micros() {
+        return this.acquisition.percentile(99d);
+    }
+
+    @Override
+    public long getAcquisitionP999Micros() {
+        return this.acquisition.percentile(99.9d);
+    }
+
+    @Override
+    public long getAcquisitionMaxMicros() {
+        return this.acquisition.getMax();
+    }
+
+    @Override
+    public void reset() {
+        this.calls.reset();
+        this.errors.reset();
+        this.totalMicros.reset();
+        this.execution.reset();
+        this.acquisition.reset();
+    }
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.metrics;
+
+/**
+ * JMX management interface of {@link StatementStats}. Times are in microseconds.
+ */
+public interface StatementStatsMBean {
+
+    String getStatementId();
+
+    long getCalls();
+
+    long getErrors();
+
+    long getMeanMicros();
+
+    long getMaxMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getAcquisitionCount();
+
+    long getAcquisitionP50Micros();
+
+    long getAcquisitionP99Micros();
+
+    long getAcquisitionP999Micros();
+
+    long getAcquisitionMaxMicros();
+
+    void reset();
+
+}
@@ -0,0 +1,396 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.plugin;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.property.PropertyTokenizer;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * MyBatis plugin that pages SELECTs in the database instead of skipping rows in memory: when a
+ * query is run with a {@code RowBounds} other than the default one, or with a page parameter
+ * recognized by {@link #findPage(Object)}, its SQL is rewritten with {@code LIMIT}/{@code OFFSET}
+ * and run without {@code RowBounds}.
+ * <p>
+ * For page parameters the total number of rows is also computed, with a {@code COUNT(*)} query
+ * derived from the statement's SQL, and handed to {@link #setTotalCount(Object, long)}. The
+ * derived SQL is cached per statement and SQL text (i.e. per shape of its dynamic SQL), up to
+ * "countCacheSize" entries.
+ * <p>
+ * This class only knows about {@code RowBounds}; subclasses recognize the page objects of an
+ * application by overriding {@link #findPage(Object)}, {@link #toRowBounds(Object)} and
+ * {@link #setTotalCount(Object, long)}. The generated SQL is MySQL/PostgreSQL syntax, other
+ * databases can override {@link #limitSql(String, int, int)}.
+ * <p>
+ * Statements that already end with a {@code LIMIT} clause page themselves: they are run as they
+ * are, with the {@code RowBounds} applied in memory by MyBatis and no total count.
+ * <p>
+ * Statements with nested result maps (e.g. a {@code <collection>} over a join) are not rewritten
+ * either, since a page of rows would cut the collections of its last object. They read all the
+ * rows and are paged in memory on the mapped objects, whose number is the total count.
+ * <p>
+ * Register it after the plugins that should see the rewritten SQL (e.g.
+ * {@link SlowQueryLogInterceptor}): it runs the query through the inner plugins.
+ */
+public class PaginationInterceptor implements Interceptor {
+
+    private static final Log LOGGER = LogFactory.getLog(PaginationInterceptor.class);
+
+    public static final String COUNT_STATEMENT_SUFFIX = "!count";
+
+    /** 语句末尾的ORDER BY子句（不含括号、参数和LIMIT/OFFSET），统计总数时去掉 */
+    private static final Pattern TRAILING_ORDER_BY = Pattern.compile(
+            "(?is)\\s+order\\s+by\\s+(?:(?!\\b(?:limit|offset|fetch)\\b)[^()?])*$");
+
+    /** 语句末尾的LIMIT子句（LIMIT n、LIMIT m, n、LIMIT n OFFSET m），这类语句自己分页，不再改写 */
+    private static final Pattern TRAILING_LIMIT = Pattern.compile(
+            "(?is)\\s+limit\\s+(?:\\?|\\d+)(?:\\s*,\\s*(?:\\?|\\d+)|\\s+offset\\s+(?:\\?|\\d+))?$");
+
+    private static final Pattern TRAILING_SEMICOLON = Pattern.compile("[\\s;]+$");
+
+    /** 统计总数SQL的缓存，key为语句ID和原SQL */
+    private final ConcurrentMap<String, String> countSqlCache = new ConcurrentHashMap<String, String>();
+
+    /** 统计总数语句的缓存，key为原语句ID */
+    private final ConcurrentMap<String, MappedStatement> countStatements = new ConcurrentHashMap<String, MappedStatement>();
+
+    private int countCacheSize = 1024;
+
+    /** MyBatis从拦截器的实际类型上读取@Intercepts，通过它包装目标对象，子类就不需要再声明注解 */
+    private final Interceptor annotated = new AnnotatedInterceptor(this);
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        Object parameter = args[1];
+        RowBounds rowBounds = (RowBounds) args[2];
+        ResultHandler<?> resultHandler = (ResultHandler<?>) args[3];
+        if (ms.getSqlCommandType() != SqlCommandType.SELECT) {
+            return invocation.proceed();
+        }
+
+        Object page = findPage(parameter);
+        if (rowBounds == null || rowBounds == RowBounds.DEFAULT) {
+            rowBounds = page != null ? toRowBounds(page) : null;
+            if (rowBounds == null || rowBounds == RowBounds.DEFAULT) {
+                return invocation.proceed();
+            }
+        }
+
+        Executor executor = (Executor) invocation.getTarget();
+        BoundSql boundSql = ms.getBoundSql(parameter);
+        String sql = TRAILING_SEMICOLON.matcher(boundSql.getSql()).replaceFirst("");
+        if (TRAILING_LIMIT.matcher(sql).find()) {
+            // 语句已经自己分页，再追加LIMIT会产生语法错误，按原样执行（RowBounds仍由MyBatis在内存中处理）
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Statement '" + ms.getId() + "' already ends with LIMIT, it is not paged");
+            }
+            return invocation.proceed();
+        }
+        if (ms.hasNestedResultMaps()) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Statement '" + ms.getId() + "' has nested result maps, it is paged in memory");
+            }
+            return pageInMemory(executor, ms, parameter, rowBounds, resultHandler, page);
+        }
+        if (page != null) {
+            setTotalCount(page, count(executor, ms, parameter, boundSql, sql));
+        }
+
+        BoundSql pageSql = copy(ms.getConfiguration(), boundSql, limitSql(sql, rowBounds.getOffset(), rowBounds.getLimit()),
+                                parameter);
+        CacheKey cacheKey = executor.createCacheKey(ms, parameter, RowBounds.DEFAULT, pageSql);
+        return executor.query(ms, parameter, RowBounds.DEFAULT, resultHandler, cacheKey, pageSql);
+    }
+
+    /**
+     * Runs the query without bounds and skips the results out of the page once mapped. The
+     * {@code RowBounds} of MyBatis can't be used: the offset would skip rows instead of objects and
+     * the limit would stop reading in the middle of the rows of the last object.
+     */
+    private Object pageInMemory(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                ResultHandler<?> resultHandler, Object page) throws SQLException {
+        if (resultHandler != null) {
+            PagingResultHandler pagingHandler = new PagingResultHandler(resultHandler, rowBounds);
+            executor.query(ms, parameter, RowBounds.DEFAULT, pagingHandler);
+            if (page != null) {
+                setTotalCount(page, pagingHandler.count);
+            }
+            return null;
+        }
+
+        List<Object> results = executor.query(ms, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        if (page != null) {
+            setTotalCount(page, results.size());
+        }
+        int from = Math.min(rowBounds.getOffset(), results.size());
+        int to = rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT ? results.size()
+                 : (int) Math.min((long) from + rowBounds.getLimit(), results.size());
+        return new ArrayList<Object>(results.subList(from, to));
+    }
+
+    private long count(Executor executor, MappedStatement ms, Object parameter, BoundSql boundSql, String sql)
+            throws Exception {
+        MappedStatement countStatement = countStatement(ms);
+        BoundSql countSql = copy(ms.getConfiguration(), boundSql, countSql(ms, sql), parameter);
+        CacheKey cacheKey = executor.createCacheKey(countStatement, parameter, RowBounds.DEFAULT, countSql);
+        List<Object> result = executor.query(countStatement, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER,
+                                             cacheKey, countSql);
+        return result.isEmpty() || result.get(0) == null ? 0L : ((Number) result.get(0)).longValue();
+    }
+
+    /**
+     * Returns the {@code COUNT(*)} query of a SQL, from the cache when possible. A trailing
+     * {@code ORDER BY} without parameters is dropped since it does not change the count.
+     */
+    private String countSql(MappedStatement ms, String sql) {
+        String key = ms.getId() + '\n' + sql;
+        String countSql = this.countSqlCache.get(key);
+        if (countSql == null) {
+            Matcher orderBy = TRAILING_ORDER_BY.matcher(sql);
+            String query = orderBy.find() ? sql.substring(0, orderBy.start()) : sql;
+            countSql = "SELECT COUNT(*) FROM (" + query + ") pagination_count";
+            // 动态SQL（如foreach）可能产生大量不同的SQL，超过上限后不再缓存
+            if (this.countSqlCache.size() < this.countCacheSize) {
+                this.countSqlCache.putIfAbsent(key, countSql);
+            }
+        }
+        return countSql;
+    }
+
+    /**
+     * Statement used to run the count query of {@code ms}: same settings and cache, a single
+     * {@code long} column as result.
+     */
+    private MappedStatement countStatement(MappedStatement ms) {
+        MappedStatement countStatement = this.countStatements.get(ms.getId());
+        if (countStatement == null) {
+            String id = ms.getId() + COUNT_STATEMENT_SUFFIX;
+            Configuration configuration = ms.getConfiguration();
+            List<ResultMap> resultMaps = new ArrayList<ResultMap>(1);
+            resultMaps.add(new ResultMap.Builder(configuration, id + "-Inline", Long.class,
+                                                 Collections.<ResultMapping>emptyList()).build());
+            countStatement = new MappedStatement.Builder(configuration, id, ms.getSqlSource(), SqlCommandType.SELECT)
+                    .resource(ms.getResource())
+                    .statementType(ms.getStatementType())
+                    .timeout(ms.getTimeout())
+                    .databaseId(ms.getDatabaseId())
+                    .resultMaps(resultMaps)
+                    .cache(ms.getCache())
+                    .useCache(ms.isUseCache())
+                    .flushCacheRequired(ms.isFlushCacheRequired())
+                    .build();
+            MappedStatement existing = this.countStatements.putIfAbsent(ms.getId(), countStatement);
+            if (existing != null) {
+                countStatement = existing;
+            }
+        }
+        return countStatement;
+    }
+
+    /**
+     * Copies a {@code BoundSql} with another SQL text, including the additional parameters
+     * (e.g. the {@code foreach} items) it uses.
+     */
+    private static BoundSql copy(Configuration configuration, BoundSql boundSql, String sql, Object parameter) {
+        BoundSql copy = new BoundSql(configuration, sql, boundSql.getParameterMappings(), parameter);
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String name = new PropertyTokenizer(mapping.getProperty()).getName();
+            if (boundSql.hasAdditionalParameter(name)) {
+                copy.setAdditionalParameter(name, boundSql.getAdditionalParameter(name));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Appends the paging clause to a SQL query.
+     *
+     * @param sql the original query, without trailing semicolon
+     * @param offset number of rows to skip
+     * @param limit maximum number of rows, {@code RowBounds.NO_ROW_LIMIT} for no limit
+     * @return the paged query
+     */
+    protected String limitSql(String sql, int offset, int limit) {
+        StringBuilder pageSql = new StringBuilder(sql.length() + 40).append(sql).append(" LIMIT ");
+        pageSql.append(limit == RowBounds.NO_ROW_LIMIT ? Long.MAX_VALUE : limit);
+        if (offset > 0) {
+            pageSql.append(" OFFSET ").append(offset);
+        }
+        return pageSql.toString();
+    }
+
+    /**
+     * Looks for a page object in the parameter of a query. The default implementation uses
+     * {@link #isPage(Object)} on the parameter and, for multi-parameter mapper methods, on each of
+     * the named parameters.
+     *
+     * @return the page object, {@code null} if there is none
+     */
+    protected Object findPage(Object parameter) {
+        if (parameter == null) {
+            return null;
+        }
+        if (isPage(parameter)) {
+            return parameter;
+        }
+        if (parameter instanceof Map) {
+            for (Object value : ((Map<?, ?>) parameter).values()) {
+                if (value != null && isPage(value)) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns if a parameter value is a page object. None is by default.
+     */
+    protected boolean isPage(Object value) {
+        return false;
+    }
+
+    /**
+     * Converts a page object into the rows to fetch.
+     *
+     * @return the bounds, {@code null} or {@code RowBounds.DEFAULT} to run the query unpaged
+     */
+    protected RowBounds toRowBounds(Object page) {
+        return null;
+    }
+
+    /**
+     * Receives the total number of rows of the query of a page object.
+     */
+    protected void setTotalCount(Object page, long totalCount) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Total count of page " + page + ": " + totalCount);
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor ? Plugin.wrap(target, this.annotated) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        String countCacheSize = properties.getProperty("countCacheSize");
+        if (countCacheSize != null) {
+            this.countCacheSize = Integer.parseInt(countCacheSize.trim());
+        }
+    }
+
+
+
+
+
+    // getter and setter ...
+    public int getCountCacheSize() {
+        return countCacheSize;
+    }
+    public void setCountCacheSize(int countCacheSize) {
+        this.countCacheSize = countCacheSize;
+    }
+
+    /**
+     * Passes the results within the bounds to the handler, counting all of them.
+     */
+    private static final class PagingResultHandler implements ResultHandler<Object> {
+
+        private final ResultHandler<Object> delegate;
+
+        private final long offset;
+
+        private final long end;
+
+        private long count;
+
+        @SuppressWarnings("unchecked")
+        PagingResultHandler(ResultHandler<?> delegate, RowBounds rowBounds) {
+            this.delegate = (ResultHandler<Object>) delegate;
+            this.offset = rowBounds.getOffset();
+            this.end = rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT ? Long.MAX_VALUE
+                       : (long) rowBounds.getOffset() + rowBounds.getLimit();
+        }
+
+        @Override
+        public void handleResult(ResultContext<?> resultContext) {
+            long index = this.count++;
+            if (index >= this.offset && index < this.end) {
+                this.delegate.handleResult(resultContext);
+            }
+        }
+    }
+
+    @Intercepts({
+            @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+    })
+    private static final class AnnotatedInterceptor implements Interceptor {
+
+        private final PaginationInterceptor interceptor;
+
+        AnnotatedInterceptor(PaginationInterceptor interceptor) {
+            this.interceptor = interceptor;
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            return this.interceptor.intercept(invocation);
+        }
+
+        @Override
+        public Object plugin(Object target) {
+            return this.interceptor.plugin(target);
+        }
+
+        @Override
+        public void setProperties(Properties properties) {
+            this.interceptor.setProperties(properties);
+        }
+    }
+
+}
@@ -0,0 +1,473 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.plugin;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * MyBatis plugin that logs the statements running longer than a threshold, with their SQL, the
+ * parameter values, the number of rows returned or updated, and the time spent fetching and
+ * mapping the results.
+ * <p>
+ * The calling thread only keeps references to the statement, its {@code BoundSql} and parameter,
+ * and hands them to a bounded queue drained by a single daemon thread. That thread renders the SQL
+ * and parameter values and does the actual logging (at WARN level, through the MyBatis
+ * {@code Log}), so the calling thread never formats entries nor waits on the logging backend.
+ * Parameter values are therefore read when the entry is logged: a parameter object changed right
+ * after the call may be logged with its new values. When the queue is full entries are dropped and
+ * counted instead of blocking, see {@link #getDroppedCount()}. Failing to capture or log an entry
+ * never affects the statement itself.
+ * <p>
+ * The default threshold can be overridden per mapped statement id. As plugin properties,
+ * "thresholdMillis" sets the default threshold and "threshold.&lt;statement id&gt;" the threshold
+ * of one statement.
+ *
+ * <pre class="code">
+ * {@code
+ * <bean id="sqlSessionFactory" class="org.mybatis.spring.SqlSessionFactoryBean">
+ *   <property name="plugins">
+ *     <bean class="org.mybatis.spring.plugin.SlowQueryLogInterceptor">
+ *       <property name="thresholdMillis" value="500" />
+ *       <property name="statementThresholds">
+ *         <map>
+ *           <entry key="com.whz.springmybatis.dao.UserDao.getAllUser" value="100" />
+ *         </map>
+ *       </property>
+ *     </bean>
+ *   </property>
+ * </bean>
+ * }
+ * </pre>
+ */
+public class SlowQueryLogInterceptor implements Interceptor, DisposableBean {
+
+    private static final Log LOGGER = LogFactory.getLog(SlowQueryLogInterceptor.class);
+
+    private static final String THRESHOLD_PROPERTY_PREFIX = "threshold.";
+
+    /** 语句执行失败时的行数标记 */
+    private static final int FAILED = -1;
+
+    /** 无法得知行数（如返回游标）时的行数标记 */
+    private static final int UNKNOWN_ROWS = -2;
+
+    /** 当前线程正在执行的语句的采集信息 */
+    private static final ThreadLocal<Capture> CAPTURE = new ThreadLocal<Capture>();
+
+    /** 默认的慢查询阈值（毫秒） */
+    private long thresholdMillis = 1000L;
+
+    /** 按语句ID配置的阈值（毫秒），优先于默认阈值 */
+    private Map<String, Long> statementThresholds = new HashMap<String, Long>();
+
+    private int queueCapacity = 1000;
+
+    /** 单个参数值的最大打印长度 */
+    private int maxParameterLength = 200;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private volatile BlockingQueue<SlowStatement> queue;
+
+    private Thread loggerThread;
+
+    /** 销毁后不再入队，之后的慢查询计入丢弃数 */
+    private volatile boolean destroyed;
+
+    /** MyBatis从拦截器的实际类型上读取@Intercepts，通过它包装目标对象，子类就不需要再声明注解 */
+    private final Interceptor annotated = new AnnotatedInterceptor(this);
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object target = invocation.getTarget();
+        if (target instanceof StatementHandler) {
+            Capture capture = CAPTURE.get();
+            if (capture != null) {
+                capture.boundSql = ((StatementHandler) target).getBoundSql();
+            }
+            return invocation.proceed();
+        }
+        if (target instanceof ResultSetHandler) {
+            Capture capture = CAPTURE.get();
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                if (capture != null) {
+                    capture.fetchNanos += System.nanoTime() - start;
+                }
+            }
+        }
+        return interceptExecutor(invocation);
+    }
+
+    private Object interceptExecutor(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+
+        Capture previous = CAPTURE.get();
+        Capture capture = new Capture();
+        CAPTURE.set(capture);
+        Object result = null;
+        boolean failed = true;
+        long start = System.nanoTime();
+        try {
+            result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            if (previous != null) {
+                CAPTURE.set(previous);
+            } else {
+                CAPTURE.remove();
+            }
+            try {
+                if (elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(thresholdFor(ms.getId()))) {
+                    // 命中缓存等情况下没有创建StatementHandler，由日志线程生成BoundSql
+                    BoundSql boundSql = capture.boundSql != null ? capture.boundSql
+                                                                 : args.length == 6 ? (BoundSql) args[5] : null;
+                    enqueue(new SlowStatement(ms, boundSql, args[1], rowCount(result, failed), elapsedNanos, capture.fetchNanos));
+                }
+            } catch (RuntimeException e) {
+                // 记录慢查询失败不能影响语句的执行结果
+                this.droppedCount.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        if (target instanceof Executor || target instanceof StatementHandler || target instanceof ResultSetHandler) {
+            return Plugin.wrap(target, this.annotated);
+        }
+        return target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        for (String name : properties.stringPropertyNames()) {
+            String value = properties.getProperty(name).trim();
+            if ("thresholdMillis".equals(name)) {
+                this.thresholdMillis = Long.parseLong(value);
+            } else if ("queueCapacity".equals(name)) {
+                this.queueCapacity = Integer.parseInt(value);
+            } else if (name.startsWith(THRESHOLD_PROPERTY_PREFIX)) {
+                this.statementThresholds.put(name.substring(THRESHOLD_PROPERTY_PREFIX.length()), Long.valueOf(value));
+            }
+        }
+    }
+
+    /**
+     * Stops the logging thread, after it logged the entries already queued. Slow statements that
+     * complete afterwards are counted as dropped.
+     */
+    @Override
+    public void destroy() throws Exception {
+        this.destroyed = true;
+        Thread thread;
+        synchronized (this) {
+            thread = this.loggerThread;
+            this.loggerThread = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of slow statements that were not logged because the queue was full, or
+     * because they could not be captured or formatted, or because the interceptor was destroyed.
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    private long thresholdFor(String statementId) {
+        Long threshold = this.statementThresholds.get(statementId);
+        return threshold != null ? threshold : this.thresholdMillis;
+    }
+
+    private void enqueue(SlowStatement entry) {
+        if (this.destroyed) {
+            this.droppedCount.incrementAndGet();
+            return;
+        }
+        BlockingQueue<SlowStatement> queue = this.queue;
+        if (queue == null) {
+            queue = start();
+        }
+        if (!queue.offer(entry)) {
+            this.droppedCount.incrementAndGet();
+        } else if (this.destroyed && queue.remove(entry)) {
+            // 与destroy()并发时，日志线程可能已经输出完队列并退出，不能把记录留在队列中
+            this.droppedCount.incrementAndGet();
+        }
+    }
+
+    private synchronized BlockingQueue<SlowStatement> start() {
+        if (this.queue == null) {
+            final BlockingQueue<SlowStatement> queue = new ArrayBlockingQueue<SlowStatement>(this.queueCapacity);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drain(queue);
+                }
+            }, "mybatis-slow-query-log");
+            thread.setDaemon(true);
+            thread.start();
+            this.loggerThread = thread;
+            this.queue = queue;
+        }
+        return this.queue;
+    }
+
+    private void drain(BlockingQueue<SlowStatement> queue) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                write(queue.take());
+            }
+        } catch (InterruptedException e) {
+            // 销毁时中断，继续输出已入队的记录
+        }
+        SlowStatement entry;
+        while ((entry = queue.poll()) != null) {
+            write(entry);
+        }
+    }
+
+    private void write(SlowStatement entry) {
+        try {
+            log(format(entry));
+        } catch (RuntimeException e) {
+            this.droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Logs one formatted entry, called on the logging thread only.
+     *
+     * @param entry the slow statement, its SQL and parameter values
+     */
+    protected void log(String entry) {
+        LOGGER.warn(entry);
+    }
+
+    private String format(SlowStatement slowStatement) {
+        MappedStatement ms = slowStatement.mappedStatement;
+        BoundSql boundSql = slowStatement.boundSql != null ? slowStatement.boundSql
+                                                           : ms.getBoundSql(slowStatement.parameter);
+        StringBuilder entry = new StringBuilder(256);
+        entry.append("Slow statement ").append(ms.getId())
+             .append(" took ").append(TimeUnit.NANOSECONDS.toMillis(slowStatement.elapsedNanos)).append(" ms")
+             .append(" (fetch ").append(TimeUnit.NANOSECONDS.toMillis(slowStatement.fetchNanos)).append(" ms, ");
+        if (slowStatement.rows == FAILED) {
+            entry.append("failed");
+        } else if (slowStatement.rows == UNKNOWN_ROWS) {
+            entry.append("rows ?");
+        } else {
+            entry.append("rows ").append(slowStatement.rows);
+        }
+        entry.append(")\n    SQL: ").append(boundSql.getSql().replaceAll("\\s+", " ").trim())
+             .append("\n    Parameters: ").append(parameterValues(ms.getConfiguration(), boundSql));
+        return entry.toString();
+    }
+
+    private static int rowCount(Object result, boolean failed) {
+        if (failed) {
+            return FAILED;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        return UNKNOWN_ROWS;
+    }
+
+    /**
+     * Resolves the parameter values the same way {@code DefaultParameterHandler} does.
+     */
+    private List<String> parameterValues(Configuration configuration, BoundSql boundSql) {
+        List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+        List<String> values = new ArrayList<String>(parameterMappings.size());
+        Object parameterObject = boundSql.getParameterObject();
+        MetaObject metaObject = null;
+        for (ParameterMapping parameterMapping : parameterMappings) {
+            if (parameterMapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String propertyName = parameterMapping.getProperty();
+            Object value;
+            try {
+                if (boundSql.hasAdditionalParameter(propertyName)) {
+                    value = boundSql.getAdditionalParameter(propertyName);
+                } else if (parameterObject == null) {
+                    value = null;
+                } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                    value = parameterObject;
+                } else {
+                    if (metaObject == null) {
+                        metaObject = configuration.newMetaObject(parameterObject);
+                    }
+                    value = metaObject.getValue(propertyName);
+                }
+            } catch (RuntimeException e) {
+                value = "<" + e.getClass().getSimpleName() + ">";
+            }
+            values.add(abbreviate(value));
+        }
+        return values;
+    }
+
+    private String abbreviate(Object value) {
+        String text = String.valueOf(value);
+        if (this.maxParameterLength > 0 && text.length() > this.maxParameterLength) {
+            return text.substring(0, this.maxParameterLength) + "...";
+        }
+        return text;
+    }
+
+    private static final class Capture {
+
+        private BoundSql boundSql;
+
+        private long fetchNanos;
+    }
+
+    /**
+     * A slow statement waiting to be formatted and logged, holds raw references only.
+     */
+    private static final class SlowStatement {
+
+        private final MappedStatement mappedStatement;
+
+        /** 为空时由日志线程根据参数生成 */
+        private final BoundSql boundSql;
+
+        private final Object parameter;
+
+        private final int rows;
+
+        private final long elapsedNanos;
+
+        private final long fetchNanos;
+
+        SlowStatement(MappedStatement mappedStatement, BoundSql boundSql, Object parameter, int rows,
+                      long elapsedNanos, long fetchNanos) {
+            this.mappedStatement = mappedStatement;
+            this.boundSql = boundSql;
+            this.parameter = parameter;
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+            this.fetchNanos = fetchNanos;
+        }
+    }
+
+
+
+
+
+    // getter and setter ...
+    public long getThresholdMillis() {
+        return thresholdMillis;
+    }
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+    public Map<String, Long> getStatementThresholds() {
+        return statementThresholds;
+    }
+    public void setStatementThresholds(Map<String, Long> statementThresholds) {
+        this.statementThresholds = new HashMap<String, Long>(statementThresholds);
+    }
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+    public int getMaxParameterLength() {
+        return maxParameterLength;
+    }
+    public void setMaxParameterLength(int maxParameterLength) {
+        this.maxParameterLength = maxParameterLength;
+    }
+
+    @Intercepts({
+            @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+            @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+            @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+            @Signature(type = StatementHandler.class, method = "parameterize", args = {Statement.class}),
+            @Signature(type = ResultSetHandler.class, method = "handleResultSets", args = {Statement.class})
+    })
+    private static final class AnnotatedInterceptor implements Interceptor {
+
+        private final SlowQueryLogInterceptor interceptor;
+
+        AnnotatedInterceptor(SlowQueryLogInterceptor interceptor) {
+            this.interceptor = interceptor;
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            return this.interceptor.intercept(invocation);
+        }
+
+        @Override
+        public Object plugin(Object target) {
+            return this.interceptor.plugin(target);
+        }
+
+        @Override
+        public void setProperties(Properties properties) {
+            this.interceptor.setProperties(properties);
+        }
+    }
+
+}
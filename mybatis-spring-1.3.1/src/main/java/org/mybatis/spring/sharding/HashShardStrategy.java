@@ -0,0 +1,34 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.sharding;
+
+/**
+ * {@link ShardStrategy} that hashes the string form of the key, which spreads sequential keys
+ * evenly and gives the same shard on every JVM (unlike {@code Object#hashCode()}).
+ */
+public class HashShardStrategy implements ShardStrategy {
+
+    @Override
+    public int getShard(Object shardKey, int shardCount) {
+        int hash = shardKey.toString().hashCode();
+        // 打散低位，避免连续的键集中在相邻的分片
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return (hash & Integer.MAX_VALUE) % shardCount;
+    }
+
+}
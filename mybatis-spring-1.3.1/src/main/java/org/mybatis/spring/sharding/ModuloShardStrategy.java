@@ -0,0 +1,39 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.sharding;
+
+/**
+ * Default {@link ShardStrategy}: numeric keys go to shard {@code key % shardCount}, other keys
+ * are hashed with {@link HashShardStrategy}.
+ * <p>
+ * With numeric keys generated by the databases, setting {@code auto_increment_increment} to the
+ * shard count and {@code auto_increment_offset} to the shard index on each shard (the shard count
+ * for shard 0) makes every generated key route back to the shard that generated it.
+ */
+public class ModuloShardStrategy implements ShardStrategy {
+
+    private final HashShardStrategy fallback = new HashShardStrategy();
+
+    @Override
+    public int getShard(Object shardKey, int shardCount) {
+        if (shardKey instanceof Number) {
+            long key = ((Number) shardKey).longValue();
+            return (int) (((key % shardCount) + shardCount) % shardCount);
+        }
+        return this.fallback.getShard(shardKey, shardCount);
+    }
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.sharding;
+
+/**
+ * Strategy that maps a shard key (e.g. a user id) to one of the shards of a
+ * {@link ShardedSqlSessionTemplate}. Implementations must be stateless and always return the
+ * same shard for the same key and shard count.
+ *
+ * @see ModuloShardStrategy
+ * @see HashShardStrategy
+ */
+public interface ShardStrategy {
+
+    /**
+     * Returns the shard of the given key.
+     *
+     * @param shardKey the shard key, never {@code null}; integral keys are passed as {@code Long}s,
+     *                 see {@link ShardedSqlSessionTemplate#normalizeShardKey(Object)}
+     * @param shardCount the number of shards, at least 1
+     * @return the shard index, between 0 (inclusive) and {@code shardCount} (exclusive)
+     */
+    int getShard(Object shardKey, int shardCount);
+
+}
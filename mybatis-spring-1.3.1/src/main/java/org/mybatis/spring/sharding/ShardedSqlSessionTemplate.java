@@ -0,0 +1,795 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.sharding;
+
+import static org.springframework.util.Assert.notEmpty;
+import static org.springframework.util.Assert.notNull;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.AsyncSqlSessionTemplate;
+import org.mybatis.spring.MyBatisExceptionTranslator;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.metrics.StatementMetrics;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * {@code SqlSessionTemplate} that spreads the statements over several databases (shards), one
+ * {@code SqlSessionFactory} per shard. Each shard is accessed through its own
+ * {@code SqlSessionTemplate}, so sessions, Spring transactions and exception translation work per
+ * shard as usual.
+ * <p>
+ * The shard of a call is given by its shard key: the value of the property configured for the
+ * statement id in {@code shardKeyProperties}, read from the parameter object (e.g. {@code uid} for
+ * {@code UserDao.getUser}, {@code user.uid} for {@code AddressDao.insertAddress}). When the
+ * parameter is a single value (e.g. {@code getUser(Long uid)}) it is the key itself if the property
+ * is a simple name. Only list statements that select rows by equality on the key: a statement
+ * using the property otherwise (e.g. {@code uid like #{uid}}) must be scattered, not routed. Keys
+ * are normalised first (integral numbers and numeric strings become {@code Long}s, see
+ * {@link #normalizeShardKey(Object)}), then the {@link ShardStrategy} turns the key into a shard
+ * index.
+ * <p>
+ * Calls without a shard key are scattered to all the shards:
+ * <ul>
+ * <li>selects run on every shard, in parallel outside a transaction, and the results are
+ * concatenated in shard order, or merged with the comparator configured for the statement in
+ * {@code resultComparators} (which must sort as its {@code ORDER BY} clause); {@code RowBounds}
+ * offset and limit apply to the merged result, in every select method. Statements paginating in
+ * their SQL (ending with a {@code LIMIT} clause) are rejected, as each shard would return its own
+ * page, and so are statements with an {@code ORDER BY} clause but no comparator called with an
+ * offset or a limit, as the page would not follow the order</li>
+ * <li>updates and deletes run on every shard and return the sum of the affected rows. They are not
+ * atomic across the shards: a Spring transaction holds the connection of one {@code DataSource}
+ * (the other shards run in their own transactions, or auto-commit), so a failure on one shard does
+ * not roll back the changes made on the others; use JTA with XA data sources if they must be</li>
+ * <li>inserts are rejected, unless {@code distributeKeylessInserts} is set; they are then spread
+ * round robin, which only suits keys generated by the shards so that they route back (see
+ * {@link ModuloShardStrategy})</li>
+ * <li>cursors and streams require a shard key</li>
+ * </ul>
+ * Keys of other tables (e.g. an address id) must be unique across all the shards.
+ * {@link #execute} callbacks, {@code getConnection()} and {@code getConfiguration()} use the
+ * first shard. The exception translator, {@code writeBehind}, {@code forceCommitOnRead} and
+ * {@code statementMetrics} apply to every shard; without a translator each shard translates with
+ * its own {@code DataSource}.
+ *
+ * <pre class="code">
+ * {@code
+ * <bean id="sqlSessionTemplate" class="org.mybatis.spring.sharding.ShardedSqlSessionTemplate">
+ *   <constructor-arg>
+ *     <list>
+ *       <ref bean="sqlSessionFactory0" />
+ *       <ref bean="sqlSessionFactory1" />
+ *     </list>
+ *   </constructor-arg>
+ *   <property name="shardStrategy">
+ *     <bean class="org.mybatis.spring.sharding.ModuloShardStrategy" />
+ *   </property>
+ *   <property name="shardKeyProperties">
+ *     <map>
+ *       <entry key="com.whz.springmybatis.dao.UserDao.getUser" value="uid" />
+ *       <entry key="com.whz.springmybatis.dao.UserDao.updateUser" value="uid" />
+ *       <entry key="com.whz.springmybatis.dao.UserDao.deleteUser" value="uid" />
+ *       <entry key="com.whz.springmybatis.dao.AddressDao.insertAddress" value="user.uid" />
+ *     </map>
+ *   </property>
+ * </bean>
+ * }
+ * </pre>
+ *
+ * @see ShardStrategy
+ */
+public class ShardedSqlSessionTemplate extends SqlSessionTemplate {
+
+    /** 每个分片对应的SqlSessionTemplate */
+    private final List<SqlSessionTemplate> shards;
+
+    private ShardStrategy shardStrategy = new ModuloShardStrategy();
+
+    /** 语句末尾的LIMIT子句，在SQL中分页的语句不能分散到所有分片执行 */
+    private static final Pattern TRAILING_LIMIT = Pattern.compile("(?is)\\slimit\\s+[^()]*$");
+
+    /** ORDER BY子句，没有比较器时不能在合并后的结果上分页 */
+    private static final Pattern ORDER_BY = Pattern.compile("(?is)\\border\\s+by\\b");
+
+    /** 整数形式的分片键字符串 */
+    private static final Pattern INTEGRAL = Pattern.compile("[+-]?\\d+");
+
+    /** 语句ID -> 分片键在参数对象中的属性路径，只配置按分片键等值查询的语句 */
+    private Map<String, String> shardKeyProperties = new HashMap<String, String>();
+
+    /** 语句ID -> 结果的比较器，与语句的ORDER BY一致，分散查询时用于合并各分片的有序结果 */
+    private Map<String, Comparator<?>> resultComparators = new HashMap<String, Comparator<?>>();
+
+    /** 没有分片键的insert语句是否轮流分配到各个分片，默认抛出异常 */
+    private boolean distributeKeylessInserts;
+
+    private final AtomicInteger nextInsertShard = new AtomicInteger();
+
+    /** 外部提供的执行器，为空时使用内部创建的线程池 */
+    private Executor executor;
+
+    /** 内部创建的执行器，销毁Bean时需要关闭 */
+    private ExecutorService internalExecutor;
+
+    /** 内部线程池的线程数，默认为分片数 */
+    private int poolSize;
+
+
+    public ShardedSqlSessionTemplate(List<SqlSessionFactory> sqlSessionFactories) {
+        this(sqlSessionFactories, firstOf(sqlSessionFactories).getConfiguration().getDefaultExecutorType());
+    }
+    public ShardedSqlSessionTemplate(List<SqlSessionFactory> sqlSessionFactories, ExecutorType executorType) {
+        this(sqlSessionFactories, executorType, null);
+    }
+    public ShardedSqlSessionTemplate(List<SqlSessionFactory> sqlSessionFactories, ExecutorType executorType,
+                                     PersistenceExceptionTranslator exceptionTranslator) {
+        super(firstOf(sqlSessionFactories), executorType, exceptionTranslator != null ? exceptionTranslator
+              : new MyBatisExceptionTranslator(sqlSessionFactories.get(0).getConfiguration().getEnvironment().getDataSource(), true));
+
+        List<SqlSessionTemplate> shards = new ArrayList<SqlSessionTemplate>(sqlSessionFactories.size());
+        for (SqlSessionFactory sqlSessionFactory : sqlSessionFactories) {
+            notNull(sqlSessionFactory, "Shard SqlSessionFactory must not be null");
+            // 没有指定异常转换器时，每个分片使用自己数据源的转换器
+            shards.add(exceptionTranslator != null
+                       ? new SqlSessionTemplate(sqlSessionFactory, executorType, exceptionTranslator)
+                       : new SqlSessionTemplate(sqlSessionFactory, executorType));
+        }
+        this.shards = Collections.unmodifiableList(shards);
+        this.poolSize = shards.size();
+    }
+
+    private static SqlSessionFactory firstOf(List<SqlSessionFactory> sqlSessionFactories) {
+        notEmpty(sqlSessionFactories, "Property 'sqlSessionFactories' is required");
+        return sqlSessionFactories.get(0);
+    }
+
+    public List<SqlSessionTemplate> getShards() {
+        return this.shards;
+    }
+
+    public int getShardCount() {
+        return this.shards.size();
+    }
+
+    /**
+     * Applies to every shard.
+     */
+    @Override
+    public void setForceCommitOnRead(boolean forceCommitOnRead) {
+        super.setForceCommitOnRead(forceCommitOnRead);
+        for (SqlSessionTemplate shard : this.shards) {
+            shard.setForceCommitOnRead(forceCommitOnRead);
+        }
+    }
+
+    /**
+     * Applies to every shard: the writes of a transaction are batched per shard.
+     */
+    @Override
+    public void setWriteBehind(boolean writeBehind) {
+        super.setWriteBehind(writeBehind);
+        for (SqlSessionTemplate shard : this.shards) {
+            shard.setWriteBehind(writeBehind);
+        }
+    }
+
+    /**
+     * Applies to every shard.
+     */
+    @Override
+    public void setStatementMetrics(StatementMetrics statementMetrics) {
+        super.setStatementMetrics(statementMetrics);
+        for (SqlSessionTemplate shard : this.shards) {
+            shard.setStatementMetrics(statementMetrics);
+        }
+    }
+
+    /**
+     * Shuts down the internal executor, if one was created. A plugged executor is left alone.
+     */
+    @Override
+    public void destroy() throws Exception {
+        ExecutorService executorService;
+        synchronized (this) {
+            executorService = this.internalExecutor;
+            this.internalExecutor = null;
+        }
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Returns the shard key of the call, read from the parameter with the property configured for
+     * the statement.
+     *
+     * @param statement the mapped statement id
+     * @param parameter the parameter object of the call
+     * @return the shard key, or {@code null} if the call has none
+     */
+    protected Object getShardKey(String statement, Object parameter) {
+        if (parameter == null) {
+            return null;
+        }
+        String property = this.shardKeyProperties.get(statement);
+        if (property == null) {
+            return null;
+        }
+
+        Configuration configuration = getConfiguration();
+        if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+            // 单个简单类型参数，本身就是分片键（如 getUser(Long uid)）
+            return property.indexOf('.') < 0 ? parameter : null;
+        }
+        MetaObject metaObject = configuration.newMetaObject(parameter);
+        return metaObject.hasGetter(property) ? metaObject.getValue(property) : null;
+    }
+
+    /**
+     * Converts the shard key to the type the strategy sees, so that equal keys route to the same
+     * shard whatever their Java type: integral numbers ({@code Integer}, {@code Long},
+     * {@code BigInteger}, {@code BigDecimal} or floating point values without fraction within the
+     * {@code long} range) and strings holding an integer (e.g. {@code "12"}) become {@code Long}s.
+     * Other keys are returned as is.
+     *
+     * @param shardKey the key read from the parameter, never {@code null}
+     * @return the key to pass to the {@link ShardStrategy}
+     */
+    protected Object normalizeShardKey(Object shardKey) {
+        if (shardKey instanceof Long) {
+            return shardKey;
+        }
+        if (shardKey instanceof Integer || shardKey instanceof Short || shardKey instanceof Byte) {
+            return ((Number) shardKey).longValue();
+        }
+        if (shardKey instanceof Number) {
+            try {
+                return new BigDecimal(shardKey.toString()).longValueExact();
+            } catch (ArithmeticException e) {
+                return shardKey;
+            } catch (NumberFormatException e) {
+                // NaN、Infinity
+                return shardKey;
+            }
+        }
+        if (shardKey instanceof CharSequence) {
+            String text = shardKey.toString().trim();
+            if (INTEGRAL.matcher(text).matches()) {
+                try {
+                    return Long.valueOf(text);
+                } catch (NumberFormatException e) {
+                    // 超出long的范围
+                    return shardKey;
+                }
+            }
+        }
+        return shardKey;
+    }
+
+    /**
+     * Returns the template of the shard the call belongs to.
+     *
+     * @return the shard, or {@code null} if the call has no shard key
+     */
+    protected SqlSessionTemplate getShard(String statement, Object parameter) {
+        Object shardKey = getShardKey(statement, parameter);
+        if (shardKey == null) {
+            return null;
+        }
+        shardKey = normalizeShardKey(shardKey);
+        int shard = this.shardStrategy.getShard(shardKey, this.shards.size());
+        if (shard < 0 || shard >= this.shards.size()) {
+            throw new IllegalStateException("ShardStrategy returned shard " + shard + " for key '" + shardKey
+                                            + "' but there are " + this.shards.size() + " shards");
+        }
+        return this.shards.get(shard);
+    }
+
+    private SqlSessionTemplate requireShard(String statement, Object parameter) {
+        SqlSessionTemplate shard = getShard(statement, parameter);
+        if (shard == null) {
+            throw new InvalidDataAccessApiUsageException("Statement '" + statement + "' requires a shard key");
+        }
+        return shard;
+    }
+
+    /**
+     * Runs the call on every shard, in parallel when no transaction is active (transactions are
+     * bound to the calling thread), and returns the results in shard order.
+     */
+    private <T> List<T> scatter(final ShardCallback<T> callback) {
+        List<T> results = new ArrayList<T>(this.shards.size());
+        if (this.shards.size() == 1 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (SqlSessionTemplate shard : this.shards) {
+                results.add(callback.doInShard(shard));
+            }
+            return results;
+        }
+
+        List<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>(this.shards.size());
+        Executor executor = resolveExecutor();
+        for (final SqlSessionTemplate shard : this.shards) {
+            FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+                @Override
+                public T call() {
+                    return callback.doInShard(shard);
+                }
+            });
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // 线程池已满时在当前线程执行
+                task.run();
+            }
+        }
+        for (FutureTask<T> task : tasks) {
+            results.add(waitFor(task));
+        }
+        return results;
+    }
+
+    private static <T> T waitFor(FutureTask<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shard", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Shard call failed", cause);
+        }
+    }
+
+    private synchronized Executor resolveExecutor() {
+        if (this.executor != null) {
+            return this.executor;
+        }
+        if (this.internalExecutor == null) {
+            this.internalExecutor = AsyncSqlSessionTemplate.newBoundedExecutor(this.poolSize, this.poolSize * 4, "mybatis-shard-");
+        }
+        return this.internalExecutor;
+    }
+
+    /**
+     * Rejects the scatter of a statement that paginates in its SQL: every shard would return its
+     * own page and the merged result would not be any page of the whole data. Rejects as well the
+     * pagination of a statement ordering its rows without a comparator to merge them.
+     *
+     * @return the comparator of the statement, or {@code null} to concatenate the shard results
+     */
+    private Comparator<?> checkScatterable(String statement, Object parameter, RowBounds rowBounds) {
+        String sql = getConfiguration().getMappedStatement(statement).getBoundSql(parameter).getSql();
+        if (TRAILING_LIMIT.matcher(sql).find()) {
+            throw new InvalidDataAccessApiUsageException(
+                    "Statement '" + statement + "' paginates in SQL and cannot run on all the shards, "
+                    + "add a shard key or paginate with RowBounds");
+        }
+        Comparator<?> comparator = this.resultComparators.get(statement);
+        if (comparator == null && ORDER_BY.matcher(sql).find()
+            && (rowBounds.getOffset() != RowBounds.NO_ROW_OFFSET || rowBounds.getLimit() != RowBounds.NO_ROW_LIMIT)) {
+            throw new InvalidDataAccessApiUsageException(
+                    "Statement '" + statement + "' orders its rows and cannot be paginated across the shards, "
+                    + "add a shard key or configure its comparator in 'resultComparators'");
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> List<E> merge(List<List<E>> results, RowBounds rowBounds, Comparator<?> comparator) {
+        List<E> merged = new ArrayList<E>();
+        for (List<E> result : results) {
+            merged.addAll(result);
+        }
+        if (comparator != null) {
+            // 各分片的结果已经有序，归并排序（TimSort）识别出这些有序段后只需合并
+            Collections.sort(merged, (Comparator<? super E>) comparator);
+        }
+        int offset = rowBounds.getOffset();
+        int limit = rowBounds.getLimit();
+        if (offset == RowBounds.NO_ROW_OFFSET && limit == RowBounds.NO_ROW_LIMIT) {
+            return merged;
+        }
+        int from = Math.min(offset, merged.size());
+        int to = limit == RowBounds.NO_ROW_LIMIT ? merged.size() : (int) Math.min((long) from + limit, merged.size());
+        return new ArrayList<E>(merged.subList(from, to));
+    }
+
+    /**
+     * Each shard must return all the rows that can end up in the merged page: the first
+     * {@code offset + limit} ones.
+     */
+    static RowBounds shardRowBounds(RowBounds rowBounds) {
+        if (rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT) {
+            return RowBounds.DEFAULT;
+        }
+        return new RowBounds(RowBounds.NO_ROW_OFFSET,
+                             (int) Math.min((long) rowBounds.getOffset() + rowBounds.getLimit(), Integer.MAX_VALUE));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> Map<K, V> mergeMaps(List<Map<K, V>> results, RowBounds rowBounds, Comparator<?> comparator) {
+        List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>();
+        for (Map<K, V> result : results) {
+            entries.addAll(result.entrySet());
+        }
+        if (comparator != null) {
+            final Comparator<? super V> valueComparator = (Comparator<? super V>) comparator;
+            Collections.sort(entries, new Comparator<Map.Entry<K, V>>() {
+                @Override
+                public int compare(Map.Entry<K, V> left, Map.Entry<K, V> right) {
+                    return valueComparator.compare(left.getValue(), right.getValue());
+                }
+            });
+        }
+        Map<K, V> merged = new LinkedHashMap<K, V>();
+        int offset = rowBounds.getOffset();
+        int limit = rowBounds.getLimit();
+        int index = 0;
+        for (Map.Entry<K, V> entry : entries) {
+            if (limit != RowBounds.NO_ROW_LIMIT && merged.size() >= limit) {
+                return merged;
+            }
+            if (index++ >= offset) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    private static int sum(List<Integer> counts) {
+        int total = 0;
+        for (Integer count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    private interface ShardCallback<T> {
+
+        T doInShard(SqlSessionTemplate shard);
+    }
+
+    /**
+     * Applies the offset and limit across the shards: skips the first {@code offset} results of
+     * all the shards, then passes at most {@code limit} results to the handler.
+     */
+    static final class BoundedResultHandler implements ResultHandler<Object> {
+
+        private final ResultHandler<Object> delegate;
+
+        private final int offset;
+
+        private final int limit;
+
+        private int seen;
+
+        private int handled;
+
+        @SuppressWarnings("unchecked")
+        BoundedResultHandler(ResultHandler<?> delegate, RowBounds rowBounds) {
+            this.delegate = (ResultHandler<Object>) delegate;
+            this.offset = rowBounds.getOffset();
+            this.limit = rowBounds.getLimit();
+        }
+
+        @Override
+        public void handleResult(ResultContext<?> resultContext) {
+            if (isFull()) {
+                resultContext.stop();
+                return;
+            }
+            if (this.seen++ < this.offset) {
+                return;
+            }
+            this.handled++;
+            this.delegate.handleResult(resultContext);
+            if (isFull()) {
+                resultContext.stop();
+            }
+        }
+
+        boolean isFull() {
+            return this.limit != RowBounds.NO_ROW_LIMIT && this.handled >= this.limit;
+        }
+    }
+
+
+
+
+    // 实现SqlSession接口
+
+    @Override
+    public <T> T selectOne(String statement) {
+        return selectOne(statement, null);
+    }
+    @Override
+    public <T> T selectOne(String statement, Object parameter) {
+        SqlSessionTemplate shard = getShard(statement, parameter);
+        if (shard != null) {
+            return shard.<T>selectOne(statement, parameter);
+        }
+        List<T> list = this.<T>selectList(statement, parameter);
+        if (list.size() == 1) {
+            return list.get(0);
+        } else if (list.size() > 1) {
+            throw new TooManyResultsException("Expected one result (or null) to be returned by selectOne(), but found: " + list.size());
+        }
+        return null;
+    }
+    @Override
+    public <K, V> Map<K, V> selectMap(String statement, String mapKey) {
+        return selectMap(statement, null, mapKey, RowBounds.DEFAULT);
+    }
+    @Override
+    public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey) {
+        return selectMap(statement, parameter, mapKey, RowBounds.DEFAULT);
+    }
+    @Override
+    public <K, V> Map<K, V> selectMap(final String statement, final Object parameter, final String mapKey, final RowBounds rowBounds) {
+        SqlSessionTemplate shard = getShard(statement, parameter);
+        if (shard != null) {
+            return shard.<K, V>selectMap(statement, parameter, mapKey, rowBounds);
+        }
+        Comparator<?> comparator = checkScatterable(statement, parameter, rowBounds);
+        List<Map<K, V>> results = scatter(new ShardCallback<Map<K, V>>() {
+            @Override
+            public Map<K, V> doInShard(SqlSessionTemplate shard) {
+                return shard.<K, V>selectMap(statement, parameter, mapKey, shardRowBounds(rowBounds));
+            }
+        });
+        return mergeMaps(results, rowBounds, comparator);
+    }
+    @Override
+    public <T> Cursor<T> selectCursor(String statement) {
+        return selectCursor(statement, null, RowBounds.DEFAULT);
+    }
+    @Override
+    public <T> Cursor<T> selectCursor(String statement, Object parameter) {
+        return selectCursor(statement, parameter, RowBounds.DEFAULT);
+    }
+    @Override
+    public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+        return requireShard(statement, parameter).<T>selectCursor(statement, parameter, rowBounds);
+    }
+    @Override
+    public <T> Stream<T> selectStream(String statement) {
+        return selectStream(statement, null, RowBounds.DEFAULT);
+    }
+    @Override
+    public <T> Stream<T> selectStream(String statement, Object parameter) {
+        return selectStream(statement, parameter, RowBounds.DEFAULT);
+    }
+    @Override
+    public <T> Stream<T> selectStream(String statement, Object parameter, RowBounds rowBounds) {
+        return requireShard(statement, parameter).<T>selectStream(statement, parameter, rowBounds);
+    }
+    @Override
+    public <E> List<E> selectList(String statement) {
+        return selectList(statement, null, RowBounds.DEFAULT);
+    }
+    @Override
+    public <E> List<E> selectList(String statement, Object parameter) {
+        return selectList(statement, parameter, RowBounds.DEFAULT);
+    }
+    @Override
+    public <E> List<E> selectList(final String statement, final Object parameter, final RowBounds rowBounds) {
+        SqlSessionTemplate shard = getShard(statement, parameter);
+        if (shard != null) {
+            return shard.<E>selectList(statement, parameter, rowBounds);
+        }
+        Comparator<?> comparator = checkScatterable(statement, parameter, rowBounds);
+        return scatterList(statement, parameter, rowBounds, comparator);
+    }
+
+    private <E> List<E> scatterList(final String statement, final Object parameter, final RowBounds rowBounds,
+                                    Comparator<?> comparator) {
+        List<List<E>> results = scatter(new ShardCallback<List<E>>() {
+            @Override
+            public List<E> doInShard(SqlSessionTemplate shard) {
+                return shard.<E>selectList(statement, parameter, shardRowBounds(rowBounds));
+            }
+        });
+        return merge(results, rowBounds, comparator);
+    }
+    @Override
+    public void select(String statement, ResultHandler handler) {
+        select(statement, null, RowBounds.DEFAULT, handler);
+    }
+    @Override
+    public void select(String statement, Object parameter, ResultHandler handler) {
+        select(statement, parameter, RowBounds.DEFAULT, handler);
+    }
+    @Override
+    public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
+        SqlSessionTemplate shard = getShard(statement, parameter);
+        if (shard != null) {
+            shard.select(statement, parameter, rowBounds, handler);
+            return;
+        }
+        Comparator<?> comparator = checkScatterable(statement, parameter, rowBounds);
+        if (comparator != null) {
+            // 需要先合并排序，再依次交给ResultHandler
+            DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
+            for (Object result : this.<Object>scatterList(statement, parameter, rowBounds, comparator)) {
+                resultContext.nextResultObject(result);
+                handler.handleResult(resultContext);
+                if (resultContext.isStopped()) {
+                    break;
+                }
+            }
+            return;
+        }
+        // ResultHandler不是线程安全的，依次处理各个分片；offset/limit作用于所有分片合并后的结果
+        BoundedResultHandler boundedHandler = new BoundedResultHandler(handler, rowBounds);
+        RowBounds shardRowBounds = shardRowBounds(rowBounds);
+        for (SqlSessionTemplate each : this.shards) {
+            if (boundedHandler.isFull()) {
+                break;
+            }
+            each.select(statement, parameter, shardRowBounds, boundedHandler);
+        }
+    }
+    @Override
+    public int insert(String statement) {
+        return insert(statement, null);
+    }
+    @Override
+    public int insert(String statement, Object parameter) {
+        SqlSessionTemplate shard = getShard(statement, parameter);
+        if (shard == null) {
+            if (!this.distributeKeylessInserts) {
+                throw new InvalidDataAccessApiUsageException("Statement '" + statement + "' requires a shard key");
+            }
+            int next = this.nextInsertShard.getAndIncrement() & Integer.MAX_VALUE;
+            shard = this.shards.get(next % this.shards.size());
+        }
+        return shard.insert(statement, parameter);
+    }
+    @Override
+    public int update(String statement) {
+        return update(statement, null);
+    }
+    @Override
+    public int update(final String statement, final Object parameter) {
+        SqlSessionTemplate shard = getShard(statement, parameter);
+        if (shard != null) {
+            return shard.update(statement, parameter);
+        }
+        return sum(scatter(new ShardCallback<Integer>() {
+            @Override
+            public Integer doInShard(SqlSessionTemplate shard) {
+                return shard.update(statement, parameter);
+            }
+        }));
+    }
+    @Override
+    public int delete(String statement) {
+        return delete(statement, null);
+    }
+    @Override
+    public int delete(final String statement, final Object parameter) {
+        SqlSessionTemplate shard = getShard(statement, parameter);
+        if (shard != null) {
+            return shard.delete(statement, parameter);
+        }
+        return sum(scatter(new ShardCallback<Integer>() {
+            @Override
+            public Integer doInShard(SqlSessionTemplate shard) {
+                return shard.delete(statement, parameter);
+            }
+        }));
+    }
+    @Override
+    public void clearCache() {
+        for (SqlSessionTemplate shard : this.shards) {
+            shard.clearCache();
+        }
+    }
+    @Override
+    public Connection getConnection() {
+        return this.shards.get(0).getConnection();
+    }
+    @Override
+    public List<BatchResult> flushStatements() {
+        List<BatchResult> results = new ArrayList<BatchResult>();
+        for (SqlSessionTemplate shard : this.shards) {
+            results.addAll(shard.flushStatements());
+        }
+        return results;
+    }
+
+
+
+
+
+    // getter and setter ...
+    public ShardStrategy getShardStrategy() {
+        return shardStrategy;
+    }
+    public void setShardStrategy(ShardStrategy shardStrategy) {
+        notNull(shardStrategy, "Property 'shardStrategy' is required");
+        this.shardStrategy = shardStrategy;
+    }
+    public Map<String, String> getShardKeyProperties() {
+        return shardKeyProperties;
+    }
+    public void setShardKeyProperties(Map<String, String> shardKeyProperties) {
+        this.shardKeyProperties = new HashMap<String, String>(shardKeyProperties);
+    }
+    public Map<String, Comparator<?>> getResultComparators() {
+        return resultComparators;
+    }
+    public void setResultComparators(Map<String, Comparator<?>> resultComparators) {
+        this.resultComparators = new HashMap<String, Comparator<?>>(resultComparators);
+    }
+    public boolean isDistributeKeylessInserts() {
+        return distributeKeylessInserts;
+    }
+    public void setDistributeKeylessInserts(boolean distributeKeylessInserts) {
+        this.distributeKeylessInserts = distributeKeylessInserts;
+    }
+    public Executor getExecutor() {
+        return executor;
+    }
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+    public int getPoolSize() {
+        return poolSize;
+    }
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+}
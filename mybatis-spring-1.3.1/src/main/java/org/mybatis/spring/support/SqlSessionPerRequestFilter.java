@@ -0,0 +1,127 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.support;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionUtils;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Servlet Filter that binds one MyBatis {@code SqlSession} to the thread for the entire processing
+ * of a request, so all the non transactional mapper calls of the request share the same session
+ * and JDBC connection instead of opening a new one per call. Calls made inside a Spring
+ * transaction are not affected and keep using the transactional session.
+ * <p>
+ * Every non transactional call is still committed on its own (see {@code SqlSessionTemplate}) and
+ * the session's local cache is cleared after each call, the filter only keeps the session and
+ * connection open. They are opened by the first mapper call of the request, so requests that never
+ * reach the database do not take a connection, and closed when the request completes, whether it
+ * succeeded or not.
+ * <p>
+ * Looks up the {@code SqlSessionFactory} in Spring's root web application context. Supports a
+ * "sqlSessionFactoryBeanName" filter init-param in {@code web.xml}; the default bean name is
+ * "sqlSessionFactory".
+ *
+ * <pre class="code">
+ * {@code
+ * <filter>
+ *   <filter-name>sqlSessionPerRequestFilter</filter-name>
+ *   <filter-class>org.mybatis.spring.support.SqlSessionPerRequestFilter</filter-class>
+ * </filter>
+ * <filter-mapping>
+ *   <filter-name>sqlSessionPerRequestFilter</filter-name>
+ *   <url-pattern>*.do</url-pattern>
+ * </filter-mapping>
+ * }
+ * </pre>
+ *
+ * @see SqlSessionUtils#bindRequestSqlSession
+ */
+public class SqlSessionPerRequestFilter extends OncePerRequestFilter {
+
+    public static final String DEFAULT_SQL_SESSION_FACTORY_BEAN_NAME = "sqlSessionFactory";
+
+    private String sqlSessionFactoryBeanName = DEFAULT_SQL_SESSION_FACTORY_BEAN_NAME;
+
+    /** 绑定会话时使用的执行器类型，默认使用SqlSessionFactory配置的默认执行器 */
+    private ExecutorType executorType;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        SqlSessionFactory sessionFactory = lookupSqlSessionFactory();
+
+        // 已经绑定过会话（如include/forward），直接参与到当前会话中
+        if (SqlSessionUtils.hasRequestSqlSession(sessionFactory)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        ExecutorType type = this.executorType != null ? this.executorType
+                                                      : sessionFactory.getConfiguration().getDefaultExecutorType();
+        SqlSessionUtils.bindRequestSqlSession(sessionFactory, type, null);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlSessionUtils.releaseRequestSqlSession(sessionFactory);
+        }
+    }
+
+    /**
+     * Look up the SqlSessionFactory that this filter should use.
+     * The default implementation looks for a bean with the specified name
+     * in Spring's root application context.
+     *
+     * @return the SqlSessionFactory to use
+     */
+    protected SqlSessionFactory lookupSqlSessionFactory() {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Using SqlSessionFactory '" + this.sqlSessionFactoryBeanName + "' for SqlSessionPerRequestFilter");
+        }
+        WebApplicationContext wac = WebApplicationContextUtils.getRequiredWebApplicationContext(getServletContext());
+        return wac.getBean(this.sqlSessionFactoryBeanName, SqlSessionFactory.class);
+    }
+
+
+
+
+
+    // getter and setter ...
+    public String getSqlSessionFactoryBeanName() {
+        return sqlSessionFactoryBeanName;
+    }
+    public void setSqlSessionFactoryBeanName(String sqlSessionFactoryBeanName) {
+        this.sqlSessionFactoryBeanName = sqlSessionFactoryBeanName;
+    }
+    public ExecutorType getExecutorType() {
+        return executorType;
+    }
+    public void setExecutorType(ExecutorType executorType) {
+        this.executorType = executorType;
+    }
+
+}
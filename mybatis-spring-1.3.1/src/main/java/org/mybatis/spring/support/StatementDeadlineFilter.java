@@ -0,0 +1,80 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.support;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.mybatis.spring.transaction.StatementDeadline;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Servlet Filter that gives each request a time budget for its MyBatis statements: every
+ * statement gets the time left as query timeout, and no statement is started once the budget is
+ * exhausted, so a slow database cannot hold a request thread for longer than that.
+ * <p>
+ * Supports a "timeoutMillis" filter init-param in {@code web.xml}, 5000 by default.
+ *
+ * <pre class="code">
+ * {@code
+ * <filter>
+ *   <filter-name>statementDeadlineFilter</filter-name>
+ *   <filter-class>org.mybatis.spring.support.StatementDeadlineFilter</filter-class>
+ *   <init-param>
+ *     <param-name>timeoutMillis</param-name>
+ *     <param-value>3000</param-value>
+ *   </init-param>
+ * </filter>
+ * }
+ * </pre>
+ *
+ * @see StatementDeadline
+ */
+public class StatementDeadlineFilter extends OncePerRequestFilter {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000L;
+
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        StatementDeadline deadline = StatementDeadline.start(this.timeoutMillis);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            deadline.close();
+        }
+    }
+
+
+
+
+
+    // getter and setter ...
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.transaction;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the JDBC calls elided by a {@link ConnectionStateTrackingDataSource}: reads of the
+ * auto-commit, read-only and isolation state answered from the tracked state, and setter calls
+ * skipped because the connection was already in the requested state.
+ *
+ * @see ConnectionStateTrackingDataSource#getStatistics()
+ */
+public class ConnectionStateStatistics {
+
+    private final LongAdder skippedAutoCommitChanges = new LongAdder();
+
+    private final LongAdder skippedReadOnlyChanges = new LongAdder();
+
+    private final LongAdder skippedIsolationChanges = new LongAdder();
+
+    private final LongAdder cachedReads = new LongAdder();
+
+    private final LongAdder performedCalls = new LongAdder();
+
+    void skippedAutoCommitChange() {
+        this.skippedAutoCommitChanges.increment();
+    }
+
+    void skippedReadOnlyChange() {
+        this.skippedReadOnlyChanges.increment();
+    }
+
+    void skippedIsolationChange() {
+        this.skippedIsolationChanges.increment();
+    }
+
+    void cachedRead() {
+        this.cachedReads.increment();
+    }
+
+    void performedCall() {
+        this.performedCalls.increment();
+    }
+
+    /**
+     * Returns the number of {@code setAutoCommit} calls skipped.
+     */
+    public long getSkippedAutoCommitChanges() {
+        return this.skippedAutoCommitChanges.sum();
+    }
+
+    /**
+     * Returns the number of {@code setReadOnly} calls skipped.
+     */
+    public long getSkippedReadOnlyChanges() {
+        return this.skippedReadOnlyChanges.sum();
+    }
+
+    /**
+     * Returns the number of {@code setTransactionIsolation} calls skipped.
+     */
+    public long getSkippedIsolationChanges() {
+        return this.skippedIsolationChanges.sum();
+    }
+
+    /**
+     * Returns the number of state reads answered without calling the driver.
+     */
+    public long getCachedReads() {
+        return this.cachedReads.sum();
+    }
+
+    /**
+     * Returns the number of state reads and changes that had to go to the driver.
+     */
+    public long getPerformedCalls() {
+        return this.performedCalls.sum();
+    }
+
+    /**
+     * Returns the number of driver calls, and so potential round trips, that were saved.
+     */
+    public long getSavedCalls() {
+        return getSkippedAutoCommitChanges() + getSkippedReadOnlyChanges() + getSkippedIsolationChanges()
+               + getCachedReads();
+    }
+
+    public void reset() {
+        this.skippedAutoCommitChanges.reset();
+        this.skippedReadOnlyChanges.reset();
+        this.skippedIsolationChanges.reset();
+        this.cachedReads.reset();
+        this.performedCalls.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionStateStatistics[saved=" + getSavedCalls() + ", performed=" + getPerformedCalls()
+               + ", skippedAutoCommitChanges=" + getSkippedAutoCommitChanges() + ", skippedReadOnlyChanges="
+               + getSkippedReadOnlyChanges() + ", skippedIsolationChanges=" + getSkippedIsolationChanges()
+               + ", cachedReads=" + getCachedReads() + "]";
+    }
+
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.transaction;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
+
+/**
+ * {@code DataSource} proxy whose connections remember their auto-commit, read-only and
+ * transaction isolation state, so that calls that would not change anything never reach the
+ * driver. Both {@link SpringManagedTransaction#getConnection()} and
+ * {@code DataSourceTransactionManager} read and toggle that state for every transaction, and
+ * depending on the driver settings each of those calls can be a round trip to the database.
+ * <p>
+ * The state is tracked per physical connection, so that it survives the checkouts of a pooled
+ * connection: it is read from the driver the first time it is needed and then follows the setters
+ * of the returned connections. The physical connection is found by unwrapping Spring's
+ * {@code ConnectionProxy}s and calling {@code unwrap(Connection.class)}, or with the
+ * {@link #setNativeJdbcExtractor NativeJdbcExtractor} of the pool when its connections do not
+ * unwrap to the physical one (e.g. Commons DBCP). When no physical connection can be found, the
+ * state is only tracked for one checkout.
+ * <p>
+ * The tracked state is dropped whenever it may have been changed behind the proxy's back:
+ * <ul>
+ * <li>when the target connection is handed out through {@code getTargetConnection()} or
+ * {@code unwrap};</li>
+ * <li>when a {@code SET ...} statement is prepared, or a plain {@code Statement} (whose SQL is
+ * unknown) is created;</li>
+ * <li>when the connection is closed, for the values the pool resets on return. Set
+ * {@link #setAutoCommitOnReturn autoCommitOnReturn}, {@link #setReadOnlyOnReturn readOnlyOnReturn}
+ * and {@link #setTransactionIsolationOnReturn transactionIsolationOnReturn} to the values the
+ * pool restores to keep tracking them across checkouts; each value left unset is read again at the
+ * next checkout.</li>
+ * </ul>
+ * <p>
+ * Must be the {@code DataSource} of both the {@code SqlSessionFactoryBean} and the transaction
+ * manager, so that they share the same connection.
+ *
+ * <pre class="code">
+ * {@code
+ * <bean id="dataSource" class="org.mybatis.spring.transaction.ConnectionStateTrackingDataSource">
+ *   <property name="targetDataSource" ref="pooledDataSource" />
+ *   <property name="autoCommitOnReturn" value="true" />
+ *   <property name="readOnlyOnReturn" value="false" />
+ * </bean>
+ * }
+ * </pre>
+ *
+ * @see ConnectionStateStatistics
+ */
+public class ConnectionStateTrackingDataSource extends DelegatingDataSource {
+
+    private final ConnectionStateStatistics statistics = new ConnectionStateStatistics();
+
+    /** 按物理连接记录的状态，物理连接被连接池关闭后自动回收 */
+    private final Map<Connection, ConnectionState> states = new WeakHashMap<Connection, ConnectionState>();
+
+    private NativeJdbcExtractor nativeJdbcExtractor;
+
+    /** 连接归还时连接池恢复的状态，为空表示未知 */
+    private Boolean autoCommitOnReturn;
+
+    private Boolean readOnlyOnReturn;
+
+    private Integer transactionIsolationOnReturn;
+
+    public ConnectionStateTrackingDataSource() {
+    }
+    public ConnectionStateTrackingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return trackingProxy(getTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return trackingProxy(getTargetDataSource().getConnection(username, password));
+    }
+
+    /**
+     * Returns the round trip counters of all the connections handed out by this {@code DataSource}.
+     */
+    public ConnectionStateStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    private Connection trackingProxy(Connection target) throws SQLException {
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                                                   new Class<?>[] {ConnectionProxy.class},
+                                                   new StateTrackingHandler(target, stateOf(target)));
+    }
+
+    private ConnectionState stateOf(Connection target) throws SQLException {
+        Connection physical = physicalConnection(target);
+        synchronized (this.states) {
+            ConnectionState state = this.states.get(physical);
+            if (state == null) {
+                state = new ConnectionState();
+                this.states.put(physical, state);
+            }
+            return state;
+        }
+    }
+
+    private Connection physicalConnection(Connection target) throws SQLException {
+        Connection connection = DataSourceUtils.getTargetConnection(target);
+        if (this.nativeJdbcExtractor != null) {
+            return this.nativeJdbcExtractor.getNativeConnection(connection);
+        }
+        try {
+            Connection unwrapped = connection.unwrap(Connection.class);
+            return unwrapped != null ? unwrapped : connection;
+        } catch (SQLException e) {
+            return connection;
+        } catch (AbstractMethodError e) {
+            // JDBC 4.0之前的驱动
+            return connection;
+        }
+    }
+
+    /**
+     * Returns if the SQL may change the session state, e.g. {@code SET autocommit=0} or
+     * {@code SET TRANSACTION ISOLATION LEVEL ...}.
+     */
+    static boolean isSetStatement(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        int start = 0;
+        int length = sql.length();
+        while (start < length && Character.isWhitespace(sql.charAt(start))) {
+            start++;
+        }
+        return sql.regionMatches(true, start, "SET", 0, 3)
+               && (start + 3 == length || Character.isWhitespace(sql.charAt(start + 3)));
+    }
+
+    /**
+     * State of a physical connection, {@code null} when unknown. Only used by the thread the
+     * connection is checked out to, the pool hand-off publishes it to the next one.
+     */
+    private static final class ConnectionState {
+
+        private Boolean autoCommit;
+
+        private Boolean readOnly;
+
+        private Integer transactionIsolation;
+
+        void clear() {
+            this.autoCommit = null;
+            this.readOnly = null;
+            this.transactionIsolation = null;
+        }
+    }
+
+    private final class StateTrackingHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private final ConnectionState state;
+
+        StateTrackingHandler(Connection target, ConnectionState state) {
+            this.target = target;
+            this.state = state;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            ConnectionState state = this.state;
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(name)) {
+                return "State tracking proxy for target Connection [" + this.target + "]";
+            } else if ("getTargetConnection".equals(name)) {
+                // 调用方可能直接修改目标连接的状态
+                state.clear();
+                return this.target;
+            } else if ("unwrap".equals(name)) {
+                state.clear();
+            } else if ("getAutoCommit".equals(name)) {
+                if (state.autoCommit == null) {
+                    state.autoCommit = (Boolean) perform(method, args);
+                } else {
+                    statistics.cachedRead();
+                }
+                return state.autoCommit;
+            } else if ("isReadOnly".equals(name)) {
+                if (state.readOnly == null) {
+                    state.readOnly = (Boolean) perform(method, args);
+                } else {
+                    statistics.cachedRead();
+                }
+                return state.readOnly;
+            } else if ("getTransactionIsolation".equals(name)) {
+                if (state.transactionIsolation == null) {
+                    state.transactionIsolation = (Integer) perform(method, args);
+                } else {
+                    statistics.cachedRead();
+                }
+                return state.transactionIsolation;
+            } else if ("setAutoCommit".equals(name)) {
+                if (args[0].equals(state.autoCommit)) {
+                    statistics.skippedAutoCommitChange();
+                    return null;
+                }
+                // 设置失败时状态未知，下次重新读取
+                state.autoCommit = null;
+                perform(method, args);
+                state.autoCommit = (Boolean) args[0];
+                return null;
+            } else if ("setReadOnly".equals(name)) {
+                if (args[0].equals(state.readOnly)) {
+                    statistics.skippedReadOnlyChange();
+                    return null;
+                }
+                state.readOnly = null;
+                perform(method, args);
+                state.readOnly = (Boolean) args[0];
+                return null;
+            } else if ("setTransactionIsolation".equals(name)) {
+                if (args[0].equals(state.transactionIsolation)) {
+                    statistics.skippedIsolationChange();
+                    return null;
+                }
+                state.transactionIsolation = null;
+                perform(method, args);
+                state.transactionIsolation = (Integer) args[0];
+                return null;
+            } else if ("createStatement".equals(name)) {
+                // 执行的SQL未知，可能是SET语句
+                state.clear();
+            } else if ("prepareStatement".equals(name) || "prepareCall".equals(name)) {
+                if (isSetStatement((String) args[0])) {
+                    state.clear();
+                }
+            } else if ("close".equals(name)) {
+                state.autoCommit = autoCommitOnReturn;
+                state.readOnly = readOnlyOnReturn;
+                state.transactionIsolation = transactionIsolationOnReturn;
+            }
+            return invoke(method, args);
+        }
+
+        private Object perform(Method method, Object[] args) throws Throwable {
+            statistics.performedCall();
+            return invoke(method, args);
+        }
+
+        private Object invoke(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(this.target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+
+
+
+
+    // getter and setter ...
+    public NativeJdbcExtractor getNativeJdbcExtractor() {
+        return nativeJdbcExtractor;
+    }
+    /**
+     * Sets the extractor used to find the physical connection behind the connections of the pool,
+     * when they do not unwrap to it.
+     */
+    public void setNativeJdbcExtractor(NativeJdbcExtractor nativeJdbcExtractor) {
+        this.nativeJdbcExtractor = nativeJdbcExtractor;
+    }
+    public Boolean getAutoCommitOnReturn() {
+        return autoCommitOnReturn;
+    }
+    /**
+     * Sets the auto-commit state the pool restores when a connection is returned, e.g.
+     * {@code true} for Commons DBCP with {@code enableAutoCommitOnReturn}. By default the state is
+     * read again at the next checkout.
+     */
+    public void setAutoCommitOnReturn(Boolean autoCommitOnReturn) {
+        this.autoCommitOnReturn = autoCommitOnReturn;
+    }
+    public Boolean getReadOnlyOnReturn() {
+        return readOnlyOnReturn;
+    }
+    /**
+     * Sets the read-only state the pool restores when a connection is returned. By default the
+     * state is read again at the next checkout.
+     */
+    public void setReadOnlyOnReturn(Boolean readOnlyOnReturn) {
+        this.readOnlyOnReturn = readOnlyOnReturn;
+    }
+    public Integer getTransactionIsolationOnReturn() {
+        return transactionIsolationOnReturn;
+    }
+    /**
+     * Sets the transaction isolation the pool restores when a connection is returned. By default
+     * the isolation is read again at the next checkout.
+     */
+    public void setTransactionIsolationOnReturn(Integer transactionIsolationOnReturn) {
+        this.transactionIsolationOnReturn = transactionIsolationOnReturn;
+    }
+
+}
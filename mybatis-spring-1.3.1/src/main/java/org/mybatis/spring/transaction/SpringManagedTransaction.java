@@ -19,6 +19,8 @@ import static org.springframework.util.Assert.notNull;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -38,6 +40,15 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
  * assuming that the Spring transaction manager will do the job.
  * <p>
  * If it is not it will behave like {@code JdbcTransaction}.
+ * <p>
+ * Statement timeouts are bounded by the time left before the transaction timeout and before the
+ * {@link StatementDeadline} of the current thread, if any.
+ * <p>
+ * {@code PreparedStatement}s are not cached here: a transaction only lives as long as its session,
+ * and the sessions of a Spring transaction (one per {@code ExecutorType}) share one connection. To
+ * prepare a statement once per session use {@code ExecutorType.REUSE}; to reuse statements across
+ * sessions and connection checkouts enable the statement cache of the driver or of the pool
+ * (e.g. {@code cachePrepStmts} of MySQL Connector/J, {@code poolPreparedStatements} of DBCP).
  *
  * @author Hunter Presnall
  * @author Eduardo Macarron
@@ -54,6 +65,9 @@ public class SpringManagedTransaction implements Transaction {
 
     private boolean autoCommit;
 
+    /** 是否由本事务将连接设置为只读，关闭时需要恢复 */
+    private boolean resetReadOnly;
+
     public SpringManagedTransaction(DataSource dataSource) {
         notNull(dataSource, "No DataSource specified");
         this.dataSource = dataSource;
@@ -82,6 +96,7 @@ public class SpringManagedTransaction implements Transaction {
         this.connection = DataSourceUtils.getConnection(this.dataSource);
         this.autoCommit = this.connection.getAutoCommit();
         this.isConnectionTransactional = DataSourceUtils.isConnectionTransactional(this.connection, this.dataSource);
+        prepareReadOnly();
 
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug(
@@ -90,6 +105,24 @@ public class SpringManagedTransaction implements Transaction {
         }
     }
 
+    /**
+     * In a read-only scope that is not an actual transaction (e.g. {@code SUPPORTS} with
+     * {@code read-only="true"}) the connection is set read-only here, so that the database can
+     * skip the read-write transaction setup. Actual transactions are prepared by the transaction
+     * manager.
+     */
+    private void prepareReadOnly() throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+            && !TransactionSynchronizationManager.isActualTransactionActive()
+            && !this.connection.isReadOnly()) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Setting JDBC Connection [" + this.connection + "] read-only");
+            }
+            this.connection.setReadOnly(true);
+            this.resetReadOnly = true;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -121,7 +154,14 @@ public class SpringManagedTransaction implements Transaction {
      */
     @Override
     public void close() throws SQLException {
-        DataSourceUtils.releaseConnection(this.connection, this.dataSource);
+        try {
+            if (this.resetReadOnly) {
+                this.resetReadOnly = false;
+                this.connection.setReadOnly(false);
+            }
+        } finally {
+            DataSourceUtils.releaseConnection(this.connection, this.dataSource);
+        }
     }
 
     /**
@@ -129,11 +169,25 @@ public class SpringManagedTransaction implements Transaction {
      */
     @Override
     public Integer getTimeout() throws SQLException {
+        Integer timeout = null;
         ConnectionHolder holder = (ConnectionHolder)TransactionSynchronizationManager.getResource(dataSource);
         if (holder != null && holder.hasTimeout()) {
-            return holder.getTimeToLiveInSeconds();
+            timeout = holder.getTimeToLiveInSeconds();
+        }
+
+        // 设置了截止时间时，语句的超时时间不超过剩余的时间
+        if (StatementDeadline.isSet()) {
+            long remainingMillis = StatementDeadline.remaining(TimeUnit.MILLISECONDS);
+            if (remainingMillis <= 0) {
+                throw new SQLTimeoutException("Statement deadline exceeded " + (-remainingMillis)
+                                              + " ms ago, not starting the statement");
+            }
+            int remainingSeconds = (int) Math.min((remainingMillis + 999) / 1000, Integer.MAX_VALUE);
+            if (timeout == null || remainingSeconds < timeout) {
+                timeout = remainingSeconds;
+            }
         }
-        return null;
+        return timeout;
     }
 
 }
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.transaction;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.core.NamedThreadLocal;
+
+/**
+ * Time budget of the current thread for the statements it runs, e.g. the time left to answer an
+ * HTTP request. While a deadline is set, {@link SpringManagedTransaction#getTimeout()} gives every
+ * statement the remaining budget as query timeout, and refuses to start a statement once the
+ * budget is exhausted.
+ * <p>
+ * Deadlines nest: a nested deadline can only shorten the current one. Closing it restores the
+ * previous deadline, so it is best used in a try-with-resources block:
+ *
+ * <pre class="code">
+ * try (StatementDeadline deadline = StatementDeadline.start(2000)) {
+ *     userDao.getAllUser(condition);
+ * }
+ * </pre>
+ *
+ * @see org.mybatis.spring.support.StatementDeadlineFilter
+ */
+public final class StatementDeadline implements AutoCloseable {
+
+    /** 当前线程的截止时间（System.nanoTime），没有设置时为空 */
+    private static final ThreadLocal<Long> deadlines = new NamedThreadLocal<Long>("MyBatis statement deadline");
+
+    private final Long previous;
+
+    private boolean closed;
+
+    private StatementDeadline(Long previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Sets a deadline {@code timeoutMillis} from now, unless the current deadline is earlier.
+     *
+     * @param timeoutMillis the budget in milliseconds
+     * @return the handle that restores the previous deadline when closed
+     */
+    public static StatementDeadline start(long timeoutMillis) {
+        Long previous = deadlines.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        if (previous == null || deadline - previous < 0) {
+            deadlines.set(deadline);
+        }
+        return new StatementDeadline(previous);
+    }
+
+    /**
+     * Returns if a deadline is set for the current thread.
+     */
+    public static boolean isSet() {
+        return deadlines.get() != null;
+    }
+
+    /**
+     * Returns the time left before the deadline of the current thread.
+     *
+     * @param unit the unit of the returned value
+     * @return the time left, negative or 0 if the deadline has passed, {@code Long.MAX_VALUE} if
+     *         no deadline is set
+     */
+    public static long remaining(TimeUnit unit) {
+        Long deadline = deadlines.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Restores the deadline that was set before this one.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.previous != null) {
+            deadlines.set(this.previous);
+        } else {
+            deadlines.remove();
+        }
+    }
+
+}
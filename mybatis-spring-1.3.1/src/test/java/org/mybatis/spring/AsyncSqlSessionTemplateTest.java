@@ -0,0 +1,78 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncSqlSessionTemplateTest {
+
+    private AsyncSqlSessionTemplate asyncSqlSessionTemplate;
+
+    @Before
+    public void setUp() {
+        this.asyncSqlSessionTemplate = new AsyncSqlSessionTemplate(TestDatabase.newSqlSessionFactory(TestDatabase.newDataSource()));
+        this.asyncSqlSessionTemplate.setPoolSize(2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.asyncSqlSessionTemplate.destroy();
+    }
+
+    @Test
+    public void shouldRunCallsOnTheExecutor() throws Exception {
+        assertEquals("Pocoyo", this.asyncSqlSessionTemplate.<String>selectOne(TestMapper.SELECT_NAME, 1L).get());
+        assertEquals(2, this.asyncSqlSessionTemplate.selectList(TestMapper.SELECT_NAMES).get().size());
+    }
+
+    @Test
+    public void shouldCompleteWithTranslatedException() throws Exception {
+        Map<String, Object> parameter = new HashMap<String, Object>();
+        parameter.put("uid", 1L);
+        parameter.put("name", "Pocoyo");
+        try {
+            this.asyncSqlSessionTemplate.insert(TestMapper.INSERT, parameter).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DuplicateKeyException);
+        }
+    }
+
+    @Test
+    public void shouldRejectCallsAfterDestroy() throws Exception {
+        this.asyncSqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L).get();
+        this.asyncSqlSessionTemplate.destroy();
+        try {
+            this.asyncSqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurationWarmUpTest {
+
+    @Test
+    public void shouldOpenConnectionsOfPoolingDataSource() {
+        SingleConnectionDataSource target = TestDatabase.newSingleConnectionDataSource();
+        CountingDataSource dataSource = new CountingDataSource(target);
+        Configuration configuration = TestDatabase.newConfiguration(dataSource);
+
+        new ConfigurationWarmUp(configuration, dataSource).run(2, true);
+        assertEquals(2, dataSource.connections.get());
+        target.destroy();
+    }
+
+    @Test
+    public void shouldSkipConnectionsOfDriverManagerDataSource() {
+        CountingDataSource dataSource = new CountingDataSource(TestDatabase.newDataSource());
+        Configuration configuration = TestDatabase.newConfiguration(dataSource);
+
+        new ConfigurationWarmUp(configuration, dataSource).run(2, true);
+        assertEquals(0, dataSource.connections.get());
+    }
+
+    @Test
+    public void shouldRecognizeDataSourcesKeepingConnections() {
+        DriverManagerDataSource driverManagerDataSource = new DriverManagerDataSource();
+        assertFalse(ConfigurationWarmUp.keepsConnections(driverManagerDataSource));
+        assertFalse(ConfigurationWarmUp.keepsConnections(new DelegatingDataSource(driverManagerDataSource)));
+        assertTrue(ConfigurationWarmUp.keepsConnections(new SingleConnectionDataSource()));
+    }
+
+    private static final class CountingDataSource extends DelegatingDataSource {
+
+        private final AtomicInteger connections = new AtomicInteger();
+
+        CountingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            this.connections.incrementAndGet();
+            return super.getConnection();
+        }
+    }
+
+}
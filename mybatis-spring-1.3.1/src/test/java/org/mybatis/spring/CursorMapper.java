@@ -0,0 +1,36 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.util.stream.Stream;
+
+/**
+ * Mapper over the {@code users} table of {@link TestDatabase} returning cursors and streams. The
+ * statements without annotation are declared in {@code CursorMapper.xml}.
+ */
+public interface CursorMapper {
+
+    String SELECT_NAMES_AS_NUMBERS = CursorMapper.class.getName() + ".selectNamesAsNumbers";
+
+    @Select("select name from users order by uid")
+    Cursor<String> cursorNames();
+
+    Stream<String> streamNames();
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ManagedCursorTest {
+
+    private static final String MAPPER_XML = "org/mybatis/spring/CursorMapper.xml";
+
+    private CountingDataSource dataSource;
+
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    @Before
+    public void setUp() throws Exception {
+        this.dataSource = new CountingDataSource();
+        Configuration configuration = TestDatabase.newConfiguration(this.dataSource);
+        InputStream inputStream = Resources.getResourceAsStream(MAPPER_XML);
+        try {
+            new XMLMapperBuilder(inputStream, configuration, MAPPER_XML, configuration.getSqlFragments()).parse();
+        } finally {
+            inputStream.close();
+        }
+        this.sqlSessionTemplate = new SqlSessionTemplate(new SqlSessionFactoryBuilder().build(configuration));
+    }
+
+    @Test
+    public void shouldIterateOutsideTransactionAndReleaseWhenExhausted() {
+        Cursor<String> cursor = this.sqlSessionTemplate.selectCursor(TestMapper.SELECT_NAMES);
+        // 调用返回后会话仍然打开，连接由游标持有
+        assertEquals(1, this.dataSource.openConnections.get());
+
+        List<String> names = new ArrayList<String>();
+        for (String name : cursor) {
+            names.add(name);
+        }
+        assertEquals(Arrays.asList("Pocoyo", "Pato"), names);
+        assertEquals(0, this.dataSource.openConnections.get());
+        assertFalse(cursor.isOpen());
+    }
+
+    @Test
+    public void shouldReleaseOnClose() throws Exception {
+        Cursor<String> cursor = this.sqlSessionTemplate.selectCursor(TestMapper.SELECT_NAMES);
+        assertEquals("Pocoyo", cursor.iterator().next());
+        assertEquals(1, this.dataSource.openConnections.get());
+
+        cursor.close();
+        assertEquals(0, this.dataSource.openConnections.get());
+        assertFalse(cursor.isOpen());
+        cursor.close();
+    }
+
+    @Test
+    public void shouldReturnCursorsAndStreamsFromMappers() throws Exception {
+        CursorMapper mapper = this.sqlSessionTemplate.getMapper(CursorMapper.class);
+        assertTrue(Proxy.getInvocationHandler(mapper) instanceof StreamingMapperProxy);
+
+        Cursor<String> cursor = mapper.cursorNames();
+        assertTrue(cursor instanceof ManagedCursor);
+        cursor.close();
+        assertEquals(0, this.dataSource.openConnections.get());
+
+        Stream<String> stream = mapper.streamNames();
+        try {
+            assertEquals(Arrays.asList("Pocoyo", "Pato"), stream.collect(Collectors.toList()));
+        } finally {
+            stream.close();
+        }
+        assertEquals(0, this.dataSource.openConnections.get());
+    }
+
+    @Test
+    public void shouldTranslateIterationErrors() {
+        Cursor<Integer> cursor = this.sqlSessionTemplate.selectCursor(CursorMapper.SELECT_NAMES_AS_NUMBERS);
+        Iterator<Integer> iterator = cursor.iterator();
+        try {
+            iterator.next();
+            fail();
+        } catch (DataAccessException e) {
+            // 读取失败后立即释放会话
+            assertEquals(0, this.dataSource.openConnections.get());
+        }
+    }
+
+    /**
+     * Counts the connections that are open.
+     */
+    private static final class CountingDataSource extends DelegatingDataSource {
+
+        private final AtomicInteger openConnections = new AtomicInteger();
+
+        CountingDataSource() {
+            super(TestDatabase.newDataSource());
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection connection = super.getConnection();
+            this.openConnections.incrementAndGet();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class},
+                                                       new InvocationHandler() {
+                private boolean closed;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("close".equals(method.getName()) && !this.closed) {
+                        this.closed = true;
+                        CountingDataSource.this.openConnections.decrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                }
+            });
+        }
+    }
+
+}
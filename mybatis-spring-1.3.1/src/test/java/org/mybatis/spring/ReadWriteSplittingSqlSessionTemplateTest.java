@@ -0,0 +1,150 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ReadWriteSplittingSqlSessionTemplateTest {
+
+    private DriverManagerDataSource primaryDataSource;
+
+    private DriverManagerDataSource replicaDataSource;
+
+    private ReadWriteSplittingSqlSessionTemplate sqlSessionTemplate;
+
+    @Before
+    public void setUp() {
+        this.primaryDataSource = TestDatabase.newDataSource();
+        this.replicaDataSource = TestDatabase.newDataSource();
+        new JdbcTemplate(this.replicaDataSource).update("update users set name = 'Replica' where uid = 1");
+        this.sqlSessionTemplate = new ReadWriteSplittingSqlSessionTemplate(
+                TestDatabase.newSqlSessionFactory(this.primaryDataSource),
+                TestDatabase.newSqlSessionFactory(this.replicaDataSource));
+    }
+
+    @Test
+    public void shouldReadFromReplicaOutsideTransaction() {
+        assertEquals("Replica", selectName());
+    }
+
+    @Test
+    public void shouldReadYourWrites() {
+        this.sqlSessionTemplate.update(TestMapper.UPDATE_NAME, parameter(2L, "Elly"));
+        assertEquals("Pocoyo", selectName());
+
+        this.sqlSessionTemplate.setReadYourWritesWindowMillis(0);
+        assertEquals("Replica", selectName());
+    }
+
+    @Test
+    public void shouldNotReadFromPrimaryAfterFailedWrite() {
+        try {
+            this.sqlSessionTemplate.insert(TestMapper.INSERT, parameter(1L, "Elly"));
+            fail();
+        } catch (DataIntegrityViolationException e) {
+            // expected
+        }
+        assertEquals("Replica", selectName());
+    }
+
+    @Test
+    public void shouldUsePrimaryInPrimaryTransaction() {
+        String name = inTransaction(this.primaryDataSource, true, new TransactionCallback<String>() {
+            @Override
+            public String doInTransaction(TransactionStatus status) {
+                return selectName();
+            }
+        });
+        assertEquals("Pocoyo", name);
+    }
+
+    @Test
+    public void shouldUseReplicaInReplicaTransaction() {
+        String name = inTransaction(this.replicaDataSource, true, new TransactionCallback<String>() {
+            @Override
+            public String doInTransaction(TransactionStatus status) {
+                return selectName();
+            }
+        });
+        assertEquals("Replica", name);
+    }
+
+    @Test
+    public void shouldRejectWritesInReplicaTransaction() {
+        try {
+            inTransaction(this.replicaDataSource, false, new TransactionCallback<Object>() {
+                @Override
+                public Object doInTransaction(TransactionStatus status) {
+                    assertEquals("Replica", selectName());
+                    return ReadWriteSplittingSqlSessionTemplateTest.this.sqlSessionTemplate
+                            .update(TestMapper.UPDATE_NAME, parameter(2L, "Elly"));
+                }
+            });
+            fail();
+        } catch (TransientDataAccessResourceException e) {
+            // expected
+        }
+        assertEquals("Pato", new JdbcTemplate(this.primaryDataSource)
+                .queryForObject("select name from users where uid = 2", String.class));
+    }
+
+    @Test
+    public void shouldWriteToPrimaryInPrimaryTransaction() {
+        inTransaction(this.primaryDataSource, false, new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                ReadWriteSplittingSqlSessionTemplateTest.this.sqlSessionTemplate
+                        .update(TestMapper.UPDATE_NAME, parameter(1L, "Elly"));
+                return selectName();
+            }
+        });
+        assertEquals("Elly", new JdbcTemplate(this.primaryDataSource)
+                .queryForObject("select name from users where uid = 1", String.class));
+    }
+
+    private String selectName() {
+        return this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L);
+    }
+
+    private static Map<String, Object> parameter(long uid, String name) {
+        Map<String, Object> parameter = new HashMap<String, Object>();
+        parameter.put("uid", uid);
+        parameter.put("name", name);
+        return parameter;
+    }
+
+    private static <T> T inTransaction(DriverManagerDataSource dataSource, boolean readOnly, TransactionCallback<T> callback) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(callback);
+    }
+
+}
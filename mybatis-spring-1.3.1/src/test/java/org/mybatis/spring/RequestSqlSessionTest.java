@@ -0,0 +1,107 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestSqlSessionTest {
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private DriverManagerDataSource dataSource;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    @Before
+    public void setUp() {
+        this.dataSource = TestDatabase.newDataSource();
+        DelegatingDataSource countingDataSource = new DelegatingDataSource(this.dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                RequestSqlSessionTest.this.connections.incrementAndGet();
+                return super.getConnection();
+            }
+        };
+        this.sqlSessionFactory = TestDatabase.newSqlSessionFactory(countingDataSource);
+        this.sqlSessionTemplate = new SqlSessionTemplate(this.sqlSessionFactory);
+    }
+
+    @After
+    public void tearDown() {
+        SqlSessionUtils.releaseRequestSqlSession(this.sqlSessionFactory);
+    }
+
+    @Test
+    public void shouldOpenSessionOnFirstUse() {
+        assertTrue(SqlSessionUtils.bindRequestSqlSession(this.sqlSessionFactory, ExecutorType.SIMPLE, null));
+        assertFalse(SqlSessionUtils.bindRequestSqlSession(this.sqlSessionFactory, ExecutorType.SIMPLE, null));
+        assertTrue(SqlSessionUtils.hasRequestSqlSession(this.sqlSessionFactory));
+        assertEquals(0, this.connections.get());
+
+        this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L);
+        this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 2L);
+        assertEquals(1, this.connections.get());
+
+        SqlSessionUtils.releaseRequestSqlSession(this.sqlSessionFactory);
+        assertFalse(SqlSessionUtils.hasRequestSqlSession(this.sqlSessionFactory));
+        this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L);
+        assertEquals(2, this.connections.get());
+    }
+
+    @Test
+    public void shouldNotOpenSessionWhenUnused() {
+        SqlSessionUtils.bindRequestSqlSession(this.sqlSessionFactory, ExecutorType.SIMPLE, null);
+        SqlSessionUtils.releaseRequestSqlSession(this.sqlSessionFactory);
+        assertEquals(0, this.connections.get());
+    }
+
+    @Test
+    public void shouldSeeChangesCommittedByOthers() {
+        SqlSessionUtils.bindRequestSqlSession(this.sqlSessionFactory, ExecutorType.SIMPLE, null);
+        assertEquals("Pocoyo", this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L));
+
+        new JdbcTemplate(this.dataSource).update("update users set name = 'Elly' where uid = 1");
+
+        assertEquals("Elly", this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L));
+        assertEquals(1, this.connections.get());
+    }
+
+    @Test
+    public void shouldIgnoreOtherExecutorTypes() {
+        SqlSessionUtils.bindRequestSqlSession(this.sqlSessionFactory, ExecutorType.REUSE, null);
+        this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L);
+        this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 2L);
+        assertEquals(2, this.connections.get());
+    }
+
+}
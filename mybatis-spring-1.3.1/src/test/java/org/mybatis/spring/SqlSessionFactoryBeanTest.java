@@ -0,0 +1,98 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SqlSessionFactoryBeanTest {
+
+    private static final String USERS = "org.mybatis.spring.parsing.users";
+
+    private static final String COMMON = "org.mybatis.spring.parsing.common";
+
+    @Test
+    public void shouldResolveReferencesAcrossFilesAsSequentialParsing() throws Exception {
+        // UserMapper.xml在前，引用的sql片段、resultMap和cache都在之后解析的CommonMapper.xml中
+        Configuration sequential = newSqlSessionFactory(false, "UserMapper.xml", "CommonMapper.xml").getConfiguration();
+        Configuration parallel = newSqlSessionFactory(true, "UserMapper.xml", "CommonMapper.xml").getConfiguration();
+
+        assertEquals(new TreeSet<String>(sequential.getMappedStatementNames()),
+                     new TreeSet<String>(parallel.getMappedStatementNames()));
+        for (Configuration configuration : new Configuration[] {sequential, parallel}) {
+            MappedStatement selectUsers = configuration.getMappedStatement(USERS + ".selectUsers");
+            assertEquals("select uid, name from users order by uid",
+                         selectUsers.getBoundSql(null).getSql().replaceAll("\\s+", " ").trim());
+            assertEquals(COMMON + ".user", selectUsers.getResultMaps().get(0).getId());
+            assertEquals(COMMON, selectUsers.getCache().getId());
+
+            ResultMap userWithNumber = configuration.getMappedStatement(USERS + ".selectUser").getResultMaps().get(0);
+            assertEquals(USERS + ".userWithNumber", userWithNumber.getId());
+            assertEquals(3, userWithNumber.getResultMappings().size());
+        }
+
+        List<Map<String, Object>> users = new SqlSessionTemplate(newSqlSessionFactory(true, "UserMapper.xml", "CommonMapper.xml"))
+                .selectList(USERS + ".selectUsers");
+        assertEquals(2, users.size());
+        assertEquals("Pocoyo", users.get(0).get("name"));
+    }
+
+    @Test
+    public void shouldReportResourceOfFailedMapper() {
+        for (boolean parallel : new boolean[] {false, true}) {
+            // BrokenMapper.xml在注册时失败，MalformedMapper.xml在读取XML文档时（并行时在解析线程中）失败
+            assertFailure(parallel, "BrokenMapper.xml");
+            assertFailure(parallel, "MalformedMapper.xml");
+        }
+    }
+
+    private static void assertFailure(boolean parallel, String failing) {
+        try {
+            newSqlSessionFactory(parallel, "CommonMapper.xml", failing, "UserMapper.xml");
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Failed to parse mapping resource")
+                                       && e.getMessage().contains("parsing/" + failing));
+        }
+    }
+
+    private static SqlSessionFactory newSqlSessionFactory(boolean parallel, String... mappers) throws Exception {
+        Resource[] mapperLocations = new Resource[mappers.length];
+        for (int i = 0; i < mappers.length; i++) {
+            mapperLocations[i] = new ClassPathResource("org/mybatis/spring/parsing/" + mappers[i]);
+        }
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(TestDatabase.newDataSource());
+        factoryBean.setMapperLocations(mapperLocations);
+        factoryBean.setParallelMapperParsing(parallel);
+        factoryBean.setMapperParsingThreads(mappers.length);
+        return factoryBean.getObject();
+    }
+
+}
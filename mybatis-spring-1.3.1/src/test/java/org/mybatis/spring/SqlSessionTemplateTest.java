@@ -0,0 +1,112 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SqlSessionTemplateTest {
+
+    private DriverManagerDataSource dataSource;
+
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() {
+        this.dataSource = TestDatabase.newDataSource();
+        this.sqlSessionTemplate = new SqlSessionTemplate(TestDatabase.newSqlSessionFactory(this.dataSource));
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+    }
+
+    @Test
+    public void shouldSelectOutsideTransaction() {
+        assertEquals("Pocoyo", this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L));
+        assertEquals(2, this.sqlSessionTemplate.selectList(TestMapper.SELECT_NAMES).size());
+        assertEquals("Pato", this.sqlSessionTemplate.getMapper(TestMapper.class).selectName(2L));
+    }
+
+    @Test
+    public void shouldCommitWritesOutsideTransaction() {
+        this.sqlSessionTemplate.getMapper(TestMapper.class).insert(3L, "Elly");
+        assertEquals(3, countUsers());
+    }
+
+    @Test
+    public void shouldRollbackWritesWithTransaction() {
+        try {
+            this.transactionTemplate.execute(new TransactionCallback<Object>() {
+                @Override
+                public Object doInTransaction(TransactionStatus status) {
+                    TestMapper mapper = SqlSessionTemplateTest.this.sqlSessionTemplate.getMapper(TestMapper.class);
+                    mapper.insert(3L, "Elly");
+                    assertEquals(3, mapper.count());
+                    throw new IllegalStateException("rollback");
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("rollback", e.getMessage());
+        }
+        assertEquals(2, countUsers());
+    }
+
+    @Test
+    public void shouldTranslateExceptions() {
+        try {
+            this.sqlSessionTemplate.insert(TestMapper.INSERT, new java.util.HashMap<String, Object>() {{
+                put("uid", 1L);
+                put("name", "Pocoyo");
+            }});
+            fail();
+        } catch (DuplicateKeyException e) {
+            // expected
+        }
+        try {
+            this.sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.unknown");
+            fail();
+        } catch (DataAccessException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRejectManualCommit() {
+        this.sqlSessionTemplate.commit();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRejectManualClose() {
+        this.sqlSessionTemplate.close();
+    }
+
+    private int countUsers() {
+        return new JdbcTemplate(this.dataSource).queryForObject("select count(*) from users", Integer.class);
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SqlSessionUtilsTest {
+
+    private DriverManagerDataSource dataSource;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private DataSourceTransactionManager transactionManager;
+
+    private TransactionStatus transaction;
+
+    @Before
+    public void setUp() {
+        this.dataSource = TestDatabase.newDataSource();
+        this.sqlSessionFactory = TestDatabase.newSqlSessionFactory(this.dataSource);
+        this.transactionManager = new DataSourceTransactionManager(this.dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        if (this.transaction != null && !this.transaction.isCompleted()) {
+            this.transactionManager.rollback(this.transaction);
+        }
+    }
+
+    @Test
+    public void shouldCloseSessionOutsideTransaction() {
+        SqlSession session = SqlSessionUtils.getSqlSession(this.sqlSessionFactory);
+        assertFalse(SqlSessionUtils.isSqlSessionTransactional(session, this.sqlSessionFactory));
+        SqlSessionUtils.closeSqlSession(session, this.sqlSessionFactory);
+        assertNotSame(session, SqlSessionUtils.getSqlSession(this.sqlSessionFactory));
+    }
+
+    @Test
+    public void shouldReuseSessionWithinTransaction() {
+        begin();
+        SqlSession session = SqlSessionUtils.getSqlSession(this.sqlSessionFactory);
+        assertTrue(SqlSessionUtils.isSqlSessionTransactional(session, this.sqlSessionFactory));
+        SqlSessionUtils.closeSqlSession(session, this.sqlSessionFactory);
+        assertSame(session, SqlSessionUtils.getSqlSession(this.sqlSessionFactory));
+
+        this.transactionManager.commit(this.transaction);
+        assertNull(SqlSessionUtils.getSqlSessionHolder(this.sqlSessionFactory));
+    }
+
+    @Test
+    public void shouldOpenOneSessionPerExecutorTypeOnTheTransactionConnection() {
+        begin();
+        SqlSession simple = SqlSessionUtils.getSqlSession(this.sqlSessionFactory, ExecutorType.SIMPLE, null);
+        SqlSession batch = SqlSessionUtils.getSqlSession(this.sqlSessionFactory, ExecutorType.BATCH, null);
+        assertNotSame(simple, batch);
+        assertSame(simple.getConnection(), batch.getConnection());
+        assertSame(batch, SqlSessionUtils.getSqlSession(this.sqlSessionFactory, ExecutorType.BATCH, null));
+
+        SqlSessionHolder holder = SqlSessionUtils.getSqlSessionHolder(this.sqlSessionFactory);
+        assertSame(simple, holder.getSqlSession());
+        assertEquals(2, holder.getSqlSessions().size());
+        assertTrue(SqlSessionUtils.isSqlSessionTransactional(batch, holder));
+    }
+
+    @Test
+    public void shouldFlushBatchWhenSwitchingExecutorType() {
+        begin();
+        SqlSession batch = SqlSessionUtils.getSqlSession(this.sqlSessionFactory, ExecutorType.BATCH, null);
+        batch.getMapper(TestMapper.class).insert(3L, "Elly");
+
+        SqlSession simple = SqlSessionUtils.getSqlSession(this.sqlSessionFactory, ExecutorType.SIMPLE, null);
+        assertEquals(3, simple.getMapper(TestMapper.class).count());
+    }
+
+    @Test
+    public void shouldFlushBatchAndCommitWithTransaction() {
+        begin();
+        SqlSession simple = SqlSessionUtils.getSqlSession(this.sqlSessionFactory, ExecutorType.SIMPLE, null);
+        simple.getMapper(TestMapper.class).updateName(1L, "Elly");
+        SqlSession batch = SqlSessionUtils.getSqlSession(this.sqlSessionFactory, ExecutorType.BATCH, null);
+        batch.getMapper(TestMapper.class).insert(3L, "Pato");
+
+        this.transactionManager.commit(this.transaction);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+        assertEquals(3, jdbcTemplate.queryForObject("select count(*) from users", Integer.class).intValue());
+        assertEquals("Elly", jdbcTemplate.queryForObject("select name from users where uid = 1", String.class));
+        assertFalse(TransactionSynchronizationManager.hasResource(this.sqlSessionFactory));
+    }
+
+    @Test
+    public void shouldDiscardBothSessionsOnRollback() {
+        begin();
+        SqlSessionUtils.getSqlSession(this.sqlSessionFactory, ExecutorType.SIMPLE, null)
+                       .getMapper(TestMapper.class).updateName(1L, "Elly");
+        SqlSessionUtils.getSqlSession(this.sqlSessionFactory, ExecutorType.BATCH, null)
+                       .getMapper(TestMapper.class).insert(3L, "Pato");
+
+        this.transactionManager.rollback(this.transaction);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from users", Integer.class).intValue());
+        assertEquals("Pocoyo", jdbcTemplate.queryForObject("select name from users where uid = 1", String.class));
+    }
+
+    private void begin() {
+        this.transaction = this.transactionManager.getTransaction(new DefaultTransactionDefinition());
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * H2 in-memory databases and session factories shared by the tests and benchmarks. Every call to
+ * {@link #newDataSource()} creates a new database holding a {@code users} table with two rows.
+ */
+public final class TestDatabase {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private TestDatabase() {
+    }
+
+    public static DriverManagerDataSource newDataSource() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:test" + COUNTER.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setDriverClassName("org.h2.Driver");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table users (uid bigint primary key, name varchar(50))");
+        jdbcTemplate.execute("insert into users (uid, name) values (1, 'Pocoyo')");
+        jdbcTemplate.execute("insert into users (uid, name) values (2, 'Pato')");
+        return dataSource;
+    }
+
+    /**
+     * Returns a data source handing out the same connection over and over, so that benchmarks do
+     * not measure the cost of opening H2 connections. Not thread safe.
+     */
+    public static SingleConnectionDataSource newSingleConnectionDataSource() {
+        DriverManagerDataSource dataSource = newDataSource();
+        SingleConnectionDataSource singleConnectionDataSource = new SingleConnectionDataSource(
+                dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword(), true);
+        singleConnectionDataSource.setDriverClassName("org.h2.Driver");
+        return singleConnectionDataSource;
+    }
+
+    public static Configuration newConfiguration(DataSource dataSource) {
+        return newConfiguration(dataSource, new SpringManagedTransactionFactory());
+    }
+
+    public static Configuration newConfiguration(DataSource dataSource, SpringManagedTransactionFactory transactionFactory) {
+        Configuration configuration = new Configuration(new Environment("test", transactionFactory, dataSource));
+        configuration.addMapper(TestMapper.class);
+        return configuration;
+    }
+
+    public static SqlSessionFactory newSqlSessionFactory(DataSource dataSource) {
+        return new SqlSessionFactoryBuilder().build(newConfiguration(dataSource));
+    }
+
+}
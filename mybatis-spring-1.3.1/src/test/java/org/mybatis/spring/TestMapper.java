@@ -0,0 +1,64 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Annotated mapper over the {@code users} table of {@link TestDatabase}.
+ */
+public interface TestMapper {
+
+    String SELECT_NAME = TestMapper.class.getName() + ".selectName";
+    String SELECT_NAMES = TestMapper.class.getName() + ".selectNames";
+    String SELECT_NAMES_LIKE = TestMapper.class.getName() + ".selectNamesLike";
+    String SELECT_FIRST_NAMES = TestMapper.class.getName() + ".selectFirstNames";
+    String SELECT_USERS = TestMapper.class.getName() + ".selectUsers";
+    String COUNT = TestMapper.class.getName() + ".count";
+    String INSERT = TestMapper.class.getName() + ".insert";
+    String UPDATE_NAME = TestMapper.class.getName() + ".updateName";
+
+    @Select("select name from users where uid = #{uid}")
+    String selectName(long uid);
+
+    @Select("select name from users order by uid")
+    List<String> selectNames();
+
+    @Select("select name from users where cast(uid as varchar) like #{pattern} order by uid")
+    List<String> selectNamesLike(String pattern);
+
+    @Select("select name from users order by uid limit #{limit}")
+    List<String> selectFirstNames(int limit);
+
+    @Select("select uid, name from users order by uid")
+    List<Map<String, Object>> selectUsers();
+
+    @Select("select count(*) from users")
+    int count();
+
+    @Insert("insert into users (uid, name) values (#{uid}, #{name})")
+    int insert(@Param("uid") long uid, @Param("name") String name);
+
+    @Update("update users set name = #{name} where uid = #{uid}")
+    int updateName(@Param("uid") long uid, @Param("name") String name);
+
+}
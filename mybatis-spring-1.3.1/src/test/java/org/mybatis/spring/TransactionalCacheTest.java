@@ -0,0 +1,85 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Second level cache entries are published when the Spring transaction commits, and discarded
+ * when it rolls back.
+ */
+public class TransactionalCacheTest {
+
+    @CacheNamespace
+    public interface CachedMapper {
+
+        @Select("select name from users where uid = #{uid}")
+        String selectName(long uid);
+    }
+
+    private DriverManagerDataSource dataSource;
+
+    private DataSourceTransactionManager transactionManager;
+
+    private CachedMapper mapper;
+
+    @Before
+    public void setUp() {
+        this.dataSource = TestDatabase.newDataSource();
+        this.transactionManager = new DataSourceTransactionManager(this.dataSource);
+        Configuration configuration = TestDatabase.newConfiguration(this.dataSource);
+        configuration.addMapper(CachedMapper.class);
+        SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(new SqlSessionFactoryBuilder().build(configuration));
+        this.mapper = sqlSessionTemplate.getMapper(CachedMapper.class);
+    }
+
+    @Test
+    public void shouldPublishCacheEntriesOnCommit() {
+        TransactionStatus transaction = this.transactionManager.getTransaction(new DefaultTransactionDefinition());
+        assertEquals("Pocoyo", this.mapper.selectName(1L));
+        this.transactionManager.commit(transaction);
+
+        renameOutsideMyBatis();
+        assertEquals("Pocoyo", this.mapper.selectName(1L));
+    }
+
+    @Test
+    public void shouldDiscardCacheEntriesOnRollback() {
+        TransactionStatus transaction = this.transactionManager.getTransaction(new DefaultTransactionDefinition());
+        assertEquals("Pocoyo", this.mapper.selectName(1L));
+        this.transactionManager.rollback(transaction);
+
+        renameOutsideMyBatis();
+        assertEquals("Elly", this.mapper.selectName(1L));
+    }
+
+    private void renameOutsideMyBatis() {
+        new JdbcTemplate(this.dataSource).update("update users set name = 'Elly' where uid = 1");
+    }
+
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class WriteBehindTest {
+
+    private DriverManagerDataSource dataSource;
+
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() {
+        this.dataSource = TestDatabase.newDataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+        jdbcTemplate.execute("create table members (uid bigint auto_increment primary key, name varchar(50))");
+        jdbcTemplate.execute("create table addresses (aid bigint auto_increment primary key, address varchar(50), "
+                             + "ownerid bigint not null)");
+        this.sqlSessionTemplate = new SqlSessionTemplate(newSqlSessionFactory());
+        this.sqlSessionTemplate.setWriteBehind(true);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+    }
+
+    @Test
+    public void shouldFlushBeforeWriteUsingGeneratedKey() {
+        final Member member = new Member("Pocoyo");
+        final Address address = new Address("Valley", member);
+        this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                MemberMapper mapper = WriteBehindTest.this.sqlSessionTemplate.getMapper(MemberMapper.class);
+                mapper.insertMember(member);
+                assertNull(member.uid);
+
+                // 参数引用了等待主键的对象，先执行缓存的插入
+                mapper.insertAddress(address);
+                assertNotNull(member.uid);
+                assertNull(address.aid);
+            }
+        });
+
+        assertNotNull(address.aid);
+        assertEquals(member.uid, new JdbcTemplate(this.dataSource).queryForObject(
+                "select ownerid from addresses where aid = ?", Long.class, address.aid));
+    }
+
+    @Test
+    public void shouldFlushBeforeRead() {
+        final Member member = new Member("Pato");
+        this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                MemberMapper mapper = WriteBehindTest.this.sqlSessionTemplate.getMapper(MemberMapper.class);
+                mapper.insertMember(member);
+                assertNull(member.uid);
+
+                assertEquals(1, mapper.countMembers());
+                assertNotNull(member.uid);
+            }
+        });
+    }
+
+    @Test
+    public void shouldNotFlushBeforeIndependentWrites() {
+        final Member member = new Member("Elly");
+        this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                MemberMapper mapper = WriteBehindTest.this.sqlSessionTemplate.getMapper(MemberMapper.class);
+                mapper.insertTaggedMember(member, 1L);
+                assertNull(member.uid);
+
+                // 参数值与上一条语句的参数值是同一个缓存的Long对象，但不接收主键，不需要执行缓存的语句
+                mapper.deleteAddress(1L);
+                WriteBehindTest.this.sqlSessionTemplate.getMapper(TestMapper.class).updateName(1L, "Elly");
+                assertNull(member.uid);
+            }
+        });
+
+        assertNotNull(member.uid);
+        assertEquals("Elly", new JdbcTemplate(this.dataSource).queryForObject(
+                "select name from members where uid = ?", String.class, member.uid));
+    }
+
+    @Test
+    public void shouldUseHolderOfRoutedFactory() {
+        final SqlSessionFactory routed = newSqlSessionFactory();
+        this.sqlSessionTemplate = new SqlSessionTemplate(newSqlSessionFactory()) {
+            @Override
+            protected SqlSessionFactory determineSqlSessionFactory(String statement) {
+                return routed;
+            }
+        };
+        this.sqlSessionTemplate.setWriteBehind(true);
+
+        shouldFlushBeforeWriteUsingGeneratedKey();
+    }
+
+    private SqlSessionFactory newSqlSessionFactory() {
+        Configuration configuration = TestDatabase.newConfiguration(this.dataSource);
+        configuration.addMapper(MemberMapper.class);
+        return new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    public interface MemberMapper {
+
+        @Insert("insert into members (name) values (#{name})")
+        @Options(useGeneratedKeys = true, keyProperty = "uid")
+        int insertMember(Member member);
+
+        @Insert("insert into members (name) values (#{member.name})")
+        @Options(useGeneratedKeys = true, keyProperty = "member.uid")
+        int insertTaggedMember(@Param("member") Member member, @Param("version") long version);
+
+        @Insert("insert into addresses (address, ownerid) values (#{address}, #{owner.uid})")
+        @Options(useGeneratedKeys = true, keyProperty = "aid")
+        int insertAddress(Address address);
+
+        @Delete("delete from addresses where aid = #{aid}")
+        int deleteAddress(long aid);
+
+        @Select("select count(*) from members")
+        int countMembers();
+    }
+
+    public static class Member {
+
+        private Long uid;
+
+        private String name;
+
+        public Member() {
+        }
+
+        Member(String name) {
+            this.name = name;
+        }
+
+        public Long getUid() {
+            return uid;
+        }
+        public void setUid(Long uid) {
+            this.uid = uid;
+        }
+        public String getName() {
+            return name;
+        }
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Address {
+
+        private Long aid;
+
+        private String address;
+
+        private Member owner;
+
+        public Address() {
+        }
+
+        Address(String address, Member owner) {
+            this.address = address;
+            this.owner = owner;
+        }
+
+        public Long getAid() {
+            return aid;
+        }
+        public void setAid(Long aid) {
+            this.aid = aid;
+        }
+        public String getAddress() {
+            return address;
+        }
+        public void setAddress(String address) {
+            this.address = address;
+        }
+        public Member getOwner() {
+            return owner;
+        }
+        public void setOwner(Member owner) {
+            this.owner = owner;
+        }
+    }
+
+}
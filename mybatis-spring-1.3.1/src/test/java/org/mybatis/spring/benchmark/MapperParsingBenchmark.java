@@ -0,0 +1,131 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.TestDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code SqlSessionFactory} build time with {@code mapperCount} generated mapper XML files of 20
+ * statements each, parsed sequentially or with {@code parallelMapperParsing}. Every file includes a
+ * SQL fragment and extends a result map of the first file, so that cross-file references are
+ * resolved as in a real application. The parallel mode can only be faster with several processors,
+ * on a single one it just adds the thread hand-offs. Run with
+ * {@code mvn -P benchmark clean verify -Dbenchmark=MapperParsingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class MapperParsingBenchmark {
+
+    private static final String NAMESPACE = "org.mybatis.spring.benchmark.parsing.Mapper";
+
+    @Param({"200"})
+    private int mapperCount;
+
+    @Param({"false", "true"})
+    private boolean parallelMapperParsing;
+
+    private File mappersDirectory;
+
+    private Resource[] mapperLocations;
+
+    private DriverManagerDataSource dataSource;
+
+    @Setup
+    public void generateMappers() throws IOException {
+        this.mappersDirectory = Files.createTempDirectory("generated-mapper-files").toFile();
+        this.mapperLocations = new Resource[this.mapperCount];
+        for (int i = 0; i < this.mapperCount; i++) {
+            File file = new File(this.mappersDirectory, "GeneratedMapper" + i + ".xml");
+            Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8);
+            try {
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+                writer.write("<!DOCTYPE mapper PUBLIC \"-//mybatis.org//DTD Mapper 3.0//EN\" "
+                             + "\"http://mybatis.org/dtd/mybatis-3-mapper.dtd\">\n");
+                writer.write("<mapper namespace=\"" + NAMESPACE + i + "\">\n");
+                if (i == 0) {
+                    writer.write("  <sql id=\"userColumns\">uid, name</sql>\n");
+                    writer.write("  <resultMap id=\"baseUser\" type=\"map\">\n");
+                    writer.write("    <id property=\"uid\" column=\"uid\" javaType=\"long\"/>\n");
+                    writer.write("    <result property=\"name\" column=\"name\" javaType=\"string\"/>\n");
+                    writer.write("  </resultMap>\n");
+                }
+                writer.write("  <resultMap id=\"user\" type=\"map\" extends=\"" + NAMESPACE + "0.baseUser\">\n");
+                writer.write("    <result property=\"number\" column=\"uid\"/>\n");
+                writer.write("  </resultMap>\n");
+                for (int j = 0; j < 20; j++) {
+                    writer.write("  <select id=\"select" + j + "\" resultMap=\"user\">\n");
+                    writer.write("    select <include refid=\"" + NAMESPACE + "0.userColumns\"/> from users\n");
+                    writer.write("    <where>\n");
+                    writer.write("      <if test=\"uid != null\">uid = #{uid}</if>\n");
+                    writer.write("      <if test=\"name != null\">and name = #{name}</if>\n");
+                    writer.write("      and " + j + " = " + j + "\n");
+                    writer.write("    </where>\n");
+                    writer.write("  </select>\n");
+                }
+                writer.write("</mapper>\n");
+            } finally {
+                writer.close();
+            }
+            this.mapperLocations[i] = new FileSystemResource(file);
+        }
+        this.dataSource = TestDatabase.newDataSource();
+    }
+
+    @TearDown
+    public void deleteMappers() {
+        FileSystemUtils.deleteRecursively(this.mappersDirectory);
+    }
+
+    @Benchmark
+    public SqlSessionFactory build() throws Exception {
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(this.dataSource);
+        factoryBean.setMapperLocations(this.mapperLocations);
+        factoryBean.setParallelMapperParsing(this.parallelMapperParsing);
+        return factoryBean.getObject();
+    }
+
+}
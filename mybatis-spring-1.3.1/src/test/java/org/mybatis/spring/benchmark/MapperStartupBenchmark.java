@@ -0,0 +1,151 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.mapper.MapperScannerConfigurer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.util.FileSystemUtils;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context refresh time with {@code mapperCount} generated annotation mappers of 10 statements each,
+ * bound eagerly (by each {@code MapperFactoryBean}) or lazily (in one pass by
+ * {@code LazyMapperBinder}). The refresh includes the binding in both modes, since the
+ * {@code Configuration} must not change once requests are served. Run with
+ * {@code mvn -P benchmark clean verify -Dbenchmark=MapperStartupBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class MapperStartupBenchmark {
+
+    private static final String PACKAGE = "org.mybatis.spring.benchmark.mappers";
+
+    @Param({"200"})
+    private int mapperCount;
+
+    @Param({"false", "true"})
+    private boolean lazyInitialization;
+
+    private File classesDirectory;
+
+    private ClassLoader classLoader;
+
+    private DriverManagerDataSource dataSource;
+
+    @Setup
+    public void generateMappers() throws IOException {
+        this.classesDirectory = Files.createTempDirectory("generated-mappers").toFile();
+        File packageDirectory = new File(this.classesDirectory, PACKAGE.replace('.', File.separatorChar));
+        if (!packageDirectory.mkdirs()) {
+            throw new IOException("Could not create " + packageDirectory);
+        }
+        List<String> arguments = new ArrayList<String>();
+        // 与Spring 3.2的ASM能读取的class版本一致
+        arguments.add("--release");
+        arguments.add("8");
+        arguments.add("-classpath");
+        arguments.add(System.getProperty("java.class.path"));
+        arguments.add("-d");
+        arguments.add(this.classesDirectory.getPath());
+        for (int i = 0; i < this.mapperCount; i++) {
+            File source = new File(packageDirectory, "GeneratedMapper" + i + ".java");
+            Writer writer = new OutputStreamWriter(Files.newOutputStream(source.toPath()), StandardCharsets.UTF_8);
+            try {
+                writer.write("package " + PACKAGE + ";\n");
+                writer.write("public interface GeneratedMapper" + i + " {\n");
+                for (int j = 0; j < 10; j++) {
+                    writer.write("  @org.apache.ibatis.annotations.Select(\"select name from users where uid = #{uid} and "
+                                 + j + " = " + j + "\")\n");
+                    writer.write("  String select" + j + "(long uid);\n");
+                }
+                writer.write("}\n");
+            } finally {
+                writer.close();
+            }
+            arguments.add(source.getPath());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("Could not compile the generated mappers");
+        }
+        this.classLoader = new URLClassLoader(new URL[] {this.classesDirectory.toURI().toURL()},
+                                              getClass().getClassLoader());
+        this.dataSource = TestDatabase.newDataSource();
+    }
+
+    @TearDown
+    public void deleteMappers() {
+        FileSystemUtils.deleteRecursively(this.classesDirectory);
+    }
+
+    @Benchmark
+    public int refresh() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.setClassLoader(this.classLoader);
+        try {
+            GenericBeanDefinition sqlSessionFactory = new GenericBeanDefinition();
+            sqlSessionFactory.setBeanClass(SqlSessionFactoryBean.class);
+            sqlSessionFactory.getPropertyValues().add("dataSource", this.dataSource);
+            context.registerBeanDefinition("sqlSessionFactory", sqlSessionFactory);
+
+            GenericBeanDefinition scanner = new GenericBeanDefinition();
+            scanner.setBeanClass(MapperScannerConfigurer.class);
+            scanner.getPropertyValues().add("basePackage", PACKAGE);
+            scanner.getPropertyValues().add("sqlSessionFactoryBeanName", "sqlSessionFactory");
+            scanner.getPropertyValues().add("lazyInitialization", this.lazyInitialization);
+            context.registerBeanDefinition("mapperScanner", scanner);
+
+            context.refresh();
+            return context.getBeanDefinitionCount();
+        } finally {
+            context.close();
+        }
+    }
+
+}
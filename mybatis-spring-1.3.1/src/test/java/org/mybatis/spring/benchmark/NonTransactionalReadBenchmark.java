@@ -0,0 +1,67 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.TestMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non transactional reads with and without the commit before the session is closed. The
+ * connection is not in auto-commit mode, so {@code forceCommitOnRead=true} pays a JDBC commit on
+ * every call. Run with {@code mvn -P benchmark clean verify -Dbenchmark=NonTransactionalReadBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NonTransactionalReadBenchmark {
+
+    @Param({"false", "true"})
+    private boolean forceCommitOnRead;
+
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    @Setup
+    public void setUp() {
+        SingleConnectionDataSource dataSource = TestDatabase.newSingleConnectionDataSource();
+        dataSource.setAutoCommit(false);
+        this.sqlSessionTemplate = new SqlSessionTemplate(TestDatabase.newSqlSessionFactory(dataSource));
+        this.sqlSessionTemplate.setForceCommitOnRead(this.forceCommitOnRead);
+    }
+
+    @Benchmark
+    public String selectOne() {
+        return this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L);
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.TestMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read path of a {@code get*}/{@code find*} service method, with and without
+ * {@code read-only="true"}, in an actual transaction ({@code REQUIRED}) and in a {@code SUPPORTS}
+ * scope. Each operation runs two statements in a new transaction, as a service method would. Run
+ * with {@code mvn -P benchmark clean verify -Dbenchmark=ReadOnlyTransactionBenchmark -Dbenchmark.args="-f 1 -prof gc"}.
+ * <p>
+ * H2 ignores the read-only flag of the connection, so the difference measured here is the one of
+ * the session handling (no commit, no local cache clear); the saving of a database that skips the
+ * transaction ID assignment, like InnoDB, comes on top of it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadOnlyTransactionBenchmark {
+
+    @Param({"false", "true"})
+    private boolean readOnly;
+
+    @Param({"REQUIRED", "SUPPORTS"})
+    private String propagation;
+
+    private TransactionTemplate transactionTemplate;
+
+    private TestMapper mapper;
+
+    private final TransactionCallback<List<String>> read = new TransactionCallback<List<String>>() {
+        @Override
+        public List<String> doInTransaction(TransactionStatus status) {
+            mapper.selectName(1L);
+            return mapper.selectNames();
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        SingleConnectionDataSource dataSource = TestDatabase.newSingleConnectionDataSource();
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.transactionTemplate.setPropagationBehaviorName("PROPAGATION_" + this.propagation);
+        this.transactionTemplate.setReadOnly(this.readOnly);
+        this.mapper = new SqlSessionTemplate(TestDatabase.newSqlSessionFactory(dataSource)).getMapper(TestMapper.class);
+    }
+
+    @Benchmark
+    public List<String> serviceRead() {
+        return this.transactionTemplate.execute(this.read);
+    }
+
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.MyBatisExceptionTranslator;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.TestMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import static org.mybatis.spring.SqlSessionUtils.closeSqlSession;
+import static org.mybatis.spring.SqlSessionUtils.getSqlSession;
+import static org.mybatis.spring.SqlSessionUtils.isSqlSessionTransactional;
+
+/**
+ * Cost of a call through {@code SqlSessionTemplate} compared to opening, using and closing a
+ * {@code SqlSession} by hand, outside any Spring transaction. {@link #reflectiveProxy()} is the
+ * baseline of the template's direct dispatch: the JDK proxy and {@code Method.invoke} call path
+ * the template used before, with the same session handling. Run with
+ * {@code mvn -P benchmark verify -Dbenchmark=SqlSessionTemplateBenchmark}, add
+ * {@code -Dbenchmark.args="-f 1 -prof gc"} for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlSessionTemplateBenchmark {
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    private TestMapper mapper;
+
+    private SqlSession reflectiveProxy;
+
+    @Setup
+    public void setUp() {
+        this.sqlSessionFactory = TestDatabase.newSqlSessionFactory(TestDatabase.newSingleConnectionDataSource());
+        this.sqlSessionTemplate = new SqlSessionTemplate(this.sqlSessionFactory);
+        this.mapper = this.sqlSessionTemplate.getMapper(TestMapper.class);
+        this.reflectiveProxy = (SqlSession) Proxy.newProxyInstance(SqlSession.class.getClassLoader(),
+                                                                   new Class<?>[] {SqlSession.class},
+                                                                   new SqlSessionInterceptor(this.sqlSessionFactory));
+    }
+
+    @Benchmark
+    public String plainSqlSession() {
+        SqlSession sqlSession = this.sqlSessionFactory.openSession();
+        try {
+            String name = sqlSession.selectOne(TestMapper.SELECT_NAME, 1L);
+            sqlSession.commit(true);
+            return name;
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Benchmark
+    public String template() {
+        return this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L);
+    }
+
+    @Benchmark
+    public String mapper() {
+        return this.mapper.selectName(1L);
+    }
+
+    @Benchmark
+    public String reflectiveProxy() {
+        return this.reflectiveProxy.selectOne(TestMapper.SELECT_NAME, 1L);
+    }
+
+    /**
+     * The invocation handler the template dispatched every call through before it called the
+     * session directly.
+     */
+    private static final class SqlSessionInterceptor implements InvocationHandler {
+
+        private final SqlSessionFactory sqlSessionFactory;
+
+        private final MyBatisExceptionTranslator exceptionTranslator;
+
+        SqlSessionInterceptor(SqlSessionFactory sqlSessionFactory) {
+            this.sqlSessionFactory = sqlSessionFactory;
+            this.exceptionTranslator = new MyBatisExceptionTranslator(
+                    sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(), true);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            SqlSession sqlSession = getSqlSession(this.sqlSessionFactory, ExecutorType.SIMPLE, this.exceptionTranslator);
+            try {
+                Object result = method.invoke(sqlSession, args);
+                if (!isSqlSessionTransactional(sqlSession, this.sqlSessionFactory)) {
+                    sqlSession.commit(true);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable unwrapped = e.getTargetException();
+                if (unwrapped instanceof PersistenceException) {
+                    closeSqlSession(sqlSession, this.sqlSessionFactory);
+                    sqlSession = null;
+                    Throwable translated = this.exceptionTranslator.translateExceptionIfPossible(
+                            (PersistenceException) unwrapped);
+                    if (translated != null) {
+                        unwrapped = translated;
+                    }
+                }
+                throw unwrapped;
+            } finally {
+                if (sqlSession != null) {
+                    closeSqlSession(sqlSession, this.sqlSessionFactory);
+                }
+            }
+        }
+    }
+
+}
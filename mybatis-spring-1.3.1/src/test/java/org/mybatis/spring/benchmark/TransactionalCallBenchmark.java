@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.SqlSessionUtils;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.TestMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@code SqlSessionTemplate} on a call made inside a Spring transaction, compared to
+ * calling the transaction's {@code SqlSession} directly. The statement is answered from the
+ * session's local cache, so neither variant reaches the database and the difference is the cost of
+ * the template (holder lookup, callback, commit decision). Run with
+ * {@code mvn -P benchmark clean verify -Dbenchmark=TransactionalCallBenchmark -Dbenchmark.args="-f 1 -prof gc"}
+ * and compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionalCallBenchmark {
+
+    private DataSourceTransactionManager transactionManager;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    private TransactionStatus transaction;
+
+    private SqlSession sqlSession;
+
+    @Setup
+    public void setUp() {
+        SingleConnectionDataSource dataSource = TestDatabase.newSingleConnectionDataSource();
+        this.transactionManager = new DataSourceTransactionManager(dataSource);
+        this.sqlSessionFactory = TestDatabase.newSqlSessionFactory(dataSource);
+        this.sqlSessionTemplate = new SqlSessionTemplate(this.sqlSessionFactory);
+    }
+
+    @Setup(Level.Iteration)
+    public void beginTransaction() {
+        this.transaction = this.transactionManager.getTransaction(new DefaultTransactionDefinition());
+        this.sqlSession = SqlSessionUtils.getSqlSession(this.sqlSessionFactory);
+        this.sqlSession.selectOne(TestMapper.SELECT_NAME, 1L);
+    }
+
+    @TearDown(Level.Iteration)
+    public void rollbackTransaction() {
+        SqlSessionUtils.closeSqlSession(this.sqlSession, this.sqlSessionFactory);
+        this.transactionManager.rollback(this.transaction);
+    }
+
+    @Benchmark
+    public String transactionalSqlSession() {
+        return this.sqlSession.selectOne(TestMapper.SELECT_NAME, 1L);
+    }
+
+    @Benchmark
+    public String template() {
+        return this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 1L);
+    }
+
+}
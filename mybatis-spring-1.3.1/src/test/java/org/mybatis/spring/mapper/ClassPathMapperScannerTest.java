@@ -0,0 +1,125 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.mapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mybatis.spring.TestMapper;
+import org.mybatis.spring.TransactionalCacheTest;
+import org.mybatis.spring.sharding.ShardStrategy;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClassPathMapperScannerTest {
+
+    private File indexDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.indexDirectory = Files.createTempDirectory("mapper-index").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileSystemUtils.deleteRecursively(this.indexDirectory);
+    }
+
+    @Test
+    public void shouldReadCoveredPackageFromIndex() throws IOException {
+        MapperIndexWriter.write(this.indexDirectory, Collections.singleton("org.mybatis.spring"),
+                                Collections.singleton(TestMapper.class.getName()));
+
+        // 包下还有其他接口，只返回索引中的接口说明没有扫描
+        assertEquals(Collections.singleton(TestMapper.class.getName()), candidates("org.mybatis.spring"));
+    }
+
+    @Test
+    public void shouldScanPackagesNotCoveredByIndex() throws IOException {
+        MapperIndexWriter.write(this.indexDirectory, Collections.singleton("org.mybatis.spring.mapper"),
+                                Collections.<String>emptySet());
+
+        assertTrue(candidates("org.mybatis.spring.sharding").contains(ShardStrategy.class.getName()));
+        assertEquals(Collections.<String>emptySet(), candidates("org.mybatis.spring.mapper"));
+    }
+
+    @Test
+    public void shouldScanWildcardPackages() throws IOException {
+        MapperIndexWriter.write(this.indexDirectory, Collections.singleton("org.mybatis.spring"),
+                                Collections.singleton(TestMapper.class.getName()));
+
+        assertTrue(candidates("org.mybatis.*.sharding").contains(ShardStrategy.class.getName()));
+    }
+
+    @Test
+    public void shouldScanWhenIndexDoesNotRecordPackages() throws IOException {
+        File index = new File(this.indexDirectory, ClassPathMapperScanner.MAPPER_INDEX_LOCATION);
+        assertTrue(index.getParentFile().mkdirs());
+        FileOutputStream out = new FileOutputStream(index);
+        try {
+            out.write((TestMapper.class.getName() + "\n").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        assertTrue(candidates("org.mybatis.spring.sharding").contains(ShardStrategy.class.getName()));
+    }
+
+    @Test
+    public void writerShouldFindInterfacesOfPackages() throws IOException {
+        File classes = new File(TestMapper.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        Set<String> interfaces = MapperIndexWriter.findInterfaces(classes, "org.mybatis.spring");
+        assertTrue(interfaces.contains(TestMapper.class.getName()));
+        assertTrue(interfaces.contains(TransactionalCacheTest.CachedMapper.class.getName()));
+        assertFalse(interfaces.contains(ClassPathMapperScannerTest.class.getName()));
+    }
+
+    private Set<String> candidates(String basePackage) {
+        ClassPathMapperScanner scanner = new ClassPathMapperScanner(new DefaultListableBeanFactory());
+        URLClassLoader classLoader;
+        try {
+            classLoader = new URLClassLoader(new URL[] {this.indexDirectory.toURI().toURL()},
+                                             getClass().getClassLoader());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        scanner.setResourceLoader(new DefaultResourceLoader(classLoader));
+        scanner.registerFilters();
+
+        Set<String> classNames = new TreeSet<String>();
+        for (BeanDefinition definition : scanner.findCandidateComponents(basePackage)) {
+            classNames.add(definition.getBeanClassName());
+        }
+        return classNames;
+    }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.mapper;
+
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.mapper.sample.SampleMapper;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LazyMapperBinderTest {
+
+    private GenericApplicationContext context;
+
+    @After
+    public void tearDown() {
+        if (this.context != null) {
+            this.context.close();
+        }
+    }
+
+    @Test
+    public void shouldBindLazyMappersBeforeRefreshCompletes() {
+        this.context = newContext(true);
+        this.context.refresh();
+
+        // mapper Bean尚未创建，但mapper已经绑定，之后Configuration不再改变
+        assertFalse(this.context.getBeanFactory().containsSingleton("sampleMapper"));
+        Configuration configuration = this.context.getBean(SqlSessionFactory.class).getConfiguration();
+        assertTrue(configuration.hasMapper(SampleMapper.class));
+        assertEquals(1, this.context.getBeansOfType(LazyMapperBinder.class).size());
+
+        int statements = configuration.getMappedStatementNames().size();
+        assertEquals("Pocoyo", this.context.getBean(SampleMapper.class).selectName(1L));
+        assertEquals(statements, configuration.getMappedStatementNames().size());
+    }
+
+    @Test
+    public void shouldNotRegisterBinderWhenEager() {
+        this.context = newContext(false);
+        this.context.refresh();
+
+        assertTrue(this.context.getBeansOfType(LazyMapperBinder.class).isEmpty());
+        assertTrue(this.context.getBean(SqlSessionFactory.class).getConfiguration().hasMapper(SampleMapper.class));
+    }
+
+    private static GenericApplicationContext newContext(boolean lazyInitialization) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.getBeanFactory().registerSingleton("dataSource", TestDatabase.newDataSource());
+
+        GenericBeanDefinition sqlSessionFactory = new GenericBeanDefinition();
+        sqlSessionFactory.setBeanClass(SqlSessionFactoryBean.class);
+        sqlSessionFactory.getPropertyValues().add("dataSource", context.getBeanFactory().getBean("dataSource"));
+        context.registerBeanDefinition("sqlSessionFactory", sqlSessionFactory);
+
+        GenericBeanDefinition scanner = new GenericBeanDefinition();
+        scanner.setBeanClass(MapperScannerConfigurer.class);
+        scanner.getPropertyValues().add("basePackage", SampleMapper.class.getPackage().getName());
+        scanner.getPropertyValues().add("sqlSessionFactoryBeanName", "sqlSessionFactory");
+        scanner.getPropertyValues().add("lazyInitialization", lazyInitialization);
+        context.registerBeanDefinition("mapperScanner", scanner);
+        return context;
+    }
+
+}
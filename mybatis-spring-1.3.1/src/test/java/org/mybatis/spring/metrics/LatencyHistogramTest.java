@@ -0,0 +1,102 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldUseOneBucketPerSmallValue() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.upperBound(value));
+        }
+        assertEquals(16, LatencyHistogram.bucketIndex(16));
+        assertEquals(17, LatencyHistogram.upperBound(16));
+    }
+
+    @Test
+    public void shouldCoverValuesWithContiguousBuckets() {
+        int last = LatencyHistogram.bucketIndex(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(last));
+        for (int index = 0; index < last; index++) {
+            long upperBound = LatencyHistogram.upperBound(index);
+            assertEquals(index, LatencyHistogram.bucketIndex(upperBound));
+            assertEquals(index + 1, LatencyHistogram.bucketIndex(upperBound + 1));
+        }
+    }
+
+    @Test
+    public void shouldBoundRelativeError() {
+        for (long value = 1; value < 10000000L; value = value * 3 / 2 + 1) {
+            long upperBound = LatencyHistogram.upperBound(LatencyHistogram.bucketIndex(value));
+            assertTrue(upperBound >= value);
+            assertTrue(value + " -> " + upperBound, upperBound - value <= value / 8);
+        }
+    }
+
+    @Test
+    public void shouldComputePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(1, histogram.percentile(0));
+        assertWithin(500, histogram.percentile(50));
+        assertWithin(990, histogram.percentile(99));
+        assertEquals(1000, histogram.percentile(100));
+    }
+
+    @Test
+    public void shouldNeverReportMoreThanMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        assertEquals(1000, histogram.percentile(50));
+    }
+
+    @Test
+    public void shouldRecordNegativeValuesAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.percentile(100));
+    }
+
+    @Test
+    public void shouldReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.percentile(50));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " <= " + actual, actual >= expected);
+        assertTrue(actual + " <= " + expected + " * 1.125", actual <= expected + expected / 8);
+    }
+
+}
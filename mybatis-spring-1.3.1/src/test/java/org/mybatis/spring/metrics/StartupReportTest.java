@@ -0,0 +1,138 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.mapper.MapperScannerConfigurer;
+import org.mybatis.spring.mapper.sample.SampleMapper;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StartupReportTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    private GenericApplicationContext first;
+
+    private GenericApplicationContext second;
+
+    @After
+    public void tearDown() {
+        if (this.first != null) {
+            this.first.close();
+        }
+        if (this.second != null) {
+            this.second.close();
+        }
+    }
+
+    @Test
+    public void shouldKeepOneReportPerContext() {
+        this.first = newContext("first");
+        this.second = newContext("second");
+
+        StartupReport firstReport = getStartupReport(this.first);
+        StartupReport secondReport = getStartupReport(this.second);
+        ObjectName firstName = firstReport.getObjectName();
+        ObjectName secondName = secondReport.getObjectName();
+        assertNotEquals(firstName, secondName);
+        assertTrue(this.server.isRegistered(firstName));
+        assertTrue(this.server.isRegistered(secondName));
+        assertTrue(Arrays.toString(firstReport.getPhases()).contains("MapperScannerConfigurer.scan"));
+        assertTrue(Arrays.toString(firstReport.getPhases()).contains("MapperFactoryBean.addMapper"));
+
+        // 关闭一个应用不影响另一个应用的MBean
+        this.first.close();
+        this.first = null;
+        assertFalse(this.server.isRegistered(firstName));
+        assertNull(firstReport.getObjectName());
+        assertTrue(this.server.isRegistered(secondName));
+    }
+
+    @Test
+    public void shouldIgnoreChildContextClose() {
+        this.first = newContext("parent");
+        ObjectName name = getStartupReport(this.first).getObjectName();
+
+        GenericApplicationContext child = new GenericApplicationContext(this.first);
+        child.refresh();
+        child.close();
+
+        assertTrue(this.server.isRegistered(name));
+    }
+
+    @Test
+    public void shouldNotCountOverlappingPhasesTwice() {
+        StartupReport report = new StartupReport();
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(200);
+        report.record("first", start);
+        report.record("second", start);
+
+        assertTrue(report.getTotalMillis() >= 200);
+        assertTrue(report.getTotalMillis() < 400);
+    }
+
+    @Test
+    public void shouldReset() {
+        StartupReport report = new StartupReport();
+        report.record("phase", System.nanoTime());
+        report.reset();
+
+        assertEquals(0, report.getPhases().length);
+        assertEquals(0, report.getTotalMillis());
+    }
+
+    private static StartupReport getStartupReport(GenericApplicationContext context) {
+        return context.getBean("&sqlSessionFactory", SqlSessionFactoryBean.class).getStartupReport();
+    }
+
+    private static GenericApplicationContext newContext(String id) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.setId(id);
+        context.getBeanFactory().registerSingleton("dataSource", TestDatabase.newDataSource());
+
+        GenericBeanDefinition sqlSessionFactory = new GenericBeanDefinition();
+        sqlSessionFactory.setBeanClass(SqlSessionFactoryBean.class);
+        sqlSessionFactory.getPropertyValues().add("dataSource", context.getBeanFactory().getBean("dataSource"));
+        context.registerBeanDefinition("sqlSessionFactory", sqlSessionFactory);
+
+        GenericBeanDefinition scanner = new GenericBeanDefinition();
+        scanner.setBeanClass(MapperScannerConfigurer.class);
+        scanner.getPropertyValues().add("basePackage", SampleMapper.class.getPackage().getName());
+        scanner.getPropertyValues().add("sqlSessionFactoryBeanName", "sqlSessionFactory");
+        context.registerBeanDefinition("mapperScanner", scanner);
+
+        context.refresh();
+        return context;
+    }
+
+}
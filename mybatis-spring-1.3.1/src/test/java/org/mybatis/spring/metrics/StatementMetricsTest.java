@@ -0,0 +1,136 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Test;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.TestMapper;
+import org.springframework.context.support.GenericApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StatementMetricsTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    private final List<StatementMetrics> registries = new ArrayList<StatementMetrics>();
+
+    @After
+    public void tearDown() throws Exception {
+        for (StatementMetrics registry : this.registries) {
+            registry.destroy();
+        }
+    }
+
+    @Test
+    public void shouldRecordExecutionsThroughInterceptor() throws Exception {
+        StatementMetrics metrics = newStatementMetrics("app", "statementMetrics");
+        Configuration configuration = TestDatabase.newConfiguration(TestDatabase.newDataSource());
+        configuration.addInterceptor(new StatementMetricsInterceptor(metrics));
+        SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+            TestMapper mapper = sqlSession.getMapper(TestMapper.class);
+            assertEquals("Pocoyo", mapper.selectName(1L));
+            assertEquals("Pato", mapper.selectName(2L));
+            try {
+                mapper.insert(1L, "Duplicate");
+                fail();
+            } catch (RuntimeException e) {
+                // 主键重复
+            }
+        } finally {
+            sqlSession.close();
+        }
+
+        assertEquals(2, metrics.getStatementStats(TestMapper.SELECT_NAME).getCalls());
+        assertEquals(1, metrics.getStatementStats(TestMapper.INSERT).getErrors());
+
+        ObjectName name = new ObjectName(StatementMetrics.DEFAULT_DOMAIN
+                                         + ":type=StatementStats,context=\"app\",metrics=\"statementMetrics\",name="
+                                         + ObjectName.quote(TestMapper.SELECT_NAME));
+        assertEquals(2L, this.server.getAttribute(name, "Calls"));
+        assertTrue(this.server.isRegistered(new ObjectName(
+                StatementMetrics.DEFAULT_DOMAIN + ":type=StatementMetrics,context=\"app\",metrics=\"statementMetrics\"")));
+
+        metrics.setEnabled(false);
+        sqlSession = sqlSessionFactory.openSession();
+        try {
+            sqlSession.getMapper(TestMapper.class).selectName(1L);
+        } finally {
+            sqlSession.close();
+        }
+        assertEquals(2, metrics.getStatementStats(TestMapper.SELECT_NAME).getCalls());
+    }
+
+    @Test
+    public void shouldKeepRegistriesOfContextsApart() throws Exception {
+        StatementMetrics first = newStatementMetrics("first", "statementMetrics");
+        StatementMetrics second = newStatementMetrics("second", "statementMetrics");
+        first.getStatementStats("statement");
+        second.getStatementStats("statement");
+
+        assertEquals(2, first.getRegisteredNames().size());
+        assertEquals(2, second.getRegisteredNames().size());
+        assertNotEquals(first.getRegisteredNames(), second.getRegisteredNames());
+    }
+
+    @Test
+    public void shouldLeaveTakenNamesAlone() throws Exception {
+        StatementMetrics first = newStatementMetrics("app", "statementMetrics");
+        StatementMetrics second = newStatementMetrics("app", "statementMetrics");
+        first.recordExecution("statement", 1000, false);
+        second.getStatementStats("statement");
+
+        // 名称已被第一个注册，第二个不注册也不注销它
+        assertTrue(second.getRegisteredNames().isEmpty());
+        ObjectName name = first.getRegisteredNames().get(1);
+        assertEquals(1L, this.server.getAttribute(name, "Calls"));
+
+        second.destroy();
+        assertTrue(this.server.isRegistered(name));
+        first.destroy();
+        assertFalse(this.server.isRegistered(name));
+    }
+
+    private StatementMetrics newStatementMetrics(String contextId, String beanName) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.setId(contextId);
+        StatementMetrics metrics = new StatementMetrics();
+        metrics.setBeanName(beanName);
+        metrics.setApplicationContext(context);
+        this.registries.add(metrics);
+        return metrics;
+    }
+
+}
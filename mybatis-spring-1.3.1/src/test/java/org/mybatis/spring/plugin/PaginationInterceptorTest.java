@@ -0,0 +1,194 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.plugin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.TestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PaginationInterceptorTest {
+
+    private final Configuration configuration = new Configuration();
+
+    /** 存根Executor收到的查询：语句ID、SQL（未改写时为null）和RowBounds */
+    private final List<Object[]> queries = new ArrayList<Object[]>();
+
+    private final List<Long> totalCounts = new ArrayList<Long>();
+
+    private long count = 3000000000L;
+
+    private PaginationInterceptor interceptor;
+
+    private Executor executor;
+
+    @Before
+    public void setUp() {
+        this.interceptor = new PaginationInterceptor() {
+            @Override
+            protected boolean isPage(Object value) {
+                return value instanceof Page;
+            }
+
+            @Override
+            protected RowBounds toRowBounds(Object page) {
+                return new RowBounds(((Page) page).offset, ((Page) page).limit);
+            }
+
+            @Override
+            protected void setTotalCount(Object page, long totalCount) {
+                PaginationInterceptorTest.this.totalCounts.add(totalCount);
+            }
+        };
+        this.executor = (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(), new Class<?>[] {Executor.class},
+                                                          new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("createCacheKey".equals(method.getName())) {
+                    return new CacheKey();
+                }
+                if ("query".equals(method.getName())) {
+                    MappedStatement ms = (MappedStatement) args[0];
+                    String sql = args.length == 6 ? ((BoundSql) args[5]).getSql() : null;
+                    PaginationInterceptorTest.this.queries.add(new Object[] {ms.getId(), sql, args[2]});
+                    if (ms.getId().endsWith(PaginationInterceptor.COUNT_STATEMENT_SUFFIX)) {
+                        return Collections.<Object>singletonList(PaginationInterceptorTest.this.count);
+                    }
+                    return Collections.emptyList();
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    public void shouldPageWithRowBounds() throws Throwable {
+        query(statement("select * from users order by name;"), null, new RowBounds(20, 10));
+
+        assertEquals(1, this.queries.size());
+        assertEquals("select * from users order by name LIMIT 10 OFFSET 20", this.queries.get(0)[1]);
+        assertSame(RowBounds.DEFAULT, this.queries.get(0)[2]);
+        assertEquals(0, this.totalCounts.size());
+    }
+
+    @Test
+    public void shouldCountWithoutOrderByAndKeepLongTotal() throws Throwable {
+        query(statement("select * from users order by name"), new Page(0, 5), RowBounds.DEFAULT);
+
+        assertEquals(2, this.queries.size());
+        assertEquals("SELECT COUNT(*) FROM (select * from users) pagination_count", this.queries.get(0)[1]);
+        assertEquals("select * from users order by name LIMIT 5", this.queries.get(1)[1]);
+        assertEquals(Long.valueOf(3000000000L), this.totalCounts.get(0));
+    }
+
+    @Test
+    public void shouldNotPageStatementsEndingWithLimit() throws Throwable {
+        RowBounds rowBounds = new RowBounds(0, 2);
+        query(statement("select * from users order by name limit 10"), null, rowBounds);
+        query(statement("select * from users order by name LIMIT 10 OFFSET 5"), new Page(0, 5), RowBounds.DEFAULT);
+        query(statement("select * from users limit 5, 10"), null, rowBounds);
+
+        assertEquals(3, this.queries.size());
+        for (Object[] query : this.queries) {
+            // 按原样执行：没有统计总数，也没有改写SQL
+            assertEquals(null, query[1]);
+        }
+        assertSame(rowBounds, this.queries.get(0)[2]);
+        assertEquals(0, this.totalCounts.size());
+    }
+
+    @Test
+    public void shouldPageNestedCollectionsInMemory() throws Exception {
+        DriverManagerDataSource dataSource = TestDatabase.newDataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table addresses (aid bigint primary key, ownerid bigint, city varchar(50))");
+        jdbcTemplate.execute("insert into addresses (aid, ownerid, city) values (1, 1, 'Madrid'), (2, 1, 'Lisboa'), (3, 2, 'Roma')");
+        Configuration configuration = TestDatabase.newConfiguration(dataSource);
+        configuration.addInterceptor(this.interceptor);
+        String resource = "org/mybatis/spring/plugin/UserAddressMapper.xml";
+        new XMLMapperBuilder(Resources.getResourceAsStream(resource), configuration, resource,
+                             configuration.getSqlFragments()).parse();
+        SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(new DefaultSqlSessionFactory(configuration));
+        String statement = "org.mybatis.spring.plugin.UserAddressMapper.selectUsersWithAddresses";
+
+        // LIMIT 1会只返回用户1的第一个地址
+        List<Map<String, Object>> users = sqlSessionTemplate.selectList(statement, null, new RowBounds(0, 1));
+        assertEquals(1, users.size());
+        assertEquals("Pocoyo", users.get(0).get("name"));
+        assertEquals(2, ((List<?>) users.get(0).get("addresses")).size());
+
+        users = sqlSessionTemplate.selectList(statement, new Page(1, 1));
+        assertEquals(1, users.size());
+        assertEquals("Pato", users.get(0).get("name"));
+        assertEquals(1, ((List<?>) users.get(0).get("addresses")).size());
+        assertEquals(Collections.singletonList(2L), this.totalCounts);
+    }
+
+    private void query(MappedStatement ms, Object parameter, RowBounds rowBounds) throws Throwable {
+        Method query = Executor.class.getMethod("query", MappedStatement.class, Object.class, RowBounds.class,
+                                                ResultHandler.class);
+        this.interceptor.intercept(new Invocation(this.executor, query,
+                                                  new Object[] {ms, parameter, rowBounds, Executor.NO_RESULT_HANDLER}));
+    }
+
+    private MappedStatement statement(String sql) {
+        String id = "users" + this.configuration.getMappedStatementNames().size();
+        MappedStatement ms = new MappedStatement.Builder(this.configuration, id,
+                                                         new StaticSqlSource(this.configuration, sql),
+                                                         SqlCommandType.SELECT).build();
+        this.configuration.addMappedStatement(ms);
+        return ms;
+    }
+
+    private static final class Page {
+
+        private final int offset;
+
+        private final int limit;
+
+        Page(int offset, int limit) {
+            this.offset = offset;
+            this.limit = limit;
+        }
+    }
+
+}
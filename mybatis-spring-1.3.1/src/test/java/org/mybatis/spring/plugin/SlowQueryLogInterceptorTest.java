@@ -0,0 +1,121 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.plugin;
+
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.TestMapper;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SlowQueryLogInterceptorTest {
+
+    private final BlockingQueue<String> entries = new LinkedBlockingQueue<String>();
+
+    private final BlockingQueue<Thread> loggingThreads = new LinkedBlockingQueue<Thread>();
+
+    private SlowQueryLogInterceptor interceptor;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Before
+    public void setUp() {
+        this.interceptor = new SlowQueryLogInterceptor() {
+            @Override
+            protected void log(String entry) {
+                SlowQueryLogInterceptorTest.this.loggingThreads.add(Thread.currentThread());
+                if (entry.contains("updateName")) {
+                    throw new IllegalStateException("logging backend failure");
+                }
+                SlowQueryLogInterceptorTest.this.entries.add(entry);
+            }
+        };
+        this.interceptor.setThresholdMillis(0);
+        Configuration configuration = TestDatabase.newConfiguration(TestDatabase.newDataSource());
+        configuration.addInterceptor(this.interceptor);
+        this.sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.interceptor.destroy();
+    }
+
+    @Test
+    public void shouldLogOnTheLoggingThread() throws Exception {
+        SqlSession sqlSession = this.sqlSessionFactory.openSession();
+        try {
+            assertEquals("Pato", sqlSession.selectOne(TestMapper.SELECT_NAME, 2L));
+        } finally {
+            sqlSession.close();
+        }
+
+        String entry = this.entries.poll(5, TimeUnit.SECONDS);
+        assertNotNull(entry);
+        assertTrue(entry, entry.startsWith("Slow statement " + TestMapper.SELECT_NAME + " took "));
+        assertTrue(entry, entry.contains("rows 1)"));
+        assertTrue(entry, entry.contains("SQL: select name from users where uid = ?"));
+        assertTrue(entry, entry.contains("Parameters: [2]"));
+        assertTrue(this.loggingThreads.take() != Thread.currentThread());
+    }
+
+    @Test
+    public void shouldKeepLoggingAfterFailure() throws Exception {
+        SqlSession sqlSession = this.sqlSessionFactory.openSession();
+        try {
+            assertEquals(1, sqlSession.getMapper(TestMapper.class).updateName(1L, "Elly"));
+            assertEquals(2, sqlSession.getMapper(TestMapper.class).count());
+            sqlSession.commit();
+        } finally {
+            sqlSession.close();
+        }
+
+        String entry = this.entries.poll(5, TimeUnit.SECONDS);
+        assertNotNull(entry);
+        assertTrue(entry, entry.startsWith("Slow statement " + TestMapper.COUNT));
+        assertEquals(1, this.interceptor.getDroppedCount());
+    }
+
+    @Test
+    public void shouldDropEntriesAfterDestroy() throws Exception {
+        this.interceptor.destroy();
+        SqlSession sqlSession = this.sqlSessionFactory.openSession();
+        try {
+            assertEquals("Pato", sqlSession.selectOne(TestMapper.SELECT_NAME, 2L));
+        } finally {
+            sqlSession.close();
+        }
+
+        // 销毁后不再启动日志线程，也不会把记录留在队列中
+        assertNull(this.entries.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(this.loggingThreads.isEmpty());
+        assertEquals(1, this.interceptor.getDroppedCount());
+    }
+
+}
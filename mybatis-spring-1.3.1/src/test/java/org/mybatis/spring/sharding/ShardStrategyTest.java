@@ -0,0 +1,60 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.sharding;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardStrategyTest {
+
+    @Test
+    public void moduloShouldUseTheKeyRemainder() {
+        ModuloShardStrategy strategy = new ModuloShardStrategy();
+        assertEquals(0, strategy.getShard(4L, 2));
+        assertEquals(1, strategy.getShard(5L, 2));
+        assertEquals(2, strategy.getShard(-1L, 3));
+        assertEquals(0, strategy.getShard(Long.MIN_VALUE, 2));
+        assertEquals(strategy.getShard(7, 3), strategy.getShard(7L, 3));
+    }
+
+    @Test
+    public void moduloShouldHashOtherKeys() {
+        ModuloShardStrategy strategy = new ModuloShardStrategy();
+        assertEquals(new HashShardStrategy().getShard("abc", 4), strategy.getShard("abc", 4));
+    }
+
+    @Test
+    public void hashShouldStayWithinShardCount() {
+        HashShardStrategy strategy = new HashShardStrategy();
+        int[] counts = new int[4];
+        for (long key = 0; key < 4000; key++) {
+            int shard = strategy.getShard(key, 4);
+            assertTrue(shard >= 0 && shard < 4);
+            assertEquals(shard, strategy.getShard(key, 4));
+            counts[shard]++;
+        }
+        for (int count : counts) {
+            assertTrue("unbalanced shard: " + count, count > 800 && count < 1200);
+        }
+        int shard = strategy.getShard(new BigInteger("123456789012345678901234567890"), 3);
+        assertTrue(shard >= 0 && shard < 3);
+    }
+
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.sharding;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.TestMapper;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardedSqlSessionTemplateTest {
+
+    private static final Comparator<String> NAME_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String left, String right) {
+            return left.compareTo(right);
+        }
+    };
+
+    private static final Comparator<Map<String, Object>> UID_ORDER = new Comparator<Map<String, Object>>() {
+        @Override
+        public int compare(Map<String, Object> left, Map<String, Object> right) {
+            return ((Long) left.get("UID")).compareTo((Long) right.get("UID"));
+        }
+    };
+
+    private List<SqlSessionFactory> factories;
+
+    private ShardedSqlSessionTemplate sqlSessionTemplate;
+
+    @Before
+    public void setUp() {
+        List<SqlSessionFactory> factories = new ArrayList<SqlSessionFactory>();
+        this.factories = factories;
+        for (int shard = 0; shard < 2; shard++) {
+            DriverManagerDataSource dataSource = TestDatabase.newDataSource();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.update("delete from users");
+            // 偶数uid在分片0，奇数uid在分片1
+            for (long uid = 1; uid <= 6; uid++) {
+                if (uid % 2 == shard) {
+                    jdbcTemplate.update("insert into users (uid, name) values (?, ?)", uid, "user" + uid);
+                }
+            }
+            factories.add(TestDatabase.newSqlSessionFactory(dataSource));
+        }
+        this.sqlSessionTemplate = new ShardedSqlSessionTemplate(factories);
+        this.sqlSessionTemplate.setShardKeyProperties(Collections.singletonMap(TestMapper.SELECT_NAME, "uid"));
+        Map<String, Comparator<?>> resultComparators = new HashMap<String, Comparator<?>>();
+        resultComparators.put(TestMapper.SELECT_NAMES, NAME_ORDER);
+        resultComparators.put(TestMapper.SELECT_USERS, UID_ORDER);
+        this.sqlSessionTemplate.setResultComparators(resultComparators);
+    }
+
+    @Test
+    public void shouldRouteConfiguredStatements() {
+        assertEquals("user3", this.sqlSessionTemplate.selectOne(TestMapper.SELECT_NAME, 3L));
+        assertSame(this.sqlSessionTemplate.getShards().get(1), this.sqlSessionTemplate.getShard(TestMapper.SELECT_NAME, 3L));
+        assertSame(this.sqlSessionTemplate.getShards().get(0), this.sqlSessionTemplate.getShard(TestMapper.SELECT_NAME, 4));
+    }
+
+    @Test
+    public void shouldRouteEqualKeysOfAnyTypeToTheSameShard() {
+        SqlSessionTemplate expected = this.sqlSessionTemplate.getShard(TestMapper.SELECT_NAME, 5L);
+        for (Object key : Arrays.<Object>asList(5, "5", " 5 ", new BigInteger("5"), new BigDecimal("5.0"), 5.0d)) {
+            assertSame(String.valueOf(key), expected, this.sqlSessionTemplate.getShard(TestMapper.SELECT_NAME, key));
+        }
+    }
+
+    @Test
+    public void shouldNormalizeKeys() {
+        assertEquals(12L, this.sqlSessionTemplate.normalizeShardKey(12));
+        assertEquals(12L, this.sqlSessionTemplate.normalizeShardKey("12"));
+        assertEquals(-12L, this.sqlSessionTemplate.normalizeShardKey("-12"));
+        assertEquals(12L, this.sqlSessionTemplate.normalizeShardKey(new BigDecimal("12.00")));
+        assertEquals("%12%", this.sqlSessionTemplate.normalizeShardKey("%12%"));
+        assertEquals(12.5d, this.sqlSessionTemplate.normalizeShardKey(12.5d));
+        assertEquals("99999999999999999999", this.sqlSessionTemplate.normalizeShardKey("99999999999999999999"));
+    }
+
+    @Test
+    public void shouldScatterStatementsThatAreNotConfigured() {
+        // LIKE条件中的uid不是分片键，必须在所有分片上执行
+        assertEquals(Arrays.asList("user5"), this.sqlSessionTemplate.selectList(TestMapper.SELECT_NAMES_LIKE, "%5%"));
+        assertEquals(6, this.sqlSessionTemplate.selectList(TestMapper.SELECT_NAMES_LIKE, "%").size());
+        assertEquals(2, this.sqlSessionTemplate.<Integer>selectList(TestMapper.COUNT).size());
+    }
+
+    @Test
+    public void shouldApplyRowBoundsAfterMerge() {
+        List<String> page = this.sqlSessionTemplate.selectList(TestMapper.SELECT_NAMES, null, new RowBounds(2, 3));
+        // 分片0：2、4、6，分片1：1、3、5，按比较器归并
+        assertEquals(Arrays.asList("user3", "user4", "user5"), page);
+    }
+
+    @Test
+    public void shouldConcatenateInShardOrderWithoutComparator() {
+        this.sqlSessionTemplate.setResultComparators(Collections.<String, Comparator<?>>emptyMap());
+        assertEquals(Arrays.asList("user2", "user4", "user6", "user1", "user3", "user5"),
+                     this.sqlSessionTemplate.selectList(TestMapper.SELECT_NAMES));
+    }
+
+    @Test
+    public void shouldRejectPaginationOfOrderedStatementsWithoutComparator() {
+        this.sqlSessionTemplate.setResultComparators(Collections.<String, Comparator<?>>emptyMap());
+        try {
+            this.sqlSessionTemplate.selectList(TestMapper.SELECT_NAMES, null, new RowBounds(2, 3));
+            fail();
+        } catch (InvalidDataAccessApiUsageException e) {
+            // expected
+        }
+        try {
+            this.sqlSessionTemplate.selectMap(TestMapper.SELECT_USERS, null, "UID", new RowBounds(0, 1));
+            fail();
+        } catch (InvalidDataAccessApiUsageException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldApplyRowBoundsToSelectMap() {
+        Map<Object, Map<String, Object>> page = this.sqlSessionTemplate.selectMap(TestMapper.SELECT_USERS, null, "UID", new RowBounds(1, 3));
+        assertEquals(Arrays.<Object>asList(2L, 3L, 4L), new ArrayList<Object>(page.keySet()));
+    }
+
+    @Test
+    public void shouldApplyRowBoundsToResultHandler() {
+        final List<Object> names = new ArrayList<Object>();
+        this.sqlSessionTemplate.select(TestMapper.SELECT_NAMES, null, new RowBounds(2, 2), new ResultHandler<Object>() {
+            @Override
+            public void handleResult(ResultContext<?> resultContext) {
+                names.add(resultContext.getResultObject());
+            }
+        });
+        assertEquals(Arrays.<Object>asList("user3", "user4"), names);
+    }
+
+    @Test
+    public void shouldRejectScatterOfStatementsPaginatingInSql() {
+        try {
+            this.sqlSessionTemplate.selectList(TestMapper.SELECT_FIRST_NAMES, 2);
+            fail();
+        } catch (InvalidDataAccessApiUsageException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldMergeResults() {
+        List<List<Integer>> results = Arrays.asList(Arrays.asList(1, 2, 3), Collections.<Integer>emptyList(), Arrays.asList(4, 5));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), ShardedSqlSessionTemplate.merge(results, RowBounds.DEFAULT, null));
+        assertEquals(Arrays.asList(3, 4), ShardedSqlSessionTemplate.merge(results, new RowBounds(2, 2), null));
+        assertEquals(Arrays.asList(5), ShardedSqlSessionTemplate.merge(results, new RowBounds(4, 10), null));
+        assertEquals(Collections.emptyList(), ShardedSqlSessionTemplate.merge(results, new RowBounds(7, 10), null));
+        assertEquals(Arrays.asList(2, 3, 4, 5), ShardedSqlSessionTemplate.merge(results, new RowBounds(1, RowBounds.NO_ROW_LIMIT), null));
+    }
+
+    @Test
+    public void shouldMergeSortedResults() {
+        Comparator<Integer> order = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer left, Integer right) {
+                return left.compareTo(right);
+            }
+        };
+        List<List<Integer>> results = Arrays.asList(Arrays.asList(2, 4, 6), Arrays.asList(1, 3, 5));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), ShardedSqlSessionTemplate.merge(results, RowBounds.DEFAULT, order));
+        assertEquals(Arrays.asList(3, 4), ShardedSqlSessionTemplate.merge(results, new RowBounds(2, 2), order));
+    }
+
+    @Test
+    public void shouldMergeMaps() {
+        Map<String, Integer> first = new LinkedHashMap<String, Integer>();
+        first.put("a", 1);
+        first.put("b", 2);
+        Map<String, Integer> second = new LinkedHashMap<String, Integer>();
+        second.put("c", 3);
+        List<Map<String, Integer>> results = Arrays.asList(first, second);
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<String>(ShardedSqlSessionTemplate.mergeMaps(results, RowBounds.DEFAULT, null).keySet()));
+        assertEquals(Arrays.asList("b", "c"), new ArrayList<String>(ShardedSqlSessionTemplate.mergeMaps(results, new RowBounds(1, 5), null).keySet()));
+        assertEquals(Arrays.asList("a"), new ArrayList<String>(ShardedSqlSessionTemplate.mergeMaps(results, new RowBounds(0, 1), null).keySet()));
+    }
+
+    @Test
+    public void shouldApplySettingsToEveryShard() {
+        this.sqlSessionTemplate.setWriteBehind(true);
+        this.sqlSessionTemplate.setForceCommitOnRead(true);
+        for (SqlSessionTemplate shard : this.sqlSessionTemplate.getShards()) {
+            assertTrue(shard.isWriteBehind());
+            assertTrue(shard.isForceCommitOnRead());
+        }
+
+        PersistenceExceptionTranslator exceptionTranslator = this.sqlSessionTemplate.getPersistenceExceptionTranslator();
+        ShardedSqlSessionTemplate template = new ShardedSqlSessionTemplate(this.factories, ExecutorType.SIMPLE, exceptionTranslator);
+        assertSame(exceptionTranslator, template.getPersistenceExceptionTranslator());
+        for (SqlSessionTemplate shard : template.getShards()) {
+            assertSame(exceptionTranslator, shard.getPersistenceExceptionTranslator());
+        }
+    }
+
+    @Test
+    public void shouldAskEachShardForTheWholePage() {
+        assertSame(RowBounds.DEFAULT, ShardedSqlSessionTemplate.shardRowBounds(RowBounds.DEFAULT));
+        assertSame(RowBounds.DEFAULT, ShardedSqlSessionTemplate.shardRowBounds(new RowBounds(5, RowBounds.NO_ROW_LIMIT)));
+        RowBounds rowBounds = ShardedSqlSessionTemplate.shardRowBounds(new RowBounds(20, 10));
+        assertEquals(RowBounds.NO_ROW_OFFSET, rowBounds.getOffset());
+        assertEquals(30, rowBounds.getLimit());
+        assertEquals(Integer.MAX_VALUE, ShardedSqlSessionTemplate.shardRowBounds(new RowBounds(Integer.MAX_VALUE - 1, 10)).getLimit());
+    }
+
+}
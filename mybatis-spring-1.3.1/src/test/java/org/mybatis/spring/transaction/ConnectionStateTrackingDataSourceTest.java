@@ -0,0 +1,140 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.transaction;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.TestMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionStateTrackingDataSourceTest {
+
+    private ConnectionStateTrackingDataSource dataSource;
+
+    private ConnectionStateStatistics statistics;
+
+    private DataSourceTransactionManager transactionManager;
+
+    private TestMapper mapper;
+
+    @Before
+    public void setUp() {
+        // 单连接数据源模拟只有一个物理连接的连接池
+        this.dataSource = new ConnectionStateTrackingDataSource(TestDatabase.newSingleConnectionDataSource());
+        this.dataSource.setAutoCommitOnReturn(true);
+        this.dataSource.setReadOnlyOnReturn(false);
+        this.dataSource.setTransactionIsolationOnReturn(Connection.TRANSACTION_READ_COMMITTED);
+        this.statistics = this.dataSource.getStatistics();
+        this.transactionManager = new DataSourceTransactionManager(this.dataSource);
+        this.mapper = new SqlSessionTemplate(TestDatabase.newSqlSessionFactory(this.dataSource)).getMapper(TestMapper.class);
+    }
+
+    @Test
+    public void shouldSaveCallsAcrossTransactionCycles() {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        runTransaction(definition);
+        long performed = this.statistics.getPerformedCalls();
+        long saved = this.statistics.getSavedCalls();
+
+        for (int i = 0; i < 10; i++) {
+            runTransaction(definition);
+        }
+        // 之后每个事务只需要切换autoCommit，读取都由记录的状态应答
+        assertEquals(performed + 10 * 2, this.statistics.getPerformedCalls());
+        assertTrue(this.statistics.getSavedCalls() >= saved + 10 * 2);
+    }
+
+    @Test
+    public void shouldSaveCallsAcrossReadOnlyTransactionCycles() {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(true);
+        definition.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        runTransaction(definition);
+        long performed = this.statistics.getPerformedCalls();
+        long saved = this.statistics.getSavedCalls();
+
+        for (int i = 0; i < 10; i++) {
+            runTransaction(definition);
+        }
+        // 只读与隔离级别的设置和恢复仍然执行，读取由记录的状态应答
+        assertEquals(performed + 10 * 6, this.statistics.getPerformedCalls());
+        assertTrue(this.statistics.getSavedCalls() >= saved + 10 * 3);
+    }
+
+    @Test
+    public void shouldReadStateAgainAfterSetStatement() throws Exception {
+        Connection connection = this.dataSource.getConnection();
+        try {
+            assertTrue(connection.getAutoCommit());
+            assertTrue(connection.getAutoCommit());
+            assertEquals(1, this.statistics.getPerformedCalls());
+
+            Statement statement = connection.createStatement();
+            statement.execute("SET AUTOCOMMIT FALSE");
+            statement.close();
+            assertFalse(connection.getAutoCommit());
+            assertEquals(2, this.statistics.getPerformedCalls());
+            connection.setAutoCommit(true);
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void shouldReadStateAgainAfterTargetConnectionAccess() throws Exception {
+        Connection connection = this.dataSource.getConnection();
+        try {
+            assertTrue(connection.getAutoCommit());
+            DataSourceUtils.getTargetConnection(connection).setAutoCommit(false);
+            assertFalse(connection.getAutoCommit());
+            connection.setAutoCommit(true);
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void shouldRecognizeSetStatements() {
+        assertTrue(ConnectionStateTrackingDataSource.isSetStatement("SET autocommit=0"));
+        assertTrue(ConnectionStateTrackingDataSource.isSetStatement("  set\ttransaction read only"));
+        assertFalse(ConnectionStateTrackingDataSource.isSetStatement("select * from settings"));
+        assertFalse(ConnectionStateTrackingDataSource.isSetStatement("settle"));
+        assertFalse(ConnectionStateTrackingDataSource.isSetStatement(null));
+    }
+
+    private void runTransaction(TransactionDefinition definition) {
+        TransactionStatus transaction = this.transactionManager.getTransaction(definition);
+        try {
+            assertEquals("Pocoyo", this.mapper.selectName(1L));
+        } finally {
+            this.transactionManager.commit(transaction);
+        }
+    }
+
+}
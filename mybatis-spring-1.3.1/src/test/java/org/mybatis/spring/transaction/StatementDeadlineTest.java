@@ -0,0 +1,156 @@
+/**
+ * Copyright 2010-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.transaction;
+
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mybatis.spring.TestDatabase;
+import org.mybatis.spring.TestMapper;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StatementDeadlineTest {
+
+    private DriverManagerDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        this.dataSource = TestDatabase.newDataSource();
+    }
+
+    @After
+    public void tearDown() {
+        assertFalse("deadline leaked", StatementDeadline.isSet());
+    }
+
+    @Test
+    public void nestedDeadlineShouldOnlyShortenTheCurrentOne() {
+        StatementDeadline outer = StatementDeadline.start(60000);
+        try {
+            StatementDeadline inner = StatementDeadline.start(1000);
+            assertTrue(StatementDeadline.remaining(TimeUnit.MILLISECONDS) <= 1000);
+            inner.close();
+            assertTrue(StatementDeadline.remaining(TimeUnit.MILLISECONDS) > 1000);
+
+            StatementDeadline longer = StatementDeadline.start(120000);
+            assertTrue(StatementDeadline.remaining(TimeUnit.MILLISECONDS) <= 60000);
+            longer.close();
+            assertTrue(StatementDeadline.isSet());
+        } finally {
+            outer.close();
+        }
+        assertFalse(StatementDeadline.isSet());
+        assertEquals(Long.MAX_VALUE, StatementDeadline.remaining(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void closeShouldBeIdempotent() {
+        StatementDeadline outer = StatementDeadline.start(60000);
+        StatementDeadline inner = StatementDeadline.start(1000);
+        inner.close();
+        outer.close();
+        inner.close();
+        assertFalse(StatementDeadline.isSet());
+    }
+
+    @Test
+    public void timeoutShouldBeRemainingBudgetRoundedUpToSeconds() throws Exception {
+        SpringManagedTransaction transaction = new SpringManagedTransaction(this.dataSource);
+        assertNull(transaction.getTimeout());
+
+        StatementDeadline deadline = StatementDeadline.start(1500);
+        try {
+            assertEquals(Integer.valueOf(2), transaction.getTimeout());
+        } finally {
+            deadline.close();
+        }
+        deadline = StatementDeadline.start(100);
+        try {
+            assertEquals(Integer.valueOf(1), transaction.getTimeout());
+        } finally {
+            deadline.close();
+        }
+    }
+
+    @Test
+    public void timeoutShouldBeTheSmallerOfDeadlineAndTransactionTimeout() throws Exception {
+        Connection connection = this.dataSource.getConnection();
+        ConnectionHolder holder = new ConnectionHolder(connection);
+        holder.setTimeoutInSeconds(3);
+        TransactionSynchronizationManager.bindResource(this.dataSource, holder);
+        try {
+            SpringManagedTransaction transaction = new SpringManagedTransaction(this.dataSource);
+            StatementDeadline deadline = StatementDeadline.start(60000);
+            try {
+                assertEquals(Integer.valueOf(3), transaction.getTimeout());
+            } finally {
+                deadline.close();
+            }
+            deadline = StatementDeadline.start(1500);
+            try {
+                assertEquals(Integer.valueOf(2), transaction.getTimeout());
+            } finally {
+                deadline.close();
+            }
+        } finally {
+            TransactionSynchronizationManager.unbindResource(this.dataSource);
+            connection.close();
+        }
+    }
+
+    @Test
+    public void shouldNotStartStatementOnceBudgetIsExhausted() throws Exception {
+        SqlSessionFactory sqlSessionFactory = TestDatabase.newSqlSessionFactory(this.dataSource);
+        SqlSession session = sqlSessionFactory.openSession();
+        try {
+            TestMapper mapper = session.getMapper(TestMapper.class);
+            StatementDeadline deadline = StatementDeadline.start(60000);
+            try {
+                assertEquals("Pocoyo", mapper.selectName(1L));
+            } finally {
+                deadline.close();
+            }
+
+            deadline = StatementDeadline.start(0);
+            try {
+                mapper.selectName(2L);
+                fail("statement started after the deadline");
+            } catch (PersistenceException e) {
+                assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof SQLTimeoutException);
+            } finally {
+                deadline.close();
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+}
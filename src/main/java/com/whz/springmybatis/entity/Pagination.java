@@ -3,7 +3,7 @@ package com.whz.springmybatis.entity;
 public class Pagination {
     private Integer page;
     private Integer pageCount;
-    private Integer totalCount;
+    private Long totalCount;
 
     public Integer getPage() {
         return page;
@@ -21,15 +21,15 @@ public class Pagination {
         this.pageCount = pageCount;
     }
 
-    public Integer getTotalCount() {
+    public Long getTotalCount() {
         return totalCount;
     }
 
-    public void setTotalCount(Integer totalCount) {
+    public void setTotalCount(Long totalCount) {
         this.totalCount = totalCount;
     }
 
-    public Pagination(Integer page, Integer pageCount, Integer totalCount) {
+    public Pagination(Integer page, Integer pageCount, Long totalCount) {
         this.page = page;
         this.pageCount = pageCount;
         this.totalCount = totalCount;
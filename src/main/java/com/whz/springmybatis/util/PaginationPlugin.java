@@ -0,0 +1,34 @@
+package com.whz.springmybatis.util;
+
+import org.apache.ibatis.session.RowBounds;
+import org.mybatis.spring.plugin.PaginationInterceptor;
+
+import com.whz.springmybatis.entity.Pagination;
+
+/**
+ * 物理分页插件：查询参数中有Pagination时按页查询（LIMIT/OFFSET），并将总记录数回填到Pagination.totalCount。
+ * page从1开始，pageCount为每页记录数，pageCount为空时不分页。
+ */
+public class PaginationPlugin extends PaginationInterceptor {
+
+    @Override
+    protected boolean isPage(Object value) {
+        return value instanceof Pagination;
+    }
+
+    @Override
+    protected RowBounds toRowBounds(Object page) {
+        Pagination pagination = (Pagination) page;
+        if (pagination.getPageCount() == null || pagination.getPageCount() <= 0) {
+            return null;
+        }
+        int pageNo = pagination.getPage() == null || pagination.getPage() < 1 ? 1 : pagination.getPage();
+        long offset = (long) (pageNo - 1) * pagination.getPageCount();
+        return new RowBounds((int) Math.min(offset, Integer.MAX_VALUE), pagination.getPageCount());
+    }
+
+    @Override
+    protected void setTotalCount(Object page, long totalCount) {
+        ((Pagination) page).setTotalCount(totalCount);
+    }
+}